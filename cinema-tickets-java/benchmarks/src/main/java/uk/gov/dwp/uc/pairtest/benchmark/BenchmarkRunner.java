@@ -0,0 +1,33 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Entry point of the benchmarks jar. With no arguments every benchmark is run
+ * with the gc profiler attached, so each result reports ns/op together with
+ * the allocation rate. Any arguments are passed straight to the JMH command
+ * line instead, e.g. "PurchaseTicketsBenchmark.varargs -prof gc".
+ *
+ * @author raghavendra.araveti
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		runAll();
+	}
+
+	private static void runAll() throws RunnerException {
+		var options = new OptionsBuilder()
+				.include(BenchmarkRunner.class.getPackageName() + ".*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,174 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+/*
+ * Benchmarks for the TicketServiceImpl purchase hot path. The downstream
+ * services are the no-op third-party stubs, so the numbers cover validation,
+ * pricing and the call overhead only. Run with the gc profiler (the default in
+ * BenchmarkRunner) to see the allocation rate alongside ns/op.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurchaseTicketsBenchmark {
+
+	private static final long ACCOUNT_ID = 123L;
+
+	@State(Scope.Benchmark)
+	public static class ServiceState {
+
+		TicketServiceImpl ticketService;
+		TicketTypeRequest[] mixedOrder;
+		TicketTypeRequest[] maxTicketsOrder;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			ticketService = new TicketServiceImpl(new TicketPaymentServiceImpl(), new SeatReservationServiceImpl());
+			mixedOrder = new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1) };
+			maxTicketsOrder = new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 10),
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 10) };
+
+			// Both orders must be accepted, or the benchmarks measure the rejection path instead
+			requireAccepted(mixedOrder);
+			requireAccepted(maxTicketsOrder);
+		}
+
+		private void requireAccepted(TicketTypeRequest[] order) {
+			var result = ticketService.validatePurchase(ACCOUNT_ID, order);
+			if (!result.isAccepted()) {
+				throw new IllegalStateException("Benchmark order is rejected with " + result.getErrorCode());
+			}
+		}
+	}
+
+	/*
+	 * The same service with PurchaseMetrics attached, to measure the cost of the
+	 * instrumentation against validMixedOrder.
+	 */
+	@State(Scope.Benchmark)
+	public static class InstrumentedServiceState extends ServiceState {
+
+		PurchaseMetrics metrics;
+
+		// JMH runs the setup of ServiceState first
+		@Setup(Level.Trial)
+		public void attachMetrics() {
+			metrics = new PurchaseMetrics();
+			ticketService.setMetrics(metrics);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class RejectedOrderState {
+
+		@Param({ "INVALID_ACCOUNT_ID", "MISSING_TICKET_REQUEST", "INVALID_TICKET_QUANTITY", "MAX_TICKETS_EXCEEDED",
+				"MISSING_ADULT_TICKET" })
+		PurchaseErrorCode errorCode;
+
+		long accountId;
+		TicketTypeRequest[] order;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			accountId = ACCOUNT_ID;
+			var adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+			order = switch (errorCode) {
+			case INVALID_ACCOUNT_ID -> {
+				accountId = 0L;
+				yield new TicketTypeRequest[] { adultTicketType };
+			}
+			case MISSING_TICKET_REQUEST -> new TicketTypeRequest[0];
+			case INVALID_TICKET_QUANTITY -> new TicketTypeRequest[] { adultTicketType,
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, -1) };
+			case MAX_TICKETS_EXCEEDED -> new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 21) };
+			case MISSING_ADULT_TICKET -> new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2) };
+			default -> throw new IllegalStateException("No rejected order defined for " + errorCode);
+			};
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class VarargsState {
+
+		@Param({ "1", "2", "4", "8", "16" })
+		int length;
+
+		TicketTypeRequest[] order;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			order = new TicketTypeRequest[length];
+			Arrays.fill(order, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+		}
+	}
+
+	@Benchmark
+	public PurchaseResult validMixedOrder(ServiceState state) {
+		return state.ticketService.purchase(ACCOUNT_ID, state.mixedOrder);
+	}
+
+	@Benchmark
+	public PurchaseResult validMixedOrderInstrumented(InstrumentedServiceState state) {
+		return state.ticketService.purchase(ACCOUNT_ID, state.mixedOrder);
+	}
+
+	@Benchmark
+	public PurchaseResult rejectedOrderInstrumented(InstrumentedServiceState state, RejectedOrderState rejected) {
+		return state.ticketService.purchase(rejected.accountId, rejected.order);
+	}
+
+	@Benchmark
+	public PurchaseResult maxTicketsOrder(ServiceState state) {
+		return state.ticketService.purchase(ACCOUNT_ID, state.maxTicketsOrder);
+	}
+
+	@Benchmark
+	public PurchaseResult varargsOrder(ServiceState state, VarargsState varargs) {
+		return state.ticketService.purchase(ACCOUNT_ID, varargs.order);
+	}
+
+	@Benchmark
+	public PurchaseResult rejectedOrderValidated(ServiceState state, RejectedOrderState rejected) {
+		return state.ticketService.validatePurchase(rejected.accountId, rejected.order);
+	}
+
+	@Benchmark
+	public PurchaseErrorCode rejectedOrderThrown(ServiceState state, RejectedOrderState rejected) {
+		try {
+			state.ticketService.purchaseTickets(rejected.accountId, rejected.order);
+			return null;
+		} catch (InvalidPurchaseException e) {
+			return e.getErrorCode();
+		}
+	}
+}
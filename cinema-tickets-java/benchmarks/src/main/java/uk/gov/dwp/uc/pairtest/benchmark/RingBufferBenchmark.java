@@ -0,0 +1,128 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.payment.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.payment.LatencyModel;
+import uk.gov.dwp.uc.pairtest.payment.SimulatedTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.ring.PurchaseRingBuffer;
+
+/*
+ * Purchase throughput of the PurchaseRingBuffer against calling
+ * purchaseTickets directly, with 4 producer threads. Producers wait whenever
+ * the ring is full, so over an iteration the ring's score is the rate at which
+ * its stages complete orders, not just the rate of publishing.
+ *
+ * The "stub" gateway is the no-op third-party stub, so only the cost of the
+ * ring itself is measured. The "simulated" gateway is a
+ * SimulatedTicketPaymentService with a fixed 5 ms round trip and 16 calls in
+ * flight; each direct caller then waits a round trip per purchase, while the
+ * ring's payment stage pays for every order waiting in one batch call.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RingBufferBenchmark {
+
+	// Boxed once, so that the direct path does not pay for boxing the account id
+	private static final Long ACCOUNT_ID = 123_456L;
+
+	@State(Scope.Benchmark)
+	public static class OrderState {
+
+		@Param({ "stub", "simulated" })
+		String gateway;
+
+		BatchTicketPaymentService paymentService;
+		TicketServiceImpl ticketService;
+		TicketTypeRequest[] order;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			if (gateway.equals("simulated")) {
+				var simulated = new SimulatedTicketPaymentService(LatencyModel.fixed(Duration.ofMillis(5)),
+						Duration.ofSeconds(1), 0, 16);
+				paymentService = simulated;
+				ticketService = new TicketServiceImpl(simulated, new SeatReservationServiceImpl());
+			} else {
+				paymentService = BatchTicketPaymentService.adapt(new TicketPaymentServiceImpl());
+				ticketService = new TicketServiceImpl(new TicketPaymentServiceImpl(),
+						new SeatReservationServiceImpl());
+			}
+			order = new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1) };
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class RingState extends OrderState {
+
+		@Param({ "1024", "65536" })
+		int capacity;
+
+		PurchaseRingBuffer ring;
+
+		// Only written by the ring's completion thread, and read after close has joined it
+		long completed;
+		long accepted;
+
+		// JMH runs the setup of OrderState first
+		@Setup(Level.Trial)
+		public void startRing() {
+			ring = PurchaseRingBuffer.start(ticketService, paymentService, new SeatReservationServiceImpl(), null,
+					null, capacity, outcome -> {
+						completed++;
+						if (outcome.getErrorCode() == null && outcome.getFailure() == null) {
+							accepted++;
+						}
+					});
+		}
+
+		// A ring that rejected or failed its orders would only be measuring how fast it turns them away
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			ring.close();
+			if (completed == 0 || accepted != completed) {
+				throw new IllegalStateException(
+						"Only " + accepted + " of " + completed + " benchmark orders were accepted");
+			}
+		}
+	}
+
+	@Benchmark
+	public long ringBuffer(RingState state) {
+		// The same order as state.order, written into the slot as ticket counts
+		return state.ring.publish(ACCOUNT_ID, 2, 2, 1);
+	}
+
+	@Benchmark
+	public void directPurchaseTickets(OrderState state) {
+		state.ticketService.purchaseTickets(ACCOUNT_ID, state.order);
+	}
+}
@@ -0,0 +1,59 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatMap;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/*
+ * Benchmarks best-available allocation of a group on a 1,000 seat screen that
+ * is already part sold, with the seats released again after each claim so that
+ * every operation sees the same map.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatAllocationBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class SeatMapState {
+
+		@Param({ "2", "8", "20" })
+		int groupSize;
+
+		ScreeningSeatMap seatMap;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			seatMap = new ScreeningSeatMap(1001L, SeatLayout.uniform(25, 40));
+			// Sell a scattering of small groups so that the free runs are fragmented
+			for (var i = 0; i < 150; i++) {
+				seatMap.claimBestAvailable(1 + i % 3);
+			}
+		}
+	}
+
+	@Benchmark
+	public int[] claimBestAvailable(SeatMapState state) {
+		var seats = state.seatMap.claimBestAvailable(state.groupSize);
+		state.seatMap.release(seats);
+		return seats;
+	}
+}
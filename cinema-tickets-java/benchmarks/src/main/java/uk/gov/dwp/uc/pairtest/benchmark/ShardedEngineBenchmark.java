@@ -0,0 +1,99 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.engine.ShardedPurchaseEngine;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/*
+ * Seat allocation throughput of the ShardedPurchaseEngine with 8 threads
+ * spread over 256 screenings, against the shared lock-free SeatInventory. Each
+ * operation takes a pair of seats in a random screening and gives them back,
+ * so the screenings never sell out. Vary the shard count to see how the
+ * engine scales with cores.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedEngineBenchmark {
+
+	private static final int SCREENINGS = 256;
+
+	@State(Scope.Benchmark)
+	public static class EngineState {
+
+		@Param({ "1", "2", "4", "8" })
+		int shards;
+
+		ShardedPurchaseEngine engine;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			var ticketService = new TicketServiceImpl(new TicketPaymentServiceImpl(), new SeatReservationServiceImpl());
+			engine = ShardedPurchaseEngine.start(ticketService, new TicketPaymentServiceImpl(), shards, 1024);
+			for (var id = 0; id < SCREENINGS; id++) {
+				engine.addScreening(id, SeatLayout.uniform(20, 20));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			engine.close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class InventoryState {
+
+		SeatInventory inventory;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			inventory = new SeatInventory();
+			for (var id = 0; id < SCREENINGS; id++) {
+				inventory.addScreening(id, SeatLayout.uniform(20, 20));
+			}
+		}
+	}
+
+	@Benchmark
+	public int[] shardedEngine(EngineState state) {
+		var screeningId = ThreadLocalRandom.current().nextInt(SCREENINGS);
+		var seats = state.engine.reserveSeats(screeningId, 2);
+		state.engine.releaseSeats(screeningId, seats);
+		return seats;
+	}
+
+	@Benchmark
+	public int[] sharedInventory(InventoryState state) {
+		var screeningId = ThreadLocalRandom.current().nextInt(SCREENINGS);
+		var seats = state.inventory.reserveSeats(screeningId, 2);
+		state.inventory.screening(screeningId).release(seats);
+		return seats;
+	}
+}
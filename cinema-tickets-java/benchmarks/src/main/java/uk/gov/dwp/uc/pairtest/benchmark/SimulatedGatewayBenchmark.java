@@ -0,0 +1,91 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.payment.BatchingTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.payment.LatencyModel;
+import uk.gov.dwp.uc.pairtest.payment.SimulatedTicketPaymentService;
+
+/*
+ * Purchase throughput against the simulated payment gateway, with 32 threads
+ * sharing a gateway that serves 16 payments at a time. Compare the latency
+ * models to see how the tail of the gateway, rather than its median, sets the
+ * throughput of the purchase path. With batched set, payments go through a
+ * BatchingTicketPaymentService, so the 32 threads share gateway calls instead
+ * of queuing for the 16 slots.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class SimulatedGatewayBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class GatewayState {
+
+		@Param({ "fixed", "logNormal", "bimodal" })
+		String latencyModel;
+
+		@Param({ "false", "true" })
+		boolean batched;
+
+		BatchingTicketPaymentService batching;
+		TicketServiceImpl ticketService;
+		TicketTypeRequest[] order;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			var latency = switch (latencyModel) {
+			case "fixed" -> LatencyModel.fixed(Duration.ofMillis(5));
+			case "logNormal" -> LatencyModel.logNormal(Duration.ofMillis(5), 0.6);
+			case "bimodal" -> LatencyModel.bimodal(LatencyModel.fixed(Duration.ofMillis(3)),
+					LatencyModel.fixed(Duration.ofMillis(50)), 0.05);
+			default -> throw new IllegalArgumentException("Unknown latency model " + latencyModel);
+			};
+			var gateway = new SimulatedTicketPaymentService(latency, Duration.ofSeconds(1), 0, 16);
+			if (batched) {
+				batching = BatchingTicketPaymentService.start(gateway, 32, Duration.ofMillis(1), 16);
+				ticketService = new TicketServiceImpl(batching, new SeatReservationServiceImpl());
+			} else {
+				ticketService = new TicketServiceImpl(gateway, new SeatReservationServiceImpl());
+			}
+			order = new TicketTypeRequest[] { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1) };
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (batching != null) {
+				batching.close();
+			}
+		}
+	}
+
+	@Benchmark
+	public void purchaseTickets(GatewayState state) {
+		state.ticketService.purchaseTickets(123L, state.order);
+	}
+}
@@ -0,0 +1,126 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.concurrent.VirtualThreadTicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/*
+ * Purchase throughput when both downstream services block for 5 ms per call,
+ * through the VirtualThreadTicketService facade against a fixed pool of 32
+ * platform threads calling TicketServiceImpl directly. Each operation submits
+ * a burst of 1000 purchases and waits for all of them, so the score times
+ * 1000 is purchases per second.
+ *
+ * @author raghavendra.araveti
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+	private static final int BURST = 1_000;
+	private static final int PLATFORM_THREADS = 32;
+	private static final int MAX_IN_FLIGHT = 256;
+	private static final long DOWNSTREAM_LATENCY_MILLIS = 5;
+
+	private static final TicketPaymentService SLOW_PAYMENT_SERVICE = (accountId, totalAmountToPay) -> pause();
+	private static final SeatReservationService SLOW_RESERVATION_SERVICE = (accountId, totalSeatsToAllocate) -> pause();
+	private static final TicketTypeRequest ADULT_TICKETS = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+	@State(Scope.Benchmark)
+	public static class PlatformState {
+
+		TicketServiceImpl ticketService;
+		ExecutorService executor;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			ticketService = new TicketServiceImpl(SLOW_PAYMENT_SERVICE, SLOW_RESERVATION_SERVICE);
+			executor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			executor.shutdownNow();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class VirtualState {
+
+		VirtualThreadTicketService ticketService;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			ticketService = new VirtualThreadTicketService(SLOW_PAYMENT_SERVICE, SLOW_RESERVATION_SERVICE,
+					MAX_IN_FLIGHT, MAX_IN_FLIGHT);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			ticketService.close();
+		}
+	}
+
+	@Benchmark
+	public int platformThreads(PlatformState state) throws InterruptedException, ExecutionException {
+		List<Future<PurchaseResult>> futures = new ArrayList<>(BURST);
+		for (long accountId = 1; accountId <= BURST; accountId++) {
+			long id = accountId;
+			futures.add(state.executor.submit(() -> state.ticketService.purchase(id, ADULT_TICKETS)));
+		}
+		var accepted = 0;
+		for (var future : futures) {
+			accepted += future.get().isAccepted() ? 1 : 0;
+		}
+		return accepted;
+	}
+
+	@Benchmark
+	public int virtualThreads(VirtualState state) throws InterruptedException, ExecutionException {
+		List<CompletableFuture<PurchaseResult>> futures = new ArrayList<>(BURST);
+		for (long accountId = 1; accountId <= BURST; accountId++) {
+			futures.add(state.ticketService.purchaseTicketsAsync(accountId, ADULT_TICKETS));
+		}
+		var accepted = 0;
+		for (var future : futures) {
+			accepted += future.get().isAccepted() ? 1 : 0;
+		}
+		return accepted;
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(DOWNSTREAM_LATENCY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package uk.gov.dwp.uc.pairtest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+
+/*
+ * TicketService that accepts an optional idempotency key with each purchase.
+ * The first purchase made under a key runs normally and its outcome is kept in
+ * the IdempotencyCache; a retry under the same key returns that outcome without
+ * touching payment or reservation. A retry that arrives while the first attempt
+ * is still running waits for it to finish.
+ *
+ * Keys are scoped to the account making the purchase. Reusing a key for a
+ * different request is rejected with IDEMPOTENCY_KEY_REUSED, and a new key is
+ * rejected with IDEMPOTENCY_CACHE_FULL while the cache has no room that is not
+ * taken by purchases still in progress.
+ *
+ * Attempts that fail with an exception from a downstream service are not
+ * remembered, so the client can retry them. Purchases made without a key or
+ * without an account are passed straight through.
+ *
+ * @author raghavendra.araveti
+ */
+public class IdempotentTicketService implements TicketService {
+
+	private final TicketService ticketService;
+	private final IdempotencyCache idempotencyCache;
+
+	public IdempotentTicketService(TicketService ticketService, IdempotencyCache idempotencyCache) {
+		this.ticketService = ticketService;
+		this.idempotencyCache = idempotencyCache;
+	}
+
+	@Override
+	public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests)
+			throws InvalidPurchaseException {
+		ticketService.purchaseTickets(accountId, ticketTypeRequests);
+	}
+
+	@Override
+	public PurchaseResult purchase(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+		return ticketService.purchase(accountId, ticketTypeRequests);
+	}
+
+	@Override
+	public List<PurchaseResult> purchaseTickets(List<PurchaseOrder> purchaseOrders) {
+		return ticketService.purchaseTickets(purchaseOrders);
+	}
+
+	public void purchaseTickets(String idempotencyKey, Long accountId, TicketTypeRequest... ticketTypeRequests)
+			throws InvalidPurchaseException {
+
+		var result = purchase(idempotencyKey, accountId, ticketTypeRequests);
+		if (!result.isAccepted()) {
+			throw TicketServiceImpl.invalidPurchase(result.getErrorCode());
+		}
+	}
+
+	public PurchaseResult purchase(String idempotencyKey, Long accountId, TicketTypeRequest... ticketTypeRequests) {
+
+		if (idempotencyKey == null || accountId == null) {
+			return ticketService.purchase(accountId, ticketTypeRequests);
+		}
+
+		// Claim the key, or return the outcome of the purchase that already holds it
+		var outcome = new CompletableFuture<PurchaseResult>();
+		var recorded = idempotencyCache.putIfAbsent(accountId, idempotencyKey,
+				IdempotencyCache.fingerprint(ticketTypeRequests), outcome);
+		if (recorded != null) {
+			return awaitRecorded(recorded);
+		}
+
+		try {
+			var result = ticketService.purchase(accountId, ticketTypeRequests);
+			outcome.complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			idempotencyCache.remove(accountId, idempotencyKey, outcome);
+			outcome.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private static PurchaseResult awaitRecorded(CompletableFuture<PurchaseResult> recorded) {
+		try {
+			return recorded.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package uk.gov.dwp.uc.pairtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.ratelimit.AccountRateLimiter;
+
+/*
+ * TicketService that checks each account against an AccountRateLimiter before
+ * anything else happens. A purchase from an account that is over its rate, or
+ * that already has too many purchases in flight, is rejected with
+ * RATE_LIMITED before it is validated, priced or sent downstream.
+ *
+ * @author raghavendra.araveti
+ */
+public class RateLimitedTicketService implements TicketService {
+
+	private final TicketService ticketService;
+	private final AccountRateLimiter rateLimiter;
+
+	public RateLimitedTicketService(TicketService ticketService, AccountRateLimiter rateLimiter) {
+		this.ticketService = ticketService;
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests)
+			throws InvalidPurchaseException {
+
+		var result = purchase(accountId, ticketTypeRequests);
+		if (!result.isAccepted()) {
+			throw TicketServiceImpl.invalidPurchase(result.getErrorCode());
+		}
+	}
+
+	@Override
+	public PurchaseResult purchase(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+
+		// An invalid accountId is left for validation to reject
+		if (!isValidAccountId(accountId)) {
+			return ticketService.purchase(accountId, ticketTypeRequests);
+		}
+
+		if (!rateLimiter.tryAcquire(accountId)) {
+			return PurchaseResult.rejected(PurchaseErrorCode.RATE_LIMITED);
+		}
+		try {
+			return ticketService.purchase(accountId, ticketTypeRequests);
+		} finally {
+			rateLimiter.release(accountId);
+		}
+	}
+
+	/*
+	 * Rate limited orders get a RATE_LIMITED result in place; the rest are passed
+	 * on as one batch.
+	 */
+	@Override
+	public List<PurchaseResult> purchaseTickets(List<PurchaseOrder> purchaseOrders) {
+
+		var results = new ArrayList<PurchaseResult>(purchaseOrders.size());
+		var admitted = new ArrayList<PurchaseOrder>(purchaseOrders.size());
+
+		for (var order : purchaseOrders) {
+			var accountId = order.getAccountId();
+			if (!isValidAccountId(accountId) || rateLimiter.tryAcquire(accountId)) {
+				admitted.add(order);
+				results.add(null);
+			} else {
+				results.add(PurchaseResult.rejected(PurchaseErrorCode.RATE_LIMITED));
+			}
+		}
+
+		try {
+			var admittedResults = ticketService.purchaseTickets(admitted).iterator();
+			for (var i = 0; i < results.size(); i++) {
+				if (results.get(i) == null) {
+					results.set(i, admittedResults.next());
+				}
+			}
+			return results;
+		} finally {
+			for (var order : admitted) {
+				if (isValidAccountId(order.getAccountId())) {
+					rateLimiter.release(order.getAccountId());
+				}
+			}
+		}
+	}
+
+	/*
+	 * Only valid account ids are rate limited, so that an invalid one is always
+	 * rejected by validation and never takes up a place in the limiter.
+	 */
+	private static boolean isValidAccountId(Long accountId) {
+		return accountId != null && accountId > 0;
+	}
+}
@@ -0,0 +1,58 @@
+package uk.gov.dwp.uc.pairtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.engine.ShardedPurchaseEngine;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+/*
+ * TicketService over a ShardedPurchaseEngine, for callers written against
+ * TicketService. The TicketService methods carry no screening, so each adapter
+ * sells one screening; create one adapter per screening being sold.
+ *
+ * @author raghavendra.araveti
+ */
+public class ShardedTicketService implements TicketService {
+
+	private final ShardedPurchaseEngine engine;
+	private final Screening screening;
+
+	public ShardedTicketService(ShardedPurchaseEngine engine, Screening screening) {
+		this.engine = engine;
+		this.screening = screening;
+	}
+
+	@Override
+	public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests)
+			throws InvalidPurchaseException {
+
+		var result = purchase(accountId, ticketTypeRequests);
+		if (!result.isAccepted()) {
+			throw TicketServiceImpl.invalidPurchase(result.getErrorCode());
+		}
+	}
+
+	@Override
+	public PurchaseResult purchase(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+		return engine.purchase(screening, accountId, ticketTypeRequests);
+	}
+
+	/*
+	 * Every order goes to the same shard, so the orders are simply purchased one
+	 * after another. An order that runs out of seats does not stop the batch.
+	 */
+	@Override
+	public List<PurchaseResult> purchaseTickets(List<PurchaseOrder> purchaseOrders) {
+
+		var results = new ArrayList<PurchaseResult>(purchaseOrders.size());
+		for (var order : purchaseOrders) {
+			results.add(purchase(order.getAccountId(), order.getTicketTypeRequests()));
+		}
+		return results;
+	}
+}
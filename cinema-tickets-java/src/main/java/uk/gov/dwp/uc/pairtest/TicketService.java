@@ -1,5 +1,9 @@
 package uk.gov.dwp.uc.pairtest;
 
+import java.util.List;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 
@@ -7,4 +11,8 @@ public interface TicketService {
 
     void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException;
 
+    PurchaseResult purchase(Long accountId, TicketTypeRequest... ticketTypeRequests);
+
+    List<PurchaseResult> purchaseTickets(List<PurchaseOrder> purchaseOrders);
+
 }
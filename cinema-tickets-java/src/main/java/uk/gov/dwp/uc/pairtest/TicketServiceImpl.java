@@ -1,12 +1,32 @@
 package uk.gov.dwp.uc.pairtest;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import jdk.jfr.EventType;
 
 import thirdparty.paymentgateway.TicketPaymentService;
 import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResultSink;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.jfr.PurchasePricedEvent;
+import uk.gov.dwp.uc.pairtest.jfr.PurchaseValidationEvent;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.ScreeningPriceResolver;
+import uk.gov.dwp.uc.pairtest.resilience.ServiceUnavailableException;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseSaga;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseState;
 
 /*
  * Implementation class for the TicketService interface responsible for managing
@@ -16,49 +36,500 @@ import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
  */
 public class TicketServiceImpl implements TicketService {
 
-	private final TicketPaymentService paymentService;
-	private final SeatReservationService reservationService;
+	private final PurchaseCoordinator coordinator;
+	private final ScreeningPriceResolver screeningPricing;
+	private volatile PriceTable priceTable;
+	private volatile PurchaseMetrics metrics;
+	private volatile PurchaseJournal journal;
 
 	public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService) {
-		this.paymentService = paymentService;
-		this.reservationService = reservationService;
+		this(paymentService, reservationService, PriceTable.DEFAULT);
+	}
+
+	public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService,
+			PriceTable priceTable) {
+		this(new PurchaseCoordinator(paymentService, reservationService), priceTable);
+	}
+
+	/*
+	 * Prices purchases made against a screening with the given resolver, for
+	 * example a PricingEngine. Purchases made without a screening use the
+	 * default price table.
+	 */
+	public TicketServiceImpl(TicketPaymentService paymentService, SeatReservationService reservationService,
+			ScreeningPriceResolver screeningPricing) {
+		this(new PurchaseCoordinator(paymentService, reservationService), screeningPricing);
+	}
+
+	/*
+	 * Hands the downstream steps of every accepted purchase to the given
+	 * coordinator, for example one that refunds payments when the seat
+	 * reservation fails.
+	 */
+	public TicketServiceImpl(PurchaseCoordinator coordinator, PriceTable priceTable) {
+		this.coordinator = coordinator;
+		this.priceTable = priceTable;
+		this.screeningPricing = null;
+	}
+
+	public TicketServiceImpl(PurchaseCoordinator coordinator, ScreeningPriceResolver screeningPricing) {
+		this.coordinator = coordinator;
+		this.priceTable = PriceTable.DEFAULT;
+		this.screeningPricing = screeningPricing;
 	}
 
 	private static final int MAX_TICKETS_PER_PURCHASE = 20;
-	private static final Map<TicketTypeRequest.Type, Integer> TICKET_PRICES = Map.of(TicketTypeRequest.Type.INFANT, 0,
-			TicketTypeRequest.Type.CHILD, 10, TicketTypeRequest.Type.ADULT, 20);
+
+	// Looked up once, so that validation can skip creating events that no recording enables
+	private static final EventType VALIDATION_EVENT_TYPE = EventType.getEventType(PurchaseValidationEvent.class);
+	private static final EventType PRICED_EVENT_TYPE = EventType.getEventType(PurchasePricedEvent.class);
+
+	/*
+	 * Swaps in a new price table. Purchases already being priced finish with the
+	 * table they started with; later purchases see the new one.
+	 */
+	public void setPriceTable(PriceTable priceTable) {
+		this.priceTable = priceTable;
+	}
+
+	public PriceTable getPriceTable() {
+		return priceTable;
+	}
+
+	/*
+	 * Starts recording stage latencies and outcomes into the given metrics, here
+	 * and in the coordinator. Passing null stops recording; without metrics the
+	 * purchase path does not read the clock at all.
+	 */
+	public void setMetrics(PurchaseMetrics metrics) {
+		this.metrics = metrics;
+		coordinator.setMetrics(metrics);
+	}
+
+	public PurchaseMetrics getMetrics() {
+		return metrics;
+	}
+
+	/*
+	 * Starts recording every purchase that reaches the downstream services in
+	 * the given journal: completed, turned away for lack of seats, or failed
+	 * with an exception. Purchases rejected by validation are not journaled, as
+	 * nothing happened to them. Passing null stops journaling.
+	 */
+	public void setJournal(PurchaseJournal journal) {
+		this.journal = journal;
+	}
+
+	public PurchaseJournal getJournal() {
+		return journal;
+	}
 
 	@Override
 	public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests)
 			throws InvalidPurchaseException {
 
+		var result = purchase(accountId, ticketTypeRequests);
+		if (!result.isAccepted()) {
+			throw invalidPurchase(result.getErrorCode());
+		}
+	}
+
+	/*
+	 * Non-throwing form of purchaseTickets. A rejected purchase returns its
+	 * PurchaseResult without contacting the downstream services; failures raised
+	 * by the payment or reservation services still propagate. A resilience
+	 * decorator that turns the purchase away without calling its service is
+	 * reported as a PAYMENT_UNAVAILABLE or RESERVATION_UNAVAILABLE rejection.
+	 */
+	@Override
+	public PurchaseResult purchase(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+
+		// Validate accountId and ticketTypeRequests, and price the purchase
+		return complete(null, accountId, ticketTypeRequests, validatePurchase(accountId, ticketTypeRequests));
+	}
+
+	/*
+	 * Non-throwing purchase against a screening, priced with the prices that
+	 * apply to that screening. The screening is passed on to the coordinator so
+	 * that screening-aware reservation services reserve seats in it.
+	 */
+	public PurchaseResult purchase(Screening screening, Long accountId, TicketTypeRequest... ticketTypeRequests) {
+
+		// Validate accountId and ticketTypeRequests, and price the purchase for the screening
+		return complete(screening, accountId, ticketTypeRequests,
+				validatePurchase(screening, accountId, ticketTypeRequests));
+	}
+
+	private PurchaseResult complete(Screening screening, Long accountId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseResult result) {
+
+		if (!result.isAccepted()) {
+			return result;
+		}
+
+		// Take payment and reserve seats
+		var journal = this.journal;
+		var screeningId = screening != null ? screening.getScreeningId() : 0L;
+		var saga = new PurchaseSaga(accountId, result.getTotalPrice(), result.getNumSeats());
+		try {
+			coordinator.execute(screening, saga);
+		} catch (RuntimeException e) {
+			// A guarded downstream service that turns the purchase away before payment rejects it cleanly
+			if (e instanceof ServiceUnavailableException unavailable && !saga.isPaid()) {
+				return rejectDownstream(accountId, screeningId, ticketTypeRequests, unavailable.getErrorCode(),
+						journal);
+			}
+			if (journal != null) {
+				journal.recordFailure(accountId, screeningId, ticketTypeRequests, result);
+			}
+			throw e;
+		}
+		return recordDownstream(accountId, screeningId, ticketTypeRequests, result, saga.getState(), saga.getSeats(),
+				journal);
+	}
+
+	/*
+	 * Records the outcome of a purchase whose downstream steps ran to the end,
+	 * journaling the seats it was given if they are known.
+	 */
+	private PurchaseResult recordDownstream(Long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseResult result, PurchaseState state, int[] seats, PurchaseJournal journal) {
+
+		// A coordinator that holds seats first turns the purchase away, unpaid, when the seats are gone
+		if (state == PurchaseState.REJECTED) {
+			return rejectDownstream(accountId, screeningId, ticketTypeRequests, PurchaseErrorCode.INSUFFICIENT_SEATS,
+					journal);
+		}
+		var metrics = this.metrics;
+		if (metrics != null) {
+			metrics.recordAccepted();
+		}
+		if (journal != null) {
+			journal.recordPurchase(accountId, screeningId, ticketTypeRequests, result, seats);
+		}
+		return result;
+	}
+
+	/*
+	 * Rejects a valid purchase that the downstream steps turned away, recording
+	 * it like any other purchase that reached them.
+	 */
+	private PurchaseResult rejectDownstream(Long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseErrorCode errorCode, PurchaseJournal journal) {
+
+		var result = PurchaseResult.rejected(errorCode);
+		var metrics = this.metrics;
+		if (metrics != null) {
+			metrics.recordRejected(errorCode);
+		}
+		if (journal != null) {
+			journal.recordPurchase(accountId, screeningId, ticketTypeRequests, result);
+		}
+		return result;
+	}
+
+	/*
+	 * Validates every order in one pass and records a result per order, in the
+	 * same order as the input. Rejected orders do not stop the batch. Accepted
+	 * orders are then grouped by account so that each account is charged and has
+	 * its seats reserved with a single call to each downstream service. A group
+	 * holds no more seats than a single purchase may, so an account whose orders
+	 * need more is split into several groups, in order.
+	 *
+	 * Each group goes through the same downstream steps as a single purchase,
+	 * and its outcome is written back to every order in the group, so the orders
+	 * of a group are all accepted or all rejected together. A
+	 * group turned away by the downstream steps before it paid is rejected with
+	 * their error code, and a group whose downstream steps fail, or turn it away
+	 * after it paid, is journaled as failed and rejected with PURCHASE_FAILED.
+	 * Neither stops the rest of the batch.
+	 */
+	@Override
+	public List<PurchaseResult> purchaseTickets(List<PurchaseOrder> purchaseOrders) {
+		return purchaseTickets(null, purchaseOrders);
+	}
+
+	/*
+	 * Batch purchase against a screening, priced with the prices that apply to
+	 * that screening. A coordinator that holds seats needs the screening, so its
+	 * batches must be made through this method.
+	 */
+	public List<PurchaseResult> purchaseTickets(Screening screening, List<PurchaseOrder> purchaseOrders) {
+
+		var results = new ArrayList<PurchaseResult>(purchaseOrders.size());
+		var groups = new ArrayList<AccountGroup>();
+		var openGroups = new HashMap<Long, AccountGroup>();
+
+		for (var i = 0; i < purchaseOrders.size(); i++) {
+			var order = purchaseOrders.get(i);
+			var result = screening != null
+					? validatePurchase(screening, order.getAccountId(), order.getTicketTypeRequests())
+					: validatePurchase(order.getAccountId(), order.getTicketTypeRequests());
+			results.add(result);
+
+			if (result.isAccepted()) {
+				var group = openGroups.get(order.getAccountId());
+				if (group == null || group.numSeats > MAX_TICKETS_PER_PURCHASE - result.getNumSeats()) {
+					group = new AccountGroup(order.getAccountId());
+					openGroups.put(order.getAccountId(), group);
+					groups.add(group);
+				}
+				group.orderIndexes.add(i);
+				group.totalPrice += result.getTotalPrice();
+				group.numSeats += result.getNumSeats();
+			}
+		}
+
+		// Hand the accepted orders to the downstream services, one call per group
+		var journal = this.journal;
+		var screeningId = screening != null ? screening.getScreeningId() : 0L;
+		for (var group : groups) {
+			var accountId = group.accountId;
+			var orderIndexes = group.orderIndexes;
+
+			var saga = new PurchaseSaga(accountId, group.totalPrice, group.numSeats);
+			try {
+				coordinator.execute(screening, saga);
+			} catch (RuntimeException e) {
+				if (e instanceof ServiceUnavailableException unavailable && !saga.isPaid()) {
+					for (var i : orderIndexes) {
+						var ticketTypeRequests = purchaseOrders.get(i).getTicketTypeRequests();
+						results.set(i, rejectDownstream(accountId, screeningId, ticketTypeRequests,
+								unavailable.getErrorCode(), journal));
+					}
+					continue;
+				}
+				failGroup(accountId, screeningId, purchaseOrders, results, orderIndexes, journal);
+				continue;
+			}
+
+			// Share the group's seats out between its orders, in order
+			var seats = saga.getSeats();
+			var seatsShared = 0;
+			for (var i : orderIndexes) {
+				var ticketTypeRequests = purchaseOrders.get(i).getTicketTypeRequests();
+				var result = results.get(i);
+				var orderSeats = seats != null
+						? Arrays.copyOfRange(seats, seatsShared, seatsShared + result.getNumSeats())
+						: null;
+				seatsShared += result.getNumSeats();
+				results.set(i, recordDownstream(accountId, screeningId, ticketTypeRequests, result, saga.getState(),
+						orderSeats, journal));
+			}
+		}
+
+		return results;
+	}
+
+	/*
+	 * The accepted orders of one account that are handed to the downstream
+	 * services together, with their combined price and seat count.
+	 */
+	private static final class AccountGroup {
+
+		private final Long accountId;
+		private final List<Integer> orderIndexes = new ArrayList<>();
+		private int totalPrice;
+		private int numSeats;
+
+		private AccountGroup(Long accountId) {
+			this.accountId = accountId;
+		}
+	}
+
+	/*
+	 * Journals every order of an account group whose downstream steps failed,
+	 * and rejects them so that the rest of the batch can carry on.
+	 */
+	private void failGroup(Long accountId, long screeningId, List<PurchaseOrder> purchaseOrders,
+			List<PurchaseResult> results, List<Integer> orderIndexes, PurchaseJournal journal) {
+
+		var metrics = this.metrics;
+		for (var i : orderIndexes) {
+			if (journal != null) {
+				journal.recordFailure(accountId, screeningId, purchaseOrders.get(i).getTicketTypeRequests(),
+						results.get(i));
+			}
+			if (metrics != null) {
+				metrics.recordRejected(PurchaseErrorCode.PURCHASE_FAILED);
+			}
+			results.set(i, PurchaseResult.rejected(PurchaseErrorCode.PURCHASE_FAILED));
+		}
+	}
+
+	/*
+	 * Validates the purchase and calculates its total price and seat count
+	 * without throwing and without contacting the downstream services. A rejected
+	 * purchase returns the shared result for its PurchaseErrorCode, so rejecting
+	 * an order allocates nothing.
+	 */
+	public PurchaseResult validatePurchase(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+
+		var metrics = this.metrics;
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+
+		// Read the price table once so that a concurrent swap cannot mix prices within one purchase
+		return validatePurchase(null, priceTable, metrics, startNanos, accountId, ticketTypeRequests);
+	}
+
+	/*
+	 * Validates a purchase against a screening, priced with the prices that apply
+	 * to that screening. A null screening is priced with the service's own price
+	 * table.
+	 */
+	public PurchaseResult validatePurchase(Screening screening, Long accountId,
+			TicketTypeRequest... ticketTypeRequests) {
+		var metrics = this.metrics;
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+
+		var prices = priceTable;
+		if (screening != null && screeningPricing != null) {
+			prices = screeningPricing.priceTableFor(screening);
+			if (metrics != null) {
+				startNanos = metrics.recordStage(PurchaseStage.PRICING, startNanos);
+			}
+		}
+		return validatePurchase(screening, prices, metrics, startNanos, accountId, ticketTypeRequests);
+	}
+
+	/*
+	 * Validates and prices a purchase given as a count of tickets per type, and
+	 * hands the outcome to the sink instead of returning a PurchaseResult. The
+	 * Flight Recorder events are only created while a recording enables them, so
+	 * otherwise validating it allocates nothing. The counts are checked as if
+	 * they were ticket type requests for adults, children and infants, in that
+	 * order, with a count of zero meaning no request of that type, so a purchase
+	 * with every count zero is missing its ticket request.
+	 */
+	public void validatePurchase(long accountId, int adultTickets, int childTickets, int infantTickets,
+			PurchaseResultSink sink) {
+		validatePurchase(null, accountId, adultTickets, childTickets, infantTickets, sink);
+	}
+
+	/*
+	 * Validates a purchase given as ticket counts against a screening, priced
+	 * with the prices that apply to that screening. A null screening is priced
+	 * with the service's own price table.
+	 */
+	public void validatePurchase(Screening screening, long accountId, int adultTickets, int childTickets,
+			int infantTickets, PurchaseResultSink sink) {
+
+		var metrics = this.metrics;
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+		var prices = priceTable;
+		if (screening != null && screeningPricing != null) {
+			prices = screeningPricing.priceTableFor(screening);
+			if (metrics != null) {
+				startNanos = metrics.recordStage(PurchaseStage.PRICING, startNanos);
+			}
+		}
+
+		var validationEvent = VALIDATION_EVENT_TYPE.isEnabled() ? new PurchaseValidationEvent() : null;
+		if (validationEvent != null) {
+			validationEvent.begin();
+		}
+		var errorCode = checkPurchase(accountId, adultTickets, childTickets, infantTickets);
+		var totalPrice = 0;
+		var numSeats = 0;
+		if (errorCode == null) {
+			totalPrice = adultTickets * prices.priceOf(TicketTypeRequest.Type.ADULT)
+					+ childTickets * prices.priceOf(TicketTypeRequest.Type.CHILD)
+					+ infantTickets * prices.priceOf(TicketTypeRequest.Type.INFANT);
+			numSeats = adultTickets + childTickets;
+		}
+		if (validationEvent != null) {
+			validationEvent.end();
+		}
+		report(screening, metrics, startNanos, validationEvent, accountId, errorCode, totalPrice, numSeats);
+
+		if (errorCode == null) {
+			sink.accepted(totalPrice, numSeats);
+		} else {
+			sink.rejected(errorCode);
+		}
+	}
+
+	private PurchaseResult validatePurchase(Screening screening, PriceTable prices, PurchaseMetrics metrics,
+			long startNanos, Long accountId, TicketTypeRequest[] ticketTypeRequests) {
+
+		var validationEvent = new PurchaseValidationEvent();
+		validationEvent.begin();
+		var result = checkPurchase(prices, accountId, ticketTypeRequests);
+		validationEvent.end();
+		report(screening, metrics, startNanos, validationEvent, accountId != null ? accountId : 0L,
+				result.getErrorCode(), result.getTotalPrice(), result.getNumSeats());
+
+		return result;
+	}
+
+	/*
+	 * Reports the outcome of a validation to the metrics, if any, and to Flight
+	 * Recorder. The JFR events follow the usual pattern of checking shouldCommit
+	 * before filling them in, so when no recording enables them the JIT removes
+	 * them and they cost nothing. The validation event is null if the caller
+	 * did not create one.
+	 */
+	private static void report(Screening screening, PurchaseMetrics metrics, long startNanos,
+			PurchaseValidationEvent validationEvent, long accountId, PurchaseErrorCode errorCode, int totalPrice,
+			int numSeats) {
+
+		if (metrics != null) {
+			metrics.recordStage(PurchaseStage.VALIDATION, startNanos);
+			if (errorCode != null) {
+				metrics.recordRejected(errorCode);
+			}
+		}
+
+		if (validationEvent != null && validationEvent.shouldCommit()) {
+			validationEvent.accountId = accountId;
+			validationEvent.errorCode = errorCode == null ? null : errorCode.name();
+			validationEvent.numSeats = numSeats;
+			validationEvent.totalPrice = totalPrice;
+			validationEvent.commit();
+		}
+
+		if (errorCode == null && PRICED_EVENT_TYPE.isEnabled()) {
+			var pricedEvent = new PurchasePricedEvent();
+			if (pricedEvent.shouldCommit()) {
+				pricedEvent.accountId = accountId;
+				pricedEvent.screeningId = screening != null ? screening.getScreeningId() : 0L;
+				pricedEvent.numSeats = numSeats;
+				pricedEvent.totalPrice = totalPrice;
+				pricedEvent.commit();
+			}
+		}
+	}
+
+	private PurchaseResult checkPurchase(PriceTable prices, Long accountId, TicketTypeRequest[] ticketTypeRequests) {
+
 		var hasAdultTicket = false;
 		var hasChildOrInfantTicket = false;
 		var totalPrice = 0;
 		var numSeats = 0;
-		
-		// Validate accountId and ticketTypeRequests
-		validatePurchaseRequest(accountId, ticketTypeRequests);
+
+		// Validate the accountId
+		if (accountId == null || accountId <= 0) {
+			return PurchaseResult.rejected(PurchaseErrorCode.INVALID_ACCOUNT_ID);
+		}
+
+		// Validate the ticketTypeRequests
+		if (ticketTypeRequests == null || ticketTypeRequests.length == 0) {
+			return PurchaseResult.rejected(PurchaseErrorCode.MISSING_TICKET_REQUEST);
+		}
 
 		// Calculate the total number of tickets requested, total price of the tickets and validate the purchase
 		for (var ticket : ticketTypeRequests) {
 			var numTickets = ticket.getNoOfTickets();
 			var type = ticket.getTicketType();
-			
-			// Check if the number of tickets requested is non-negative and grater than zero
-	        if (numTickets < 0) {
-	            throw new InvalidPurchaseException(PurchaseErrorCode.INVALID_TICKET_QUANTITY, "Invalid ticket quantity: " + numTickets);
-	        }
 
-			// Check if the number of tickets exceeds the limit
-			if (numSeats + numTickets > MAX_TICKETS_PER_PURCHASE) {
-				throw new InvalidPurchaseException(PurchaseErrorCode.MAX_TICKETS_EXCEEDED,
-						"Maximum " + MAX_TICKETS_PER_PURCHASE + " tickets can be purchased at a time");
+			var errorCode = checkTicketRequest(numTickets, numSeats);
+			if (errorCode != null) {
+				return PurchaseResult.rejected(errorCode);
 			}
 
 			// Calculate the total price based on ticket type
-			totalPrice += numTickets * TICKET_PRICES.getOrDefault(type, 0);
-			
+			totalPrice += numTickets * prices.priceOf(type);
+
 			// Update the number of seats based on ticket type
 			numSeats += switch (type) {
 			case ADULT -> {
@@ -74,27 +545,101 @@ public class TicketServiceImpl implements TicketService {
 
 		// Ensure that child or infant tickets can only be purchased with an adult ticket
 		if (hasChildOrInfantTicket && !hasAdultTicket) {
-			throw new InvalidPurchaseException(PurchaseErrorCode.MISSING_ADULT_TICKET, "Child or infant tickets cannot be purchased without an adult ticket");
+			return PurchaseResult.rejected(PurchaseErrorCode.MISSING_ADULT_TICKET);
 		}
 
-		// Make payment to the payment service
-		paymentService.makePayment(accountId, totalPrice);
-		
-		// Reserve seats using the seat reservation service
-		reservationService.reserveSeat(accountId, numSeats);
+		return PurchaseResult.accepted(totalPrice, numSeats);
+	}
+
+	/*
+	 * The same rules for a purchase given as ticket counts, returning null if it
+	 * is valid. Each non-zero count is checked as a ticket type request, in the
+	 * order adults, children, infants, so that both forms of a purchase are
+	 * rejected for the same reason.
+	 */
+	private static PurchaseErrorCode checkPurchase(long accountId, int adultTickets, int childTickets,
+			int infantTickets) {
+
+		if (accountId <= 0) {
+			return PurchaseErrorCode.INVALID_ACCOUNT_ID;
+		}
+
+		var hasAdultTicket = adultTickets != 0;
+		var hasChildOrInfantTicket = childTickets != 0 || infantTickets != 0;
+		if (!hasAdultTicket && !hasChildOrInfantTicket) {
+			return PurchaseErrorCode.MISSING_TICKET_REQUEST;
+		}
+
+		var numSeats = 0;
+		if (adultTickets != 0) {
+			var errorCode = checkTicketRequest(adultTickets, numSeats);
+			if (errorCode != null) {
+				return errorCode;
+			}
+			numSeats += adultTickets;
+		}
+		if (childTickets != 0) {
+			var errorCode = checkTicketRequest(childTickets, numSeats);
+			if (errorCode != null) {
+				return errorCode;
+			}
+			numSeats += childTickets;
+		}
+		if (infantTickets != 0) {
+			var errorCode = checkTicketRequest(infantTickets, numSeats);
+			if (errorCode != null) {
+				return errorCode;
+			}
+		}
+
+		// Ensure that child or infant tickets can only be purchased with an adult ticket
+		if (hasChildOrInfantTicket && !hasAdultTicket) {
+			return PurchaseErrorCode.MISSING_ADULT_TICKET;
+		}
+		return null;
+	}
+
+	/*
+	 * Checks one ticket type request against the seats counted so far, returning
+	 * null if it is valid. The limit is compared by subtraction so that a huge
+	 * count cannot overflow past it.
+	 */
+	private static PurchaseErrorCode checkTicketRequest(int numTickets, int numSeats) {
+
+		// Check if the number of tickets requested is non-negative
+		if (numTickets < 0) {
+			return PurchaseErrorCode.INVALID_TICKET_QUANTITY;
+		}
+
+		// Check if the number of tickets exceeds the limit
+		if (numTickets > MAX_TICKETS_PER_PURCHASE - numSeats) {
+			return PurchaseErrorCode.MAX_TICKETS_EXCEEDED;
+		}
+		return null;
+	}
+
+	/*
+	 * Builds the exception thrown by the throwing purchase APIs for a rejected
+	 * purchase. Rejections are expected outcomes, so no stack trace is captured.
+	 */
+	static InvalidPurchaseException invalidPurchase(PurchaseErrorCode errorCode) {
+		return new InvalidPurchaseException(errorCode, errorMessage(errorCode), false);
+	}
+
+	private static String errorMessage(PurchaseErrorCode errorCode) {
+		return switch (errorCode) {
+		case INVALID_ACCOUNT_ID -> "Invalid AccountId. An AccountId should be greater than zero";
+		case MISSING_TICKET_REQUEST -> "At least one ticket type request is required";
+		case INVALID_TICKET_QUANTITY -> "Invalid ticket quantity. A ticket quantity cannot be negative";
+		case MAX_TICKETS_EXCEEDED -> "Maximum " + MAX_TICKETS_PER_PURCHASE + " tickets can be purchased at a time";
+		case MISSING_ADULT_TICKET -> "Child or infant tickets cannot be purchased without an adult ticket";
+		case RATE_LIMITED -> "Too many purchases for this account. Please try again later";
+		case INSUFFICIENT_SEATS -> "Not enough seats are available for this screening";
+		case PAYMENT_UNAVAILABLE -> "Payments are temporarily unavailable. Please try again later";
+		case RESERVATION_UNAVAILABLE -> "Seat reservations are temporarily unavailable. Please try again later";
+		case PURCHASE_FAILED -> "The purchase could not be completed. Please try again later";
+		case IDEMPOTENCY_KEY_REUSED -> "This idempotency key was already used for a different purchase";
+		case IDEMPOTENCY_CACHE_FULL -> "Too many purchases are in progress. Please try again later";
+		};
 	}
-	
-	private void validatePurchaseRequest(Long accountId, TicketTypeRequest[] ticketTypeRequests)
-            throws InvalidPurchaseException {
-		
-		// Validate the accountId
-        if (accountId <= 0) {
-            throw new InvalidPurchaseException(PurchaseErrorCode.INVALID_ACCOUNT_ID, "Invalid AccountId. An AccountId should be greater than zero");
-        }
-
-        // Validate the ticketTypeRequests
-        if (ticketTypeRequests == null || ticketTypeRequests.length == 0) {
-            throw new InvalidPurchaseException(PurchaseErrorCode.MISSING_TICKET_REQUEST, "At least one ticket type request is required");
-        }
-    }
 }
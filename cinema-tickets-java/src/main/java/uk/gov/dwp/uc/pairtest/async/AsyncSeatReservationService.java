@@ -0,0 +1,27 @@
+package uk.gov.dwp.uc.pairtest.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Non-blocking counterpart of {@link SeatReservationService}. The returned
+ * future completes when the seats have been reserved, or completes
+ * exceptionally with the failure raised by the reservation service.
+ * 
+ * @author raghavendra.araveti
+ */
+public interface AsyncSeatReservationService {
+
+	CompletableFuture<Void> reserveSeat(long accountId, int totalSeatsToAllocate);
+
+	/**
+	 * Adapts a blocking reservation service by running each call on the given
+	 * executor, so the calling thread never waits on the reservation round trip.
+	 */
+	static AsyncSeatReservationService adapt(SeatReservationService reservationService, Executor executor) {
+		return (accountId, totalSeatsToAllocate) -> CompletableFuture
+				.runAsync(() -> reservationService.reserveSeat(accountId, totalSeatsToAllocate), executor);
+	}
+}
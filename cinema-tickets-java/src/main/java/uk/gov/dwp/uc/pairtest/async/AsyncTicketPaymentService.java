@@ -0,0 +1,27 @@
+package uk.gov.dwp.uc.pairtest.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Non-blocking counterpart of {@link TicketPaymentService}. The returned future
+ * completes when the payment has been taken, or completes exceptionally with
+ * the failure raised by the gateway.
+ * 
+ * @author raghavendra.araveti
+ */
+public interface AsyncTicketPaymentService {
+
+	CompletableFuture<Void> makePayment(long accountId, int totalAmountToPay);
+
+	/**
+	 * Adapts a blocking payment service by running each call on the given
+	 * executor, so the calling thread never waits on the gateway round trip.
+	 */
+	static AsyncTicketPaymentService adapt(TicketPaymentService paymentService, Executor executor) {
+		return (accountId, totalAmountToPay) -> CompletableFuture
+				.runAsync(() -> paymentService.makePayment(accountId, totalAmountToPay), executor);
+	}
+}
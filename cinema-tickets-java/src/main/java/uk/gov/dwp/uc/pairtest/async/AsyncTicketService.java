@@ -0,0 +1,12 @@
+package uk.gov.dwp.uc.pairtest.async;
+
+import java.util.concurrent.CompletableFuture;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+public interface AsyncTicketService {
+
+    CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId, TicketTypeRequest... ticketTypeRequests);
+
+}
@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.async;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/*
+ * Asynchronous purchase pipeline. Each purchase runs on the pipeline executor
+ * through TicketServiceImpl.purchase, so it takes the same path as a
+ * synchronous purchase: the coordinator admits, pays for and reserves it, and
+ * refunds it if the reservation fails after payment, and the service journals
+ * it and records its metrics. Many orders can be in flight at the same time,
+ * up to the number of pipeline threads, as each holds its thread for its
+ * downstream round trips.
+ * 
+ * Rejected purchases complete normally with the rejected PurchaseResult.
+ * Failures raised by the payment or reservation services complete the
+ * returned future exceptionally.
+ *
+ * @author raghavendra.araveti
+ */
+public class AsyncTicketServiceImpl implements AsyncTicketService {
+
+	private final TicketServiceImpl ticketService;
+	private final Executor executor;
+
+	public AsyncTicketServiceImpl(TicketServiceImpl ticketService, Executor executor) {
+		this.ticketService = ticketService;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId,
+			TicketTypeRequest... ticketTypeRequests) {
+
+		return CompletableFuture.supplyAsync(() -> ticketService.purchase(accountId, ticketTypeRequests), executor);
+	}
+
+	/**
+	 * Creates a fixed-size executor with a bounded work queue for the purchase
+	 * pipeline. When the queue is full the submitting thread runs the task
+	 * itself, which slows producers down instead of queueing without limit.
+	 */
+	public static ExecutorService boundedExecutor(int threads, int queueCapacity) {
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new PipelineThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	private static final class PipelineThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			var thread = new Thread(task, "purchase-pipeline-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package uk.gov.dwp.uc.pairtest.concurrent;
+
+import java.util.concurrent.Semaphore;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Decorator that caps the number of reservations in flight against the seat
+ * reservation service. Callers beyond the cap wait for a permit, which is cheap
+ * when the callers are virtual threads.
+ * 
+ * @author raghavendra.araveti
+ */
+public class BoundedSeatReservationService implements SeatReservationService {
+
+	private final SeatReservationService reservationService;
+	private final Semaphore inFlight;
+
+	public BoundedSeatReservationService(SeatReservationService reservationService, int maxInFlight) {
+		this.reservationService = reservationService;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	@Override
+	public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+		inFlight.acquireUninterruptibly();
+		try {
+			reservationService.reserveSeat(accountId, totalSeatsToAllocate);
+		} finally {
+			inFlight.release();
+		}
+	}
+}
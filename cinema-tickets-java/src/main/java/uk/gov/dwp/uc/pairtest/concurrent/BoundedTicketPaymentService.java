@@ -0,0 +1,33 @@
+package uk.gov.dwp.uc.pairtest.concurrent;
+
+import java.util.concurrent.Semaphore;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Decorator that caps the number of payments in flight against the payment
+ * gateway. Callers beyond the cap wait for a permit, which is cheap when the
+ * callers are virtual threads.
+ * 
+ * @author raghavendra.araveti
+ */
+public class BoundedTicketPaymentService implements TicketPaymentService {
+
+	private final TicketPaymentService paymentService;
+	private final Semaphore inFlight;
+
+	public BoundedTicketPaymentService(TicketPaymentService paymentService, int maxInFlight) {
+		this.paymentService = paymentService;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	@Override
+	public void makePayment(long accountId, int totalAmountToPay) {
+		inFlight.acquireUninterruptibly();
+		try {
+			paymentService.makePayment(accountId, totalAmountToPay);
+		} finally {
+			inFlight.release();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package uk.gov.dwp.uc.pairtest.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.async.AsyncTicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/*
+ * Service facade that runs every purchase on its own virtual thread. The
+ * blocking makePayment and reserveSeat calls park the virtual thread instead of
+ * holding a platform thread, and each downstream service is guarded by its own
+ * in-flight limit so a burst of purchases cannot overwhelm it.
+ *
+ * A purchase runs through TicketServiceImpl.purchase, so a service configured
+ * with its own coordinator, pricing, journal or metrics can be handed in. Its
+ * downstream services are then guarded only by the limits it was built with.
+ *
+ * @author raghavendra.araveti
+ */
+public class VirtualThreadTicketService implements AsyncTicketService, AutoCloseable {
+
+	private final TicketServiceImpl ticketService;
+	private final ExecutorService executor;
+
+	public VirtualThreadTicketService(TicketPaymentService paymentService, SeatReservationService reservationService,
+			int maxPaymentsInFlight, int maxReservationsInFlight) {
+		this(new TicketServiceImpl(new BoundedTicketPaymentService(paymentService, maxPaymentsInFlight),
+				new BoundedSeatReservationService(reservationService, maxReservationsInFlight)));
+	}
+
+	public VirtualThreadTicketService(TicketServiceImpl ticketService) {
+		this.ticketService = ticketService;
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("purchase-", 0).factory());
+	}
+
+	@Override
+	public CompletableFuture<PurchaseResult> purchaseTicketsAsync(Long accountId,
+			TicketTypeRequest... ticketTypeRequests) {
+		return CompletableFuture.supplyAsync(() -> ticketService.purchase(accountId, ticketTypeRequests), executor);
+	}
+
+	/**
+	 * Stops accepting purchases and waits for those already submitted to finish.
+	 */
+	@Override
+	public void close() {
+		executor.close();
+	}
+}
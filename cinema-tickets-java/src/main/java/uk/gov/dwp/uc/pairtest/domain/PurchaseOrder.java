@@ -0,0 +1,31 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ * 
+ * A single queued purchase: the account to charge and the ticket type
+ * requests it carries. Used to submit many purchases to the ticket service in
+ * one call.
+ * 
+ * @author raghavendra.araveti
+ */
+
+public final class PurchaseOrder {
+
+    private final Long accountId;
+    private final TicketTypeRequest[] ticketTypeRequests;
+
+    public PurchaseOrder(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        this.accountId = accountId;
+        this.ticketTypeRequests = ticketTypeRequests;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public TicketTypeRequest[] getTicketTypeRequests() {
+        return ticketTypeRequests;
+    }
+
+}
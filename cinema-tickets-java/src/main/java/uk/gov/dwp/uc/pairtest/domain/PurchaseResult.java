@@ -0,0 +1,62 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Immutable Object
+ * 
+ * Outcome of a single purchase. An accepted purchase carries the total price
+ * charged and the number of seats reserved; a rejected purchase carries the
+ * {@link PurchaseErrorCode} explaining why it was refused.
+ * 
+ * Rejected results hold no per-purchase state, so one shared instance per
+ * error code is created up front and reused for every rejection.
+ * 
+ * @author raghavendra.araveti
+ */
+
+public final class PurchaseResult {
+
+    private static final PurchaseResult[] REJECTIONS = new PurchaseResult[PurchaseErrorCode.values().length];
+
+    static {
+        for (var errorCode : PurchaseErrorCode.values()) {
+            REJECTIONS[errorCode.ordinal()] = new PurchaseResult(errorCode, 0, 0);
+        }
+    }
+
+    private final PurchaseErrorCode errorCode;
+    private final int totalPrice;
+    private final int numSeats;
+
+    private PurchaseResult(PurchaseErrorCode errorCode, int totalPrice, int numSeats) {
+        this.errorCode = errorCode;
+        this.totalPrice = totalPrice;
+        this.numSeats = numSeats;
+    }
+
+    public static PurchaseResult accepted(int totalPrice, int numSeats) {
+        return new PurchaseResult(null, totalPrice, numSeats);
+    }
+
+    public static PurchaseResult rejected(PurchaseErrorCode errorCode) {
+        return REJECTIONS[errorCode.ordinal()];
+    }
+
+    public boolean isAccepted() {
+        return errorCode == null;
+    }
+
+    public PurchaseErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public int getTotalPrice() {
+        return totalPrice;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+}
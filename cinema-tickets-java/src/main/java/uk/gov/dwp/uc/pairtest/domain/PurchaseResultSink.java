@@ -0,0 +1,20 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Receives the outcome of validating a purchase in place of a
+ * {@link PurchaseResult}, so that callers which keep their orders in
+ * preallocated fields can validate them without allocating. Exactly one of the
+ * methods is called for each purchase validated.
+ *
+ * @author raghavendra.araveti
+ */
+
+public interface PurchaseResultSink {
+
+    void accepted(int totalPrice, int numSeats);
+
+    void rejected(PurchaseErrorCode errorCode);
+
+}
@@ -0,0 +1,40 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ * 
+ * A single showing of a film: which cinema it is in and which time band it
+ * falls into. Purchases made against a screening are priced for it.
+ * 
+ * @author raghavendra.araveti
+ */
+
+public final class Screening {
+
+    private final long screeningId;
+    private final int cinemaId;
+    private final TimeBand timeBand;
+
+    public Screening(long screeningId, int cinemaId, TimeBand timeBand) {
+        this.screeningId = screeningId;
+        this.cinemaId = cinemaId;
+        this.timeBand = timeBand;
+    }
+
+    public long getScreeningId() {
+        return screeningId;
+    }
+
+    public int getCinemaId() {
+        return cinemaId;
+    }
+
+    public TimeBand getTimeBand() {
+        return timeBand;
+    }
+
+    public enum TimeBand {
+        PEAK, OFF_PEAK
+    }
+
+}
@@ -0,0 +1,90 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Bounded lock-free queue for many producers and a single consumer, after
+ * Dmitry Vyukov's bounded queue. Each slot carries a sequence number: a slot
+ * is free for the producer that claims position p when its sequence is p, and
+ * holds an element for the consumer at position p when its sequence is p + 1.
+ * Producers claim positions with a CAS on the tail; the consumer owns the head
+ * outright and needs no atomic read-modify-write at all.
+ *
+ * The sequence of a slot is published with a volatile write after the element,
+ * so a consumer that sees the sequence also sees the element.
+ *
+ * @author raghavendra.araveti
+ */
+final class BoundedMpscQueue<E> {
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+
+	// Only read and written by the consumer
+	private long head;
+
+	BoundedMpscQueue(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.elements = new AtomicReferenceArray<>(this.capacity);
+		this.sequences = new AtomicLongArray(this.capacity);
+		for (var i = 0; i < this.capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds the element if there is room. Safe to call from any thread.
+	 * 
+	 * @return false if the queue is full
+	 */
+	boolean offer(E element) {
+		while (true) {
+			var position = tail.get();
+			var index = (int) position & mask;
+			var sequence = sequences.get(index);
+			if (sequence == position) {
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.lazySet(index, element);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			} else if (sequence < position) {
+				return false;
+			}
+			// Otherwise another producer claimed this position first; try the next one
+		}
+	}
+
+	/**
+	 * Takes the oldest element, or returns null if the queue is empty. Only the
+	 * consumer thread may call this.
+	 */
+	E poll() {
+		var index = (int) head & mask;
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		var element = elements.get(index);
+		elements.lazySet(index, null);
+		sequences.lazySet(index, head + capacity);
+		head++;
+		return element;
+	}
+
+	/**
+	 * Only the consumer thread may call this.
+	 */
+	boolean isEmpty() {
+		return sequences.get((int) head & mask) != head + 1;
+	}
+
+	int capacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,386 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.resilience.ServiceUnavailableException;
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatMap;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+import uk.gov.dwp.uc.pairtest.seating.SeatsUnavailableException;
+
+/*
+ * Purchase engine that partitions screenings by hash over a fixed set of
+ * shards, one thread per shard. A shard owns the seat maps of its screenings
+ * outright: they are only ever read or written by the shard's thread, so
+ * seat allocation never contends and never blocks. Callers reach a shard
+ * through its BoundedMpscQueue and wait for the answer.
+ *
+ * Only seat allocation runs on the shard. Validation and pricing run on the
+ * calling thread before the seats are taken, and the payment runs on the
+ * calling thread after, so a slow payment gateway never holds up a shard. A
+ * payment that fails gives the seats back. Purchases that get past validation
+ * are journaled and counted in the journal and metrics of the
+ * TicketServiceImpl, if it has them, as they would be by the service itself.
+ *
+ * A full shard queue pushes back on its callers, which yield until there is
+ * room. An idle shard spins briefly before parking, and callers unpark it when
+ * they hand it work. Work handed to a closed engine fails with an
+ * IllegalStateException; a caller that slipped its command in as the shard
+ * stopped sees the shard thread gone and fails the same way. Seats given back
+ * are the exception: they are still queued, in case the shard is draining.
+ *
+ * @author raghavendra.araveti
+ */
+public final class ShardedPurchaseEngine implements AutoCloseable {
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	private static final int IDLE_SPINS = 1024;
+	private static final long IDLE_PARK_NANOS = 1_000_000;
+	private static final long AWAIT_PARK_NANOS = 1_000_000;
+
+	private final TicketServiceImpl ticketService;
+	private final TicketPaymentService paymentService;
+	private final Shard[] shards;
+	private volatile boolean running = true;
+
+	private ShardedPurchaseEngine(TicketServiceImpl ticketService, TicketPaymentService paymentService, int shardCount,
+			int queueCapacity) {
+		this.ticketService = ticketService;
+		this.paymentService = paymentService;
+		this.shards = new Shard[shardCount];
+		for (var i = 0; i < shardCount; i++) {
+			shards[i] = new Shard(i, queueCapacity);
+		}
+	}
+
+	/**
+	 * Starts an engine with a shard per available processor.
+	 */
+	public static ShardedPurchaseEngine start(TicketServiceImpl ticketService, TicketPaymentService paymentService) {
+		return start(ticketService, paymentService, Runtime.getRuntime().availableProcessors(),
+				DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param ticketService  validates and prices purchases; its downstream
+	 *                       services are not used
+	 * @param paymentService takes payment for purchases that got their seats
+	 */
+	public static ShardedPurchaseEngine start(TicketServiceImpl ticketService, TicketPaymentService paymentService,
+			int shardCount, int queueCapacity) {
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("At least one shard is required");
+		}
+		var engine = new ShardedPurchaseEngine(ticketService, paymentService, shardCount, queueCapacity);
+		for (var shard : engine.shards) {
+			shard.thread.start();
+		}
+		return engine;
+	}
+
+	public void addScreening(long screeningId, SeatLayout layout) {
+		shardFor(screeningId).call(new Command(Kind.ADD_SCREENING, screeningId, layout, 0, null));
+	}
+
+	/**
+	 * Validates the purchase, takes its seats in the shard that owns the
+	 * screening and then takes payment.
+	 * 
+	 * @throws IllegalArgumentException if the screening was never added
+	 */
+	public PurchaseResult purchase(Screening screening, Long accountId, TicketTypeRequest... ticketTypeRequests) {
+		if (screening == null) {
+			throw new IllegalArgumentException("A screening is required to purchase from the sharded engine");
+		}
+
+		var result = ticketService.validatePurchase(screening, accountId, ticketTypeRequests);
+		if (!result.isAccepted()) {
+			return result;
+		}
+
+		// Take the seats on the owning shard, turning the purchase away unpaid if there are not enough
+		var metrics = ticketService.getMetrics();
+		var journal = ticketService.getJournal();
+		var screeningId = screening.getScreeningId();
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+		int[] seats;
+		try {
+			seats = reserveSeats(screeningId, result.getNumSeats());
+		} catch (SeatsUnavailableException e) {
+			return reject(accountId, screeningId, ticketTypeRequests, PurchaseErrorCode.INSUFFICIENT_SEATS, metrics,
+					journal);
+		} finally {
+			if (metrics != null) {
+				startNanos = metrics.recordStage(PurchaseStage.RESERVATION, startNanos);
+			}
+		}
+
+		// Make payment, giving the seats back if that fails
+		try {
+			paymentService.makePayment(accountId, result.getTotalPrice());
+		} catch (ServiceUnavailableException e) {
+			giveBack(screeningId, seats, e);
+			return reject(accountId, screeningId, ticketTypeRequests, e.getErrorCode(), metrics, journal);
+		} catch (RuntimeException e) {
+			giveBack(screeningId, seats, e);
+			if (journal != null) {
+				journal.recordFailure(accountId, screeningId, ticketTypeRequests, result);
+			}
+			throw e;
+		} finally {
+			if (metrics != null) {
+				metrics.recordStage(PurchaseStage.PAYMENT, startNanos);
+			}
+		}
+
+		if (metrics != null) {
+			metrics.recordAccepted();
+		}
+		if (journal != null) {
+			journal.recordPurchase(accountId, screeningId, ticketTypeRequests, result, seats);
+		}
+		return result;
+	}
+
+	private static PurchaseResult reject(Long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseErrorCode errorCode, PurchaseMetrics metrics, PurchaseJournal journal) {
+
+		var result = PurchaseResult.rejected(errorCode);
+		if (metrics != null) {
+			metrics.recordRejected(errorCode);
+		}
+		if (journal != null) {
+			journal.recordPurchase(accountId, screeningId, ticketTypeRequests, result);
+		}
+		return result;
+	}
+
+	/*
+	 * Gives back the seats of a purchase whose payment failed. Should the engine
+	 * close meanwhile, the release is still queued for a shard that is draining
+	 * its queue; if even that is too late, the seats go with the closed engine
+	 * and the failure to release them is attached to the payment failure rather
+	 * than thrown in its place.
+	 */
+	private void giveBack(long screeningId, int[] seats, RuntimeException paymentFailure) {
+		try {
+			releaseSeats(screeningId, seats);
+		} catch (RuntimeException e) {
+			paymentFailure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Takes the best available seats in a screening and returns which seats were
+	 * taken.
+	 * 
+	 * @throws SeatsUnavailableException if fewer seats are free than requested
+	 */
+	public int[] reserveSeats(long screeningId, int totalSeatsToAllocate) {
+		var command = new Command(Kind.RESERVE, screeningId, null, totalSeatsToAllocate, null);
+		return shardFor(screeningId).call(command).seats;
+	}
+
+	/**
+	 * Gives seats back to a screening. Returns without waiting for the shard.
+	 */
+	public void releaseSeats(long screeningId, int[] seats) {
+		shardFor(screeningId).submit(new Command(Kind.RELEASE, screeningId, null, 0, seats));
+	}
+
+	public int availableSeats(long screeningId) {
+		return shardFor(screeningId).call(new Command(Kind.AVAILABLE, screeningId, null, 0, null)).count;
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * Stops the shards once the work already queued has been done.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for (var shard : shards) {
+			LockSupport.unpark(shard.thread);
+		}
+		for (var shard : shards) {
+			try {
+				shard.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static IllegalStateException closed() {
+		return new IllegalStateException("Purchase engine has been closed");
+	}
+
+	private Shard shardFor(long screeningId) {
+		// Fibonacci hashing spreads sequential screening ids evenly over the shards
+		var hash = (int) ((screeningId * 0x9E3779B97F4A7C15L) >>> 32);
+		return shards[Math.floorMod(hash, shards.length)];
+	}
+
+	private final class Shard {
+
+		private final BoundedMpscQueue<Command> commands;
+		private final HashMap<Long, ScreeningSeatMap> screenings = new HashMap<>();
+		private final Thread thread;
+		private volatile boolean parked;
+
+		Shard(int index, int queueCapacity) {
+			this.commands = new BoundedMpscQueue<>(queueCapacity);
+			this.thread = Thread.ofPlatform().name("purchase-shard-" + index).daemon().unstarted(this::runUntilClosed);
+		}
+
+		Command call(Command command) {
+			submit(command);
+			command.await(thread);
+			if (command.failure != null) {
+				throw command.failure;
+			}
+			return command;
+		}
+
+		void submit(Command command) {
+			// Nobody waits for a release, so it is still worth handing to a shard that may be draining its queue
+			if (!running && command.kind != Kind.RELEASE) {
+				throw closed();
+			}
+			while (!commands.offer(command)) {
+				if (!running) {
+					throw closed();
+				}
+				Thread.yield();
+			}
+			if (parked) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		private void runUntilClosed() {
+			var idle = 0;
+			while (running || !commands.isEmpty()) {
+				var command = commands.poll();
+				if (command != null) {
+					execute(command);
+					idle = 0;
+				} else if (++idle < IDLE_SPINS) {
+					Thread.onSpinWait();
+				} else {
+					// Publish parked before the last look at the queue, so a caller either sees it or is seen
+					parked = true;
+					if (running && commands.isEmpty()) {
+						LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+					}
+					parked = false;
+					idle = 0;
+				}
+			}
+		}
+
+		private void execute(Command command) {
+			try {
+				switch (command.kind) {
+				case ADD_SCREENING:
+					if (screenings.putIfAbsent(command.screeningId,
+							new ScreeningSeatMap(command.screeningId, command.layout)) != null) {
+						throw new IllegalStateException("Screening " + command.screeningId + " already exists");
+					}
+					break;
+				case RESERVE:
+					command.seats = screening(command.screeningId).claimBestAvailable(command.count);
+					break;
+				case RELEASE:
+					screening(command.screeningId).release(command.seats);
+					break;
+				case AVAILABLE:
+					command.count = screening(command.screeningId).availableSeats();
+					break;
+				}
+			} catch (RuntimeException e) {
+				command.failure = e;
+			}
+			command.complete();
+		}
+
+		private ScreeningSeatMap screening(long screeningId) {
+			var seatMap = screenings.get(screeningId);
+			if (seatMap == null) {
+				throw new IllegalArgumentException("Unknown screening " + screeningId);
+			}
+			return seatMap;
+		}
+	}
+
+	private enum Kind {
+		ADD_SCREENING, RESERVE, RELEASE, AVAILABLE
+	}
+
+	/*
+	 * One request to a shard. The fields other than done are written before
+	 * done is set and read after it is seen, so done publishes them.
+	 */
+	private static final class Command {
+
+		private static final int AWAIT_SPINS = 256;
+
+		final Kind kind;
+		final long screeningId;
+		final SeatLayout layout;
+		final Thread waiter = Thread.currentThread();
+		int count;
+		int[] seats;
+		RuntimeException failure;
+		private volatile boolean done;
+
+		Command(Kind kind, long screeningId, SeatLayout layout, int count, int[] seats) {
+			this.kind = kind;
+			this.screeningId = screeningId;
+			this.layout = layout;
+			this.count = count;
+			this.seats = seats;
+		}
+
+		/*
+		 * Waits for the shard to run the command. A command offered just as the
+		 * shard stopped is never run, so the wait fails once the shard thread has
+		 * ended without completing it.
+		 */
+		void await(Thread shardThread) {
+			for (var spins = 0; !done && spins < AWAIT_SPINS; spins++) {
+				Thread.onSpinWait();
+			}
+			while (!done) {
+				if (!shardThread.isAlive()) {
+					// The thread ending happens-before isAlive returns false, so done is now final
+					if (!done) {
+						failure = closed();
+					}
+					return;
+				}
+				LockSupport.parkNanos(this, AWAIT_PARK_NANOS);
+			}
+		}
+
+		void complete() {
+			done = true;
+			if (kind != Kind.RELEASE) {
+				LockSupport.unpark(waiter);
+			}
+		}
+	}
+}
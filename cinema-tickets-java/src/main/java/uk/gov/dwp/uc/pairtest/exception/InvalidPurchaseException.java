@@ -27,6 +27,16 @@ public class InvalidPurchaseException extends RuntimeException {
 		this.errorCode = errorCode;
 	}
 
+	/**
+	 * Creates an exception that optionally skips filling in the stack trace.
+	 * Rejections are expected outcomes on hot paths, where capturing a stack
+	 * trace per rejected purchase costs far more than the validation itself.
+	 */
+	public InvalidPurchaseException(PurchaseErrorCode errorCode, String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+		this.errorCode = errorCode;
+	}
+
 	public PurchaseErrorCode getErrorCode() {
 		return errorCode;
 	}
@@ -16,5 +16,7 @@ package uk.gov.dwp.uc.pairtest.exception;
  */
 public enum PurchaseErrorCode {
 
-	INVALID_ACCOUNT_ID, MISSING_TICKET_REQUEST, INVALID_TICKET_QUANTITY, MAX_TICKETS_EXCEEDED, MISSING_ADULT_TICKET
+	INVALID_ACCOUNT_ID, MISSING_TICKET_REQUEST, INVALID_TICKET_QUANTITY, MAX_TICKETS_EXCEEDED, MISSING_ADULT_TICKET, RATE_LIMITED,
+	INSUFFICIENT_SEATS, PAYMENT_UNAVAILABLE, RESERVATION_UNAVAILABLE, PURCHASE_FAILED,
+	IDEMPOTENCY_KEY_REUSED, IDEMPOTENCY_CACHE_FULL
 }
@@ -0,0 +1,208 @@
+package uk.gov.dwp.uc.pairtest.idempotency;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Bounded cache of recent purchase outcomes keyed by account and idempotency
+ * key. Entries expire a fixed time after they were added and the oldest
+ * entries are evicted once the cache is full.
+ * 
+ * The cache is split into independently locked stripes, each an
+ * insertion-ordered map, so concurrent purchases only contend when their keys
+ * hash to the same stripe. Because every entry lives for the same time, the
+ * oldest entry in a stripe is always the first to expire and eviction works
+ * from the head of the map.
+ * 
+ * An entry whose purchase is still in progress is never evicted, even once it
+ * has expired, as a retry under its key would then be charged again. A stripe
+ * full of such entries turns new keys away instead. Each entry also keeps a
+ * fingerprint of the request it was made for, so that reusing a key for a
+ * different request is rejected rather than answered with the wrong outcome.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class IdempotencyCache {
+
+	private final Stripe[] stripes;
+	private final int stripeMask;
+	private final int maxEntriesPerStripe;
+	private final long ttlNanos;
+	private final LongSupplier nanoClock;
+
+	public IdempotencyCache(int maxEntries, Duration ttl, int concurrencyLevel) {
+		this(maxEntries, ttl, concurrencyLevel, System::nanoTime);
+	}
+
+	IdempotencyCache(int maxEntries, Duration ttl, int concurrencyLevel, LongSupplier nanoClock) {
+		var stripeCount = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+		this.stripes = new Stripe[stripeCount];
+		for (var i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.stripeMask = stripeCount - 1;
+		this.maxEntriesPerStripe = Math.max(1, (maxEntries + stripeCount - 1) / stripeCount);
+		this.ttlNanos = ttl.toNanos();
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Registers the outcome of a purchase about to be made by the account under
+	 * the given key, for the request with the given {@link #fingerprint}.
+	 * 
+	 * @return the outcome already recorded for the key, which may still be in
+	 *         progress; an IDEMPOTENCY_KEY_REUSED rejection if the key was
+	 *         recorded for a different request; an IDEMPOTENCY_CACHE_FULL
+	 *         rejection if the stripe is full of purchases still in progress; or
+	 *         null if the caller now owns the key and must complete
+	 *         {@code pending}
+	 */
+	public CompletableFuture<PurchaseResult> putIfAbsent(long accountId, String idempotencyKey, long fingerprint,
+			CompletableFuture<PurchaseResult> pending) {
+		var key = new Key(accountId, idempotencyKey);
+		var stripe = stripeFor(key);
+		var now = nanoClock.getAsLong();
+
+		stripe.lock.lock();
+		try {
+			var existing = stripe.entries.get(key);
+			if (existing != null && (!existing.outcome.isDone() || existing.expiresAt - now > 0)) {
+				return existing.fingerprint == fingerprint ? existing.outcome
+						: rejected(PurchaseErrorCode.IDEMPOTENCY_KEY_REUSED);
+			}
+
+			stripe.entries.remove(key);
+			stripe.evict(now, maxEntriesPerStripe - 1);
+			if (stripe.entries.size() >= maxEntriesPerStripe) {
+				return rejected(PurchaseErrorCode.IDEMPOTENCY_CACHE_FULL);
+			}
+			stripe.entries.put(key, new Entry(pending, fingerprint, now + ttlNanos));
+			return null;
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the key if it still maps to the given outcome, so that a purchase
+	 * that failed can be retried under the same key.
+	 */
+	public void remove(long accountId, String idempotencyKey, CompletableFuture<PurchaseResult> outcome) {
+		var key = new Key(accountId, idempotencyKey);
+		var stripe = stripeFor(key);
+
+		stripe.lock.lock();
+		try {
+			var existing = stripe.entries.get(key);
+			if (existing != null && existing.outcome == outcome) {
+				stripe.entries.remove(key);
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Fingerprints a request from the type and quantity of each of its ticket
+	 * type requests, in order.
+	 */
+	public static long fingerprint(TicketTypeRequest... ticketTypeRequests) {
+		var fingerprint = 1L;
+		if (ticketTypeRequests != null) {
+			for (var request : ticketTypeRequests) {
+				fingerprint = 31 * fingerprint + (request != null ? request.getTicketType().ordinal() : -1);
+				fingerprint = 31 * fingerprint + (request != null ? request.getNoOfTickets() : 0);
+			}
+		}
+		return fingerprint;
+	}
+
+	public int size() {
+		var size = 0;
+		for (var stripe : stripes) {
+			stripe.lock.lock();
+			try {
+				size += stripe.entries.size();
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	private Stripe stripeFor(Key key) {
+		var hash = key.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+	}
+
+	private static CompletableFuture<PurchaseResult> rejected(PurchaseErrorCode errorCode) {
+		return CompletableFuture.completedFuture(PurchaseResult.rejected(errorCode));
+	}
+
+	private static final class Stripe {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+		/*
+		 * Drops completed entries from the head of the map while they have
+		 * expired or more than maxEntries remain, skipping over entries whose
+		 * purchase is still in progress.
+		 */
+		void evict(long now, int maxEntries) {
+			var iterator = entries.values().iterator();
+			while (iterator.hasNext()) {
+				var entry = iterator.next();
+				if (!entry.outcome.isDone()) {
+					continue;
+				}
+				if (entry.expiresAt - now > 0 && entries.size() <= maxEntries) {
+					return;
+				}
+				iterator.remove();
+			}
+		}
+	}
+
+	private static final class Key {
+
+		private final long accountId;
+		private final String idempotencyKey;
+
+		Key(long accountId, String idempotencyKey) {
+			this.accountId = accountId;
+			this.idempotencyKey = idempotencyKey;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key key && key.accountId == accountId
+					&& key.idempotencyKey.equals(idempotencyKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.hashCode(accountId) + idempotencyKey.hashCode();
+		}
+	}
+
+	private static final class Entry {
+
+		private final CompletableFuture<PurchaseResult> outcome;
+		private final long fingerprint;
+		private final long expiresAt;
+
+		Entry(CompletableFuture<PurchaseResult> outcome, long fingerprint, long expiresAt) {
+			this.outcome = outcome;
+			this.fingerprint = fingerprint;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package uk.gov.dwp.uc.pairtest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a call to the payment service.
+ * 
+ * @author raghavendra.araveti
+ */
+@Name("uk.gov.dwp.uc.pairtest.Payment")
+@Label("Payment")
+@Category({ "Cinema Tickets", "Purchase" })
+@Description("Call to the payment service to take payment for a purchase")
+@StackTrace(false)
+public final class PaymentEvent extends Event {
+
+	@Label("Account Id")
+	public long accountId;
+
+	@Label("Seats")
+	public int numSeats;
+
+	@Label("Total Price")
+	public int totalPrice;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+}
@@ -0,0 +1,34 @@
+package uk.gov.dwp.uc.pairtest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for the price computed for an accepted purchase.
+ * 
+ * @author raghavendra.araveti
+ */
+@Name("uk.gov.dwp.uc.pairtest.PurchasePriced")
+@Label("Purchase Priced")
+@Category({ "Cinema Tickets", "Purchase" })
+@Description("Total price computed for an accepted purchase")
+@StackTrace(false)
+public final class PurchasePricedEvent extends Event {
+
+	@Label("Account Id")
+	public long accountId;
+
+	@Label("Screening Id")
+	@Description("Screening the purchase was priced for, or 0 if it was priced with the default price table")
+	public long screeningId;
+
+	@Label("Seats")
+	public int numSeats;
+
+	@Label("Total Price")
+	public int totalPrice;
+}
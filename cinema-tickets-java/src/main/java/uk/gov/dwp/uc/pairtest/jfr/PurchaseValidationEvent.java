@@ -0,0 +1,34 @@
+package uk.gov.dwp.uc.pairtest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for the validation of a purchase, accepted or not.
+ * 
+ * @author raghavendra.araveti
+ */
+@Name("uk.gov.dwp.uc.pairtest.PurchaseValidation")
+@Label("Purchase Validation")
+@Category({ "Cinema Tickets", "Purchase" })
+@Description("Validation of the ticket requests of a purchase")
+@StackTrace(false)
+public final class PurchaseValidationEvent extends Event {
+
+	@Label("Account Id")
+	public long accountId;
+
+	@Label("Error Code")
+	@Description("Why the purchase was rejected, or null if it was accepted")
+	public String errorCode;
+
+	@Label("Seats")
+	public int numSeats;
+
+	@Label("Total Price")
+	public int totalPrice;
+}
@@ -0,0 +1,34 @@
+package uk.gov.dwp.uc.pairtest.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a call to reserve, or hold, the seats of a
+ * purchase.
+ * 
+ * @author raghavendra.araveti
+ */
+@Name("uk.gov.dwp.uc.pairtest.SeatReservation")
+@Label("Seat Reservation")
+@Category({ "Cinema Tickets", "Purchase" })
+@Description("Call to reserve or hold the seats of a purchase")
+@StackTrace(false)
+public final class SeatReservationEvent extends Event {
+
+	@Label("Account Id")
+	public long accountId;
+
+	@Label("Seats")
+	public int numSeats;
+
+	@Label("Total Price")
+	public int totalPrice;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+}
@@ -0,0 +1,28 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+/**
+ * When the {@link PurchaseJournal} forces appended records to disk.
+ * 
+ * @author raghavendra.araveti
+ */
+public enum FsyncPolicy {
+
+	/**
+	 * Never force; records reach the disk when the operating system writes the
+	 * pages back. They survive a crash of the process but not of the machine.
+	 */
+	NEVER,
+
+	/**
+	 * Force in the background at a fixed interval. A crash of the machine loses
+	 * at most one interval of records, and appends never wait for the disk.
+	 */
+	PERIODIC,
+
+	/**
+	 * Every append waits until its record has been forced. Appends that arrive
+	 * while a force is running are forced together by the next one, so the cost
+	 * of a force is shared by every purchase in the group.
+	 */
+	ALWAYS
+}
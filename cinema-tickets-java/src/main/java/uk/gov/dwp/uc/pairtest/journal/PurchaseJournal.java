@@ -0,0 +1,485 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/*
+ * Append-only journal of purchases, written as fixed-size 144 byte records to
+ * memory-mapped segment files named after the sequence of their first record.
+ * Appending copies one record into the mapped segment under a lock, so it
+ * costs a memory copy rather than a system call; when a segment is full the
+ * next one is created and mapped. Each record starts with a magic number and a
+ * CRC32C of the rest, so a record torn by a crash is recognised and ends the
+ * journal when it is reopened or replayed.
+ *
+ * How appended records reach the disk is set by the FsyncPolicy. Forcing is
+ * done by a single background thread, so under ALWAYS every purchase that
+ * arrives while a force is in progress is made durable by the next one.
+ *
+ * Record layout, little-endian: magic (int), CRC32C of bytes 8 to 143 (int),
+ * sequence (long), timestamp in epoch millis (long), account id (long),
+ * screening id (long), total price (int), seats (int), outcome (byte),
+ * PurchaseErrorCode ordinal + 1 or 0 (byte), number of seat indexes recorded
+ * (short), the ticket count of each TicketTypeRequest.Type in ordinal order
+ * (int each), then up to 20 seat indexes (int each). A completed purchase
+ * records the exact seats it was given whenever its reservation service says
+ * which seats it took, so that recovery can take back the very same seats.
+ *
+ * @author raghavendra.araveti
+ */
+public final class PurchaseJournal implements AutoCloseable {
+
+	static final int RECORD_SIZE = 144;
+	static final int MAX_SEATS_PER_RECORD = 20;
+
+	private static final int MAGIC = 0x50524A32;
+	private static final int TICKET_COUNTS_OFFSET = 52;
+	private static final int SEATS_OFFSET = 64;
+	private static final String SEGMENT_PREFIX = "purchases-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+
+	private final Path directory;
+	private final int recordsPerSegment;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncIntervalNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition appended = lock.newCondition();
+	private final Condition forced = lock.newCondition();
+	private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final CRC32C crc = new CRC32C();
+	private final Thread flusher;
+
+	// Guarded by lock
+	private Segment segment;
+	private long lastSequence;
+	private long forcedSequence;
+	private RuntimeException forceFailure;
+	private boolean closed;
+
+	private PurchaseJournal(Path directory, int recordsPerSegment, FsyncPolicy fsyncPolicy, Duration fsyncInterval,
+			Segment segment) {
+		this.directory = directory;
+		this.recordsPerSegment = recordsPerSegment;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalNanos = fsyncInterval.toNanos();
+		this.segment = segment;
+		this.lastSequence = segment.firstSequence + segment.count - 1;
+		this.forcedSequence = lastSequence;
+		this.flusher = fsyncPolicy == FsyncPolicy.NEVER ? null
+				: Thread.ofPlatform().name("purchase-journal-fsync").daemon().unstarted(this::forceUntilClosed);
+	}
+
+	/**
+	 * Opens the journal in the directory, creating it if needed, and continues
+	 * after the last intact record. fsyncInterval is only used by PERIODIC.
+	 */
+	public static PurchaseJournal open(Path directory, int recordsPerSegment, FsyncPolicy fsyncPolicy,
+			Duration fsyncInterval) throws IOException {
+		if (recordsPerSegment <= 0) {
+			throw new IllegalArgumentException("A segment must hold at least one record");
+		}
+		Files.createDirectories(directory);
+
+		var segments = segmentFiles(directory);
+		Segment segment;
+		if (segments.isEmpty()) {
+			segment = Segment.create(directory, 1, recordsPerSegment);
+		} else if (Files.size(segments.get(segments.size() - 1)) < RECORD_SIZE) {
+			// A crash just after a segment was created can leave it empty; start it again at full size
+			var last = segments.get(segments.size() - 1);
+			Files.delete(last);
+			segment = Segment.create(directory, firstSequenceOf(last), recordsPerSegment);
+		} else {
+			var last = segments.get(segments.size() - 1);
+			segment = Segment.open(last, firstSequenceOf(last));
+			segment.count = countIntactRecords(segment.buffer, segment.firstSequence);
+		}
+
+		var journal = new PurchaseJournal(directory, recordsPerSegment, fsyncPolicy, fsyncInterval, segment);
+		if (journal.flusher != null) {
+			journal.flusher.start();
+		}
+		return journal;
+	}
+
+	/**
+	 * Records the outcome of a purchase whose downstream steps ran: COMPLETED if
+	 * the result is accepted, REJECTED with its error code if not.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordPurchase(long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseResult result) {
+		return recordPurchase(accountId, screeningId, ticketTypeRequests, result, null);
+	}
+
+	/**
+	 * Records the outcome of a purchase together with the indexes of the seats
+	 * it was given, or null if they are not known.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordPurchase(long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseResult result, int[] seats) {
+		if (seats != null && seats.length > MAX_SEATS_PER_RECORD) {
+			throw new IllegalArgumentException("A journal record holds at most " + MAX_SEATS_PER_RECORD + " seats");
+		}
+		var outcome = result.isAccepted() ? PurchaseRecord.Outcome.COMPLETED : PurchaseRecord.Outcome.REJECTED;
+		return append(accountId, screeningId, ticketTypeRequests, 0, 0, 0, result.getTotalPrice(),
+				result.getNumSeats(), result.getErrorCode(), outcome, seats);
+	}
+
+	/**
+	 * Records the outcome of a purchase given as a count of tickets per type, for
+	 * callers that keep their orders in primitive fields: COMPLETED if the error
+	 * code is null, REJECTED with it if not.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordPurchase(long accountId, long screeningId, int adultTickets, int childTickets,
+			int infantTickets, int totalPrice, int numSeats, PurchaseErrorCode errorCode) {
+		return recordPurchase(accountId, screeningId, adultTickets, childTickets, infantTickets, totalPrice, numSeats,
+				errorCode, null);
+	}
+
+	/**
+	 * Records the outcome of a purchase given as a count of tickets per type
+	 * together with the indexes of the seats it was given, or null if they are
+	 * not known.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordPurchase(long accountId, long screeningId, int adultTickets, int childTickets,
+			int infantTickets, int totalPrice, int numSeats, PurchaseErrorCode errorCode, int[] seats) {
+		if (seats != null && seats.length > MAX_SEATS_PER_RECORD) {
+			throw new IllegalArgumentException("A journal record holds at most " + MAX_SEATS_PER_RECORD + " seats");
+		}
+		var outcome = errorCode == null ? PurchaseRecord.Outcome.COMPLETED : PurchaseRecord.Outcome.REJECTED;
+		return append(accountId, screeningId, null, adultTickets, childTickets, infantTickets, totalPrice, numSeats,
+				errorCode, outcome, seats);
+	}
+
+	/**
+	 * Records a validated purchase whose payment or reservation failed with an
+	 * exception.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordFailure(long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests,
+			PurchaseResult result) {
+		return append(accountId, screeningId, ticketTypeRequests, 0, 0, 0, result.getTotalPrice(),
+				result.getNumSeats(), result.getErrorCode(), PurchaseRecord.Outcome.FAILED, null);
+	}
+
+	/**
+	 * Records a validated purchase, given as a count of tickets per type, whose
+	 * payment or reservation failed with an exception.
+	 * 
+	 * @return the sequence of the record
+	 */
+	public long recordFailure(long accountId, long screeningId, int adultTickets, int childTickets,
+			int infantTickets, int totalPrice, int numSeats) {
+		return append(accountId, screeningId, null, adultTickets, childTickets, infantTickets, totalPrice, numSeats,
+				null, PurchaseRecord.Outcome.FAILED, null);
+	}
+
+	public long getLastSequence() {
+		lock.lock();
+		try {
+			return lastSequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads every intact record with a sequence greater than afterSequence, in
+	 * order, stopping at the first torn or missing record.
+	 */
+	public static void replay(Path directory, long afterSequence, Consumer<PurchaseRecord> consumer)
+			throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		var segments = segmentFiles(directory);
+		for (var i = 0; i < segments.size(); i++) {
+			// Skip segments that end before the records wanted
+			if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+				continue;
+			}
+			var firstSequence = firstSequenceOf(segments.get(i));
+			try (var channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+				var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+						.order(ByteOrder.LITTLE_ENDIAN);
+				var count = countIntactRecords(buffer, firstSequence);
+				for (var index = 0; index < count; index++) {
+					if (firstSequence + index > afterSequence) {
+						consumer.accept(decode(buffer, index * RECORD_SIZE));
+					}
+				}
+				if (count < buffer.capacity() / RECORD_SIZE) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forces any records not yet on disk and closes the journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			appended.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (flusher != null) {
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		lock.lock();
+		try {
+			segment.buffer.force();
+			forcedSequence = lastSequence;
+			forced.signalAll();
+			segment.channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * Appends a record whose ticket counts are the given counts plus those of
+	 * the requests, if any.
+	 */
+	private long append(long accountId, long screeningId, TicketTypeRequest[] ticketTypeRequests, int adultTickets,
+			int childTickets, int infantTickets, int totalPrice, int numSeats, PurchaseErrorCode errorCode,
+			PurchaseRecord.Outcome outcome, int[] seats) {
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Purchase journal is closed");
+			}
+			if (segment.count == segment.capacity) {
+				roll();
+			}
+
+			var sequence = ++lastSequence;
+			var seatCount = seats != null ? seats.length : 0;
+			scratch.clear();
+			scratch.putInt(0, MAGIC)
+					.putLong(8, sequence)
+					.putLong(16, System.currentTimeMillis())
+					.putLong(24, accountId)
+					.putLong(32, screeningId)
+					.putInt(40, totalPrice)
+					.putInt(44, numSeats)
+					.put(48, (byte) outcome.ordinal())
+					.put(49, (byte) (errorCode == null ? 0 : errorCode.ordinal() + 1))
+					.putShort(50, (short) seatCount);
+			scratch.putInt(countOffset(TicketTypeRequest.Type.ADULT), adultTickets)
+					.putInt(countOffset(TicketTypeRequest.Type.CHILD), childTickets)
+					.putInt(countOffset(TicketTypeRequest.Type.INFANT), infantTickets);
+			for (var i = 0; i < MAX_SEATS_PER_RECORD; i++) {
+				scratch.putInt(SEATS_OFFSET + i * Integer.BYTES, i < seatCount ? seats[i] : 0);
+			}
+			if (ticketTypeRequests != null) {
+				for (var request : ticketTypeRequests) {
+					var offset = countOffset(request.getTicketType());
+					scratch.putInt(offset, scratch.getInt(offset) + request.getNoOfTickets());
+				}
+			}
+			crc.reset();
+			crc.update(scratch.array(), 8, RECORD_SIZE - 8);
+			scratch.putInt(4, (int) crc.getValue());
+
+			segment.buffer.put(segment.count * RECORD_SIZE, scratch.array(), 0, RECORD_SIZE);
+			segment.count++;
+
+			if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+				appended.signal();
+				while (forcedSequence < sequence && forceFailure == null) {
+					forced.awaitUninterruptibly();
+				}
+				if (forceFailure != null) {
+					throw forceFailure;
+				}
+			}
+			return sequence;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static int countOffset(TicketTypeRequest.Type type) {
+		return TICKET_COUNTS_OFFSET + type.ordinal() * Integer.BYTES;
+	}
+
+	/*
+	 * Replaces the full segment with a new one, forcing the full one first
+	 * unless the policy never forces. Called with the lock held.
+	 */
+	private void roll() {
+		try {
+			if (fsyncPolicy != FsyncPolicy.NEVER) {
+				segment.buffer.force();
+			}
+			segment.channel.close();
+			segment = Segment.create(directory, lastSequence + 1, recordsPerSegment);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not start a new purchase journal segment", e);
+		}
+	}
+
+	/*
+	 * Forces the current segment whenever records are waiting (ALWAYS) or every
+	 * fsyncInterval (PERIODIC). The lock is released while forcing, so appends
+	 * carry on and are picked up by the next force.
+	 */
+	private void forceUntilClosed() {
+		lock.lock();
+		try {
+			while (!closed) {
+				if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+					appended.awaitNanos(fsyncIntervalNanos);
+				} else if (forcedSequence == lastSequence) {
+					appended.await(100, TimeUnit.MILLISECONDS);
+				}
+				if (forcedSequence == lastSequence || closed) {
+					continue;
+				}
+
+				var target = lastSequence;
+				var toForce = segment;
+				lock.unlock();
+				try {
+					toForce.buffer.force();
+				} catch (RuntimeException e) {
+					lock.lock();
+					forceFailure = e;
+					forced.signalAll();
+					return;
+				}
+				lock.lock();
+				forcedSequence = Math.max(forcedSequence, target);
+				forced.signalAll();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static PurchaseRecord decode(ByteBuffer buffer, int offset) {
+		var ticketCounts = new int[TicketTypeRequest.Type.values().length];
+		for (var i = 0; i < ticketCounts.length; i++) {
+			ticketCounts[i] = buffer.getInt(offset + TICKET_COUNTS_OFFSET + i * Integer.BYTES);
+		}
+		var seats = new int[buffer.getShort(offset + 50)];
+		for (var i = 0; i < seats.length; i++) {
+			seats[i] = buffer.getInt(offset + SEATS_OFFSET + i * Integer.BYTES);
+		}
+		var errorCodeIndex = buffer.get(offset + 49);
+		return new PurchaseRecord(buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+				buffer.getLong(offset + 24), buffer.getLong(offset + 32), ticketCounts, buffer.getInt(offset + 40),
+				buffer.getInt(offset + 44), PurchaseRecord.Outcome.values()[buffer.get(offset + 48)],
+				errorCodeIndex == 0 ? null : PurchaseErrorCode.values()[errorCodeIndex - 1], seats);
+	}
+
+	private static int countIntactRecords(ByteBuffer buffer, long firstSequence) {
+		var crc = new CRC32C();
+		var capacity = buffer.capacity() / RECORD_SIZE;
+		for (var index = 0; index < capacity; index++) {
+			var offset = index * RECORD_SIZE;
+			if (buffer.getInt(offset) != MAGIC || buffer.getLong(offset + 8) != firstSequence + index) {
+				return index;
+			}
+			crc.reset();
+			crc.update(buffer.slice(offset + 8, RECORD_SIZE - 8));
+			if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+				return index;
+			}
+		}
+		return capacity;
+	}
+
+	private static List<Path> segmentFiles(Path directory) throws IOException {
+		var segments = new ArrayList<Path>();
+		try (var files = Files.list(directory)) {
+			files.filter(file -> {
+				var name = file.getFileName().toString();
+				return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+			}).sorted().forEach(segments::add);
+		}
+		return segments;
+	}
+
+	private static long firstSequenceOf(Path segmentFile) {
+		var name = segmentFile.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private static final class Segment {
+
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		final long firstSequence;
+		final int capacity;
+		int count;
+
+		private Segment(FileChannel channel, MappedByteBuffer buffer, long firstSequence) {
+			this.channel = channel;
+			this.buffer = buffer;
+			this.firstSequence = firstSequence;
+			this.capacity = buffer.capacity() / RECORD_SIZE;
+		}
+
+		static Segment create(Path directory, long firstSequence, int records) throws IOException {
+			var file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+			var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			return map(channel, (long) records * RECORD_SIZE, firstSequence);
+		}
+
+		static Segment open(Path file, long firstSequence) throws IOException {
+			var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return map(channel, channel.size(), firstSequence);
+		}
+
+		private static Segment map(FileChannel channel, long size, long firstSequence) throws IOException {
+			var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			return new Segment(channel, buffer, firstSequence);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Immutable Object
+ * 
+ * One purchase read back from the {@link PurchaseJournal}. A purchase is
+ * either completed, rejected by the downstream steps with a
+ * {@link PurchaseErrorCode}, or failed with an exception from the payment or
+ * reservation service.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PurchaseRecord {
+
+	public enum Outcome {
+		COMPLETED, REJECTED, FAILED
+	}
+
+	private final long sequence;
+	private final long timestampMillis;
+	private final long accountId;
+	private final long screeningId;
+	private final int[] ticketCounts;
+	private final int totalPrice;
+	private final int numSeats;
+	private final Outcome outcome;
+	private final PurchaseErrorCode errorCode;
+	private final int[] seats;
+
+	PurchaseRecord(long sequence, long timestampMillis, long accountId, long screeningId, int[] ticketCounts,
+			int totalPrice, int numSeats, Outcome outcome, PurchaseErrorCode errorCode, int[] seats) {
+		this.sequence = sequence;
+		this.timestampMillis = timestampMillis;
+		this.accountId = accountId;
+		this.screeningId = screeningId;
+		this.ticketCounts = ticketCounts;
+		this.totalPrice = totalPrice;
+		this.numSeats = numSeats;
+		this.outcome = outcome;
+		this.errorCode = errorCode;
+		this.seats = seats;
+	}
+
+	/**
+	 * Position of the record in the journal, counting from 1.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	public long getAccountId() {
+		return accountId;
+	}
+
+	/**
+	 * The screening the purchase was made against, or 0 if none.
+	 */
+	public long getScreeningId() {
+		return screeningId;
+	}
+
+	public int getNoOfTickets(TicketTypeRequest.Type type) {
+		return ticketCounts[type.ordinal()];
+	}
+
+	public int getTotalPrice() {
+		return totalPrice;
+	}
+
+	public int getNumSeats() {
+		return numSeats;
+	}
+
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Why a REJECTED purchase was turned away, or null for any other outcome.
+	 */
+	public PurchaseErrorCode getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * The indexes of the seats a completed purchase was given. Empty when the
+	 * purchase has no seats, or when its reservation service did not say which
+	 * seats it took.
+	 */
+	public int[] getSeats() {
+		return seats.clone();
+	}
+}
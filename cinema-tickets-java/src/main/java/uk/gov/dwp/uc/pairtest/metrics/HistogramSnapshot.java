@@ -0,0 +1,71 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+/**
+ * Immutable Object
+ * 
+ * Point-in-time copy of a {@link LatencyHistogram}. Values are in nanoseconds
+ * and, being read from buckets, are accurate to about 3%.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class HistogramSnapshot {
+
+	private final long[] counts;
+	private final long totalCount;
+
+	HistogramSnapshot(long[] counts) {
+		this.counts = counts;
+		var total = 0L;
+		for (var count : counts) {
+			total += count;
+		}
+		this.totalCount = total;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * The value below which the given percentage of recorded values fall, or 0
+	 * if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		var rank = Math.max(1, (long) Math.ceil(totalCount * Math.min(percentile, 100) / 100));
+		var seen = 0L;
+		for (var bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return LatencyHistogram.highestValueOf(bucket);
+			}
+		}
+		return getMaxValue();
+	}
+
+	public long getMaxValue() {
+		for (var bucket = counts.length - 1; bucket >= 0; bucket--) {
+			if (counts[bucket] != 0) {
+				return LatencyHistogram.highestValueOf(bucket);
+			}
+		}
+		return 0;
+	}
+
+	public double getMean() {
+		if (totalCount == 0) {
+			return 0;
+		}
+		var sum = 0.0;
+		for (var bucket = 0; bucket < counts.length; bucket++) {
+			if (counts[bucket] != 0) {
+				var midpoint = (LatencyHistogram.lowestValueOf(bucket) / 2.0)
+						+ (LatencyHistogram.highestValueOf(bucket) / 2.0);
+				sum += counts[bucket] * midpoint;
+			}
+		}
+		return sum / totalCount;
+	}
+}
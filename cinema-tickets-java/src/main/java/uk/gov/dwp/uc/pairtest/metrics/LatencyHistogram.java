@@ -0,0 +1,57 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock-free latency histogram in the style of HdrHistogram. Values below 32 ns
+ * get a bucket each; above that, every power-of-two range is split into 32
+ * equal buckets, so any recorded value is reported within about 3% and the
+ * whole range of a long fits in under 2,000 buckets. Recording is one
+ * atomic increment and never allocates.
+ *
+ * @author raghavendra.araveti
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	public void record(long nanos) {
+		counts.getAndIncrement(bucketOf(Math.max(0, nanos)));
+	}
+
+	/**
+	 * Copies the counts. Values recorded while the copy is taken may or may not
+	 * be included.
+	 */
+	public HistogramSnapshot snapshot() {
+		var copy = new long[BUCKETS];
+		for (var i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new HistogramSnapshot(copy);
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+	}
+
+	static long lowestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		var shift = bucket / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	}
+
+	static long highestValueOf(int bucket) {
+		return bucket + 1 < BUCKETS ? lowestValueOf(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+}
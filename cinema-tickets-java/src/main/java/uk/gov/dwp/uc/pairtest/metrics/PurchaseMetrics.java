@@ -0,0 +1,99 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.EnumMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/*
+ * Latency histograms per PurchaseStage and counts of accepted purchases and of
+ * rejections per PurchaseErrorCode. Recording takes no locks and allocates
+ * nothing, so one instance can be shared by every purchase thread. Both maps
+ * are filled in the constructor and never change shape afterwards, so they are
+ * safe to read without synchronisation.
+ *
+ * Outcomes are always counted, but reading the clock costs more than
+ * validating a purchase, so only one purchase in timingSampleRate is timed.
+ * The sample is uniform, so the percentiles are unaffected; only the totals of
+ * the histograms are scaled down.
+ *
+ * @author raghavendra.araveti
+ */
+public final class PurchaseMetrics {
+
+	/**
+	 * Returned by startTiming for a purchase that is not being timed.
+	 */
+	public static final long NOT_TIMED = Long.MIN_VALUE;
+
+	private static final int DEFAULT_TIMING_SAMPLE_RATE = 16;
+
+	private final EnumMap<PurchaseStage, LatencyHistogram> latencies = new EnumMap<>(PurchaseStage.class);
+	private final EnumMap<PurchaseErrorCode, LongAdder> rejections = new EnumMap<>(PurchaseErrorCode.class);
+	private final LongAdder accepted = new LongAdder();
+	private final int timingSampleRate;
+
+	public PurchaseMetrics() {
+		this(DEFAULT_TIMING_SAMPLE_RATE);
+	}
+
+	/*
+	 * Times one purchase in timingSampleRate; 1 times every purchase.
+	 */
+	public PurchaseMetrics(int timingSampleRate) {
+		if (timingSampleRate < 1) {
+			throw new IllegalArgumentException("Timing sample rate must be at least 1 but was " + timingSampleRate);
+		}
+		this.timingSampleRate = timingSampleRate;
+		for (var stage : PurchaseStage.values()) {
+			latencies.put(stage, new LatencyHistogram());
+		}
+		for (var errorCode : PurchaseErrorCode.values()) {
+			rejections.put(errorCode, new LongAdder());
+		}
+	}
+
+	/**
+	 * Decides whether to time this purchase, returning the start time from
+	 * System.nanoTime if so and NOT_TIMED if not.
+	 */
+	public long startTiming() {
+		if (timingSampleRate > 1 && ThreadLocalRandom.current().nextInt(timingSampleRate) != 0) {
+			return NOT_TIMED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records a stage that started at startNanos and returns the time it ended,
+	 * so that the next stage of the same purchase can start from it. Does
+	 * nothing for a purchase that is NOT_TIMED.
+	 */
+	public long recordStage(PurchaseStage stage, long startNanos) {
+		if (startNanos == NOT_TIMED) {
+			return NOT_TIMED;
+		}
+		var endNanos = System.nanoTime();
+		latencies.get(stage).record(endNanos - startNanos);
+		return endNanos;
+	}
+
+	public void recordAccepted() {
+		accepted.increment();
+	}
+
+	public void recordRejected(PurchaseErrorCode errorCode) {
+		rejections.get(errorCode).increment();
+	}
+
+	public PurchaseMetricsSnapshot snapshot() {
+		var latencySnapshots = new EnumMap<PurchaseStage, HistogramSnapshot>(PurchaseStage.class);
+		latencies.forEach((stage, histogram) -> latencySnapshots.put(stage, histogram.snapshot()));
+
+		var rejectionCounts = new EnumMap<PurchaseErrorCode, Long>(PurchaseErrorCode.class);
+		rejections.forEach((errorCode, count) -> rejectionCounts.put(errorCode, count.sum()));
+
+		return new PurchaseMetricsSnapshot(accepted.sum(), rejectionCounts, latencySnapshots);
+	}
+}
@@ -0,0 +1,48 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Immutable Object
+ * 
+ * Point-in-time copy of {@link PurchaseMetrics} for export. Every stage and
+ * every error code is present, with zero counts where nothing was recorded.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PurchaseMetricsSnapshot {
+
+	private final long acceptedCount;
+	private final Map<PurchaseErrorCode, Long> rejectedCounts;
+	private final Map<PurchaseStage, HistogramSnapshot> stageLatencies;
+
+	PurchaseMetricsSnapshot(long acceptedCount, Map<PurchaseErrorCode, Long> rejectedCounts,
+			Map<PurchaseStage, HistogramSnapshot> stageLatencies) {
+		this.acceptedCount = acceptedCount;
+		this.rejectedCounts = Collections.unmodifiableMap(rejectedCounts);
+		this.stageLatencies = Collections.unmodifiableMap(stageLatencies);
+	}
+
+	public long getAcceptedCount() {
+		return acceptedCount;
+	}
+
+	public long getRejectedCount(PurchaseErrorCode errorCode) {
+		return rejectedCounts.get(errorCode);
+	}
+
+	public Map<PurchaseErrorCode, Long> getRejectedCounts() {
+		return rejectedCounts;
+	}
+
+	public HistogramSnapshot getLatency(PurchaseStage stage) {
+		return stageLatencies.get(stage);
+	}
+
+	public Map<PurchaseStage, HistogramSnapshot> getStageLatencies() {
+		return stageLatencies;
+	}
+}
@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+/**
+ * Stages of a purchase that {@link PurchaseMetrics} times. PRICING is looking
+ * up the prices for a screening; VALIDATION covers checking the ticket requests
+ * and adding up the price and seats.
+ * 
+ * @author raghavendra.araveti
+ */
+public enum PurchaseStage {
+
+	PRICING, VALIDATION, PAYMENT, RESERVATION
+}
@@ -0,0 +1,32 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Payment gateway that takes a batch of payments in one call. Payments that
+ * fail individually are marked on the batch; an exception thrown from
+ * makePayments fails the whole batch.
+ * 
+ * @author raghavendra.araveti
+ */
+@FunctionalInterface
+public interface BatchTicketPaymentService {
+
+	void makePayments(PaymentBatch batch);
+
+	/**
+	 * Adapts a gateway without batch submission by taking the payments of a
+	 * batch one at a time.
+	 */
+	static BatchTicketPaymentService adapt(TicketPaymentService paymentService) {
+		return batch -> {
+			for (var i = 0; i < batch.size(); i++) {
+				try {
+					paymentService.makePayment(batch.getAccountId(i), batch.getAmount(i));
+				} catch (RuntimeException e) {
+					batch.fail(i, e);
+				}
+			}
+		};
+	}
+}
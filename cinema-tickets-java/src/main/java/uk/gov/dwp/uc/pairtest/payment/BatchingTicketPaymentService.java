@@ -0,0 +1,248 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Decorator that coalesces concurrent payments into micro-batches for a
+ * gateway that accepts batch submission. Each caller still makes one blocking
+ * makePayment call and gets its own outcome: it returns once its payment is
+ * taken, or throws the failure the gateway reported for that payment. When
+ * the whole batch fails, each caller gets an exception of its own with the
+ * batch failure as its cause: a PaymentTimeoutException if the batch timed
+ * out, otherwise a PaymentGatewayException.
+ *
+ * A batch is sent as soon as maxBatchSize payments are waiting, or maxWait
+ * after the first of them arrived, whichever comes first. At most
+ * maxBatchesInFlight batches are sent at once; while they are all in flight,
+ * new payments keep queuing, so batches grow exactly when the gateway is the
+ * bottleneck.
+ *
+ * Refunds are not batched: they go straight to the gateway, which must be a
+ * RefundableTicketPaymentService for them to be taken.
+ *
+ * @author raghavendra.araveti
+ */
+public final class BatchingTicketPaymentService implements RefundableTicketPaymentService, AutoCloseable {
+
+	private final BatchTicketPaymentService gateway;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final Semaphore batchesInFlight;
+	private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition ready = lock.newCondition();
+	private final LongAdder batchesSent = new LongAdder();
+	private final LongAdder paymentsSent = new LongAdder();
+	private final Thread dispatcher;
+
+	// Guarded by lock
+	private ArrayList<PendingPayment> pending;
+	private boolean closed;
+
+	private BatchingTicketPaymentService(BatchTicketPaymentService gateway, int maxBatchSize, Duration maxWait,
+			int maxBatchesInFlight) {
+		this.gateway = gateway;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = maxWait.toNanos();
+		this.batchesInFlight = new Semaphore(maxBatchesInFlight);
+		this.pending = new ArrayList<>(maxBatchSize);
+		this.dispatcher = Thread.ofPlatform().name("payment-batching").daemon().unstarted(this::dispatchUntilClosed);
+	}
+
+	public static BatchingTicketPaymentService start(BatchTicketPaymentService gateway, int maxBatchSize,
+			Duration maxWait, int maxBatchesInFlight) {
+		if (maxBatchSize <= 0 || maxBatchesInFlight <= 0) {
+			throw new IllegalArgumentException("Batch size and batches in flight must be positive");
+		}
+		var service = new BatchingTicketPaymentService(gateway, maxBatchSize, maxWait, maxBatchesInFlight);
+		service.dispatcher.start();
+		return service;
+	}
+
+	@Override
+	public void makePayment(long accountId, int totalAmountToPay) {
+		var payment = new PendingPayment(accountId, totalAmountToPay);
+
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("Payment batching has been closed");
+			}
+			pending.add(payment);
+			if (pending.size() == 1 || pending.size() == maxBatchSize) {
+				ready.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			payment.outcome.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void refund(long accountId, int totalAmountToRefund) {
+		if (!(gateway instanceof RefundableTicketPaymentService refundableGateway)) {
+			throw new UnsupportedOperationException("The payment gateway cannot refund");
+		}
+		refundableGateway.refund(accountId, totalAmountToRefund);
+	}
+
+	public long getBatchesSent() {
+		return batchesSent.sum();
+	}
+
+	public long getPaymentsSent() {
+		return paymentsSent.sum();
+	}
+
+	/**
+	 * Sends the payments already queued, waits for every batch to complete and
+	 * stops accepting payments.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			ready.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			dispatcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		senders.close();
+	}
+
+	private void dispatchUntilClosed() {
+		while (true) {
+			ArrayList<PendingPayment> batch;
+			lock.lock();
+			try {
+				while (pending.isEmpty() && !closed) {
+					ready.awaitUninterruptibly();
+				}
+				if (pending.isEmpty()) {
+					return;
+				}
+
+				// Wait for a full batch or for the oldest payment to have waited long enough
+				while (pending.size() < maxBatchSize && !closed) {
+					var remainingNanos = pending.get(0).enqueuedNanos + maxWaitNanos - System.nanoTime();
+					if (remainingNanos <= 0) {
+						break;
+					}
+					try {
+						ready.awaitNanos(remainingNanos);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				batch = takeBatch();
+			} finally {
+				lock.unlock();
+			}
+
+			batchesInFlight.acquireUninterruptibly();
+			senders.execute(() -> send(batch));
+		}
+	}
+
+	/*
+	 * Removes up to maxBatchSize of the oldest payments. Those left behind keep
+	 * the time they were queued, so the oldest of them still goes out maxWait
+	 * after it arrived. Called with the lock held.
+	 */
+	private ArrayList<PendingPayment> takeBatch() {
+		if (pending.size() <= maxBatchSize) {
+			var batch = pending;
+			pending = new ArrayList<>(maxBatchSize);
+			return batch;
+		}
+		var batch = new ArrayList<>(pending.subList(0, maxBatchSize));
+		pending.subList(0, maxBatchSize).clear();
+		return batch;
+	}
+
+	private void send(ArrayList<PendingPayment> payments) {
+		try {
+			var accountIds = new long[payments.size()];
+			var amounts = new int[payments.size()];
+			for (var i = 0; i < payments.size(); i++) {
+				accountIds[i] = payments.get(i).accountId;
+				amounts[i] = payments.get(i).amount;
+			}
+			var batch = new PaymentBatch(accountIds, amounts);
+
+			RuntimeException batchFailure = null;
+			try {
+				gateway.makePayments(batch);
+			} catch (RuntimeException e) {
+				batchFailure = e;
+			}
+			batchesSent.increment();
+			paymentsSent.add(payments.size());
+
+			for (var i = 0; i < payments.size(); i++) {
+				var failure = batchFailure != null ? failureOf(batchFailure) : batch.getFailure(i);
+				if (failure == null) {
+					payments.get(i).outcome.complete(null);
+				} else {
+					payments.get(i).outcome.completeExceptionally(failure);
+				}
+			}
+		} finally {
+			// An Error from the gateway must not leave callers blocked in join
+			for (var payment : payments) {
+				if (!payment.outcome.isDone()) {
+					payment.outcome.completeExceptionally(
+							new PaymentGatewayException("Payment batch was abandoned; its outcome is unknown"));
+				}
+			}
+			batchesInFlight.release();
+		}
+	}
+
+	/*
+	 * Gives one caller of a batch that failed as a whole an exception of its
+	 * own, so that callers never share, and add to, the same exception object.
+	 */
+	private static PaymentGatewayException failureOf(RuntimeException batchFailure) {
+		if (batchFailure instanceof PaymentTimeoutException) {
+			return new PaymentTimeoutException(batchFailure.getMessage(), batchFailure);
+		}
+		return new PaymentGatewayException(batchFailure.getMessage(), batchFailure);
+	}
+
+	private static final class PendingPayment {
+
+		final long accountId;
+		final int amount;
+		final long enqueuedNanos = System.nanoTime();
+		final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+		PendingPayment(long accountId, int amount) {
+			this.accountId = accountId;
+			this.amount = amount;
+		}
+	}
+}
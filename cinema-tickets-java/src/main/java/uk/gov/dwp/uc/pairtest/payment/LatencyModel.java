@@ -0,0 +1,44 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/**
+ * Distribution of response times of a simulated downstream service.
+ * 
+ * @author raghavendra.araveti
+ */
+@FunctionalInterface
+public interface LatencyModel {
+
+	/**
+	 * Draws the latency of one call, in nanoseconds.
+	 */
+	long nextLatencyNanos(RandomGenerator random);
+
+	/**
+	 * Every call takes the same time.
+	 */
+	static LatencyModel fixed(Duration latency) {
+		var nanos = latency.toNanos();
+		return random -> nanos;
+	}
+
+	/**
+	 * Log-normal latency with the given median. A sigma of about 0.5 gives the
+	 * long right tail typical of a payment gateway; larger values stretch it.
+	 */
+	static LatencyModel logNormal(Duration median, double sigma) {
+		var mu = Math.log(median.toNanos());
+		return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+	}
+
+	/**
+	 * Most calls follow fast, but a slowProbability share follow slow, for
+	 * example calls that miss a cache or fall back to a secondary acquirer.
+	 */
+	static LatencyModel bimodal(LatencyModel fast, LatencyModel slow, double slowProbability) {
+		return random -> random.nextDouble() < slowProbability ? slow.nextLatencyNanos(random)
+				: fast.nextLatencyNanos(random);
+	}
+}
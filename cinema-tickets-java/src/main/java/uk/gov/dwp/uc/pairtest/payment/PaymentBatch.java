@@ -0,0 +1,47 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+/**
+ * Payments submitted to the gateway in one call. The gateway marks the
+ * payments it could not take with {@link #fail}; every other payment in the
+ * batch is taken.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PaymentBatch {
+
+	private final long[] accountIds;
+	private final int[] amounts;
+	private final RuntimeException[] failures;
+
+	public PaymentBatch(long[] accountIds, int[] amounts) {
+		this.accountIds = accountIds;
+		this.amounts = amounts;
+		this.failures = new RuntimeException[accountIds.length];
+	}
+
+	public int size() {
+		return accountIds.length;
+	}
+
+	public long getAccountId(int index) {
+		return accountIds[index];
+	}
+
+	public int getAmount(int index) {
+		return amounts[index];
+	}
+
+	/**
+	 * Marks one payment of the batch as not taken.
+	 */
+	public void fail(int index, RuntimeException cause) {
+		failures[index] = cause;
+	}
+
+	/**
+	 * Why the payment was not taken, or null if it was.
+	 */
+	public RuntimeException getFailure(int index) {
+		return failures[index];
+	}
+}
@@ -0,0 +1,19 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+/**
+ * Thrown when the payment gateway fails to take a payment.
+ * 
+ * @author raghavendra.araveti
+ */
+public class PaymentGatewayException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PaymentGatewayException(String message) {
+		super(message, null, false, false);
+	}
+
+	public PaymentGatewayException(String message, Throwable cause) {
+		super(message, cause, false, false);
+	}
+}
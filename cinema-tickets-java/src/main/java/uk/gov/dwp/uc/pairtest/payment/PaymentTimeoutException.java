@@ -0,0 +1,20 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+/**
+ * Thrown when the payment gateway does not answer within the timeout. The
+ * outcome of the payment is unknown.
+ * 
+ * @author raghavendra.araveti
+ */
+public class PaymentTimeoutException extends PaymentGatewayException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PaymentTimeoutException(String message) {
+		super(message);
+	}
+
+	public PaymentTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,15 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Payment service that can also give money back, used to compensate a
+ * purchase whose payment was taken but which could not be completed.
+ * 
+ * @author raghavendra.araveti
+ */
+public interface RefundableTicketPaymentService extends TicketPaymentService {
+
+	void refund(long accountId, int totalAmountToRefund);
+
+}
@@ -0,0 +1,128 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * In-process stand-in for the payment gateway, for load tests and benchmarks
+ * that need realistic downstream behaviour without a network. Each call waits
+ * for a latency drawn from the LatencyModel and then fails with probability
+ * errorRate. A call that would take longer than the timeout gives up at the
+ * timeout with a PaymentTimeoutException.
+ *
+ * The gateway serves at most maxConcurrency calls at once; further callers
+ * queue for a slot, and the time spent queuing counts towards the timeout.
+ * Waiting parks the calling thread, so virtual threads release their carrier
+ * while they wait.
+ *
+ * Refunds behave exactly like payments. A batch of payments takes one call:
+ * it waits for a single latency and then declines each payment independently
+ * with probability errorRate, while a timeout fails the whole batch.
+ *
+ * @author raghavendra.araveti
+ */
+public class SimulatedTicketPaymentService implements RefundableTicketPaymentService, BatchTicketPaymentService {
+
+	private final LatencyModel latency;
+	private final long timeoutNanos;
+	private final double errorRate;
+	private final Semaphore slots;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+
+	public SimulatedTicketPaymentService(LatencyModel latency, Duration timeout, double errorRate,
+			int maxConcurrency) {
+		if (errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("Error rate must be between 0 and 1 but was " + errorRate);
+		}
+		this.latency = latency;
+		this.timeoutNanos = timeout.toNanos();
+		this.errorRate = errorRate;
+		this.slots = new Semaphore(maxConcurrency, true);
+	}
+
+	@Override
+	public void makePayment(long accountId, int totalAmountToPay) {
+		call("Payment");
+	}
+
+	@Override
+	public void refund(long accountId, int totalAmountToRefund) {
+		call("Refund");
+	}
+
+	@Override
+	public void makePayments(PaymentBatch batch) {
+		roundTrip("Payment batch");
+		var random = ThreadLocalRandom.current();
+		for (var i = 0; i < batch.size(); i++) {
+			if (random.nextDouble() < errorRate) {
+				failed.increment();
+				batch.fail(i, new PaymentGatewayException("Payment declined by the payment gateway"));
+			} else {
+				completed.increment();
+			}
+		}
+	}
+
+	/**
+	 * Calls made to the gateway, counting a batch as one call.
+	 */
+	public long getCallCount() {
+		return calls.sum();
+	}
+
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	public long getTimedOutCount() {
+		return timedOut.sum();
+	}
+
+	private void call(String operation) {
+		roundTrip(operation);
+		if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+			failed.increment();
+			throw new PaymentGatewayException(operation + " declined by the payment gateway");
+		}
+		completed.increment();
+	}
+
+	private void roundTrip(String operation) {
+		calls.increment();
+		var start = System.nanoTime();
+		try {
+			if (!slots.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+				timedOut.increment();
+				throw new PaymentTimeoutException(operation + " timed out waiting for the payment gateway");
+			}
+			try {
+				var remainingNanos = timeoutNanos - (System.nanoTime() - start);
+				var latencyNanos = latency.nextLatencyNanos(ThreadLocalRandom.current());
+
+				if (latencyNanos > remainingNanos) {
+					TimeUnit.NANOSECONDS.sleep(remainingNanos);
+					timedOut.increment();
+					throw new PaymentTimeoutException(
+							operation + " timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+				}
+				TimeUnit.NANOSECONDS.sleep(latencyNanos);
+			} finally {
+				slots.release();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PaymentGatewayException(operation + " interrupted");
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.util.Map;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/**
+ * Immutable Object
+ * 
+ * Pricing rules compiled into flat lookup tables. Screening and cinema rules
+ * are held in open-addressing tables of primitive {@code long} keys, and each
+ * key maps to a shared {@link PriceTable}, so resolving the prices for a
+ * screening neither locks nor allocates.
+ * 
+ * Rules are matched from the most specific to the least specific: screening,
+ * cinema and time band, cinema, time band and finally the default prices.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class CompiledPricing implements ScreeningPriceResolver {
+
+	private static final int ANY_TIME_BAND = 0;
+
+	private final PriceTable defaultTable;
+	private final PriceTable[] timeBandTables;
+	private final LongIndex cinemaIndex;
+	private final PriceTable[] cinemaTables;
+	private final LongIndex screeningIndex;
+	private final PriceTable[] screeningTables;
+
+	CompiledPricing(PriceTable defaultTable, PriceTable[] timeBandTables, Map<Long, PriceTable> cinemaRules,
+			Map<Long, PriceTable> screeningRules) {
+		this.defaultTable = defaultTable;
+		this.timeBandTables = timeBandTables.clone();
+		this.cinemaIndex = new LongIndex(cinemaRules.keySet());
+		this.cinemaTables = tablesFor(cinemaIndex, cinemaRules);
+		this.screeningIndex = new LongIndex(screeningRules.keySet());
+		this.screeningTables = tablesFor(screeningIndex, screeningRules);
+	}
+
+	@Override
+	public PriceTable priceTableFor(Screening screening) {
+
+		var slot = screeningIndex.indexOf(screening.getScreeningId());
+		if (slot >= 0) {
+			return screeningTables[slot];
+		}
+
+		slot = cinemaIndex.indexOf(cinemaKey(screening.getCinemaId(), screening.getTimeBand()));
+		if (slot >= 0) {
+			return cinemaTables[slot];
+		}
+
+		slot = cinemaIndex.indexOf(cinemaKey(screening.getCinemaId(), null));
+		if (slot >= 0) {
+			return cinemaTables[slot];
+		}
+
+		var timeBandTable = timeBandTables[screening.getTimeBand().ordinal()];
+		return timeBandTable != null ? timeBandTable : defaultTable;
+	}
+
+	/*
+	 * Packs a cinema and an optional time band into one key. A null time band
+	 * matches a rule that applies to the cinema in every time band.
+	 */
+	static long cinemaKey(int cinemaId, Screening.TimeBand timeBand) {
+		var band = timeBand == null ? ANY_TIME_BAND : timeBand.ordinal() + 1;
+		return ((long) cinemaId << 8) | band;
+	}
+
+	private static PriceTable[] tablesFor(LongIndex index, Map<Long, PriceTable> rules) {
+		var tables = new PriceTable[index.capacity()];
+		rules.forEach((key, table) -> tables[index.indexOf(key)] = table);
+		return tables;
+	}
+
+	/*
+	 * Open-addressing set of long keys with linear probing. The slot a key lands
+	 * in doubles as the index into the parallel array of price tables.
+	 */
+	private static final class LongIndex {
+
+		private final long[] keys;
+		private final boolean[] used;
+		private final int mask;
+
+		LongIndex(Iterable<Long> keySet) {
+			var size = 0;
+			for (var ignored : keySet) {
+				size++;
+			}
+			var capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+			this.keys = new long[capacity];
+			this.used = new boolean[capacity];
+			this.mask = capacity - 1;
+
+			for (long key : keySet) {
+				var slot = slot(key);
+				while (used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				used[slot] = true;
+			}
+		}
+
+		int capacity() {
+			return keys.length;
+		}
+
+		int indexOf(long key) {
+			var slot = slot(key);
+			while (used[slot]) {
+				if (keys[slot] == key) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private int slot(long key) {
+			var hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Immutable Object
+ * 
+ * Unit prices per ticket type, held in a primitive array indexed by
+ * {@link TicketTypeRequest.Type#ordinal()} so that pricing a ticket line is a
+ * single array read with no hashing or unboxing. A price table never changes
+ * once built; new prices are applied by swapping in a different table.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PriceTable {
+
+	public static final PriceTable DEFAULT = of(20, 10, 0);
+
+	private final int[] prices;
+
+	private PriceTable(int[] prices) {
+		this.prices = prices;
+	}
+
+	public static PriceTable of(int adultPrice, int childPrice, int infantPrice) {
+		var prices = new int[TicketTypeRequest.Type.values().length];
+		prices[TicketTypeRequest.Type.ADULT.ordinal()] = requireNonNegative(adultPrice);
+		prices[TicketTypeRequest.Type.CHILD.ordinal()] = requireNonNegative(childPrice);
+		prices[TicketTypeRequest.Type.INFANT.ordinal()] = requireNonNegative(infantPrice);
+		return new PriceTable(prices);
+	}
+
+	public int priceOf(TicketTypeRequest.Type type) {
+		return prices[type.ordinal()];
+	}
+
+	private static int requireNonNegative(int price) {
+		if (price < 0) {
+			throw new IllegalArgumentException("Ticket price cannot be negative: " + price);
+		}
+		return price;
+	}
+}
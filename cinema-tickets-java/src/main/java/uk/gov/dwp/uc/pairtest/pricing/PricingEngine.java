@@ -0,0 +1,65 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.locks.ReentrantLock;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/*
+ * Hot-reloadable pricing backed by a rules file. Each load compiles the whole
+ * file into a new CompiledPricing and publishes it through a volatile field,
+ * so purchase threads always see either the old or the new rules in full and
+ * never wait for a reload. A file that fails to compile leaves the current
+ * rules in place.
+ *
+ * @author raghavendra.araveti
+ */
+public final class PricingEngine implements ScreeningPriceResolver {
+
+	private final Path rulesFile;
+	private final ReentrantLock reloadLock = new ReentrantLock();
+	private volatile CompiledPricing pricing;
+	private volatile FileTime loadedModifiedTime;
+
+	public PricingEngine(Path rulesFile) throws IOException {
+		this.rulesFile = rulesFile;
+		reload();
+	}
+
+	@Override
+	public PriceTable priceTableFor(Screening screening) {
+		return pricing.priceTableFor(screening);
+	}
+
+	/**
+	 * Recompiles the rules file and swaps the result in.
+	 */
+	public void reload() throws IOException {
+		reloadLock.lock();
+		try {
+			var modifiedTime = Files.getLastModifiedTime(rulesFile);
+			pricing = PricingRuleCompiler.compile(Files.readAllLines(rulesFile, StandardCharsets.UTF_8));
+			loadedModifiedTime = modifiedTime;
+		} finally {
+			reloadLock.unlock();
+		}
+	}
+
+	/**
+	 * Reloads the rules only if the file has changed since the last load, so it
+	 * can be polled cheaply from a scheduler.
+	 * 
+	 * @return true if the rules were reloaded
+	 */
+	public boolean reloadIfModified() throws IOException {
+		if (Files.getLastModifiedTime(rulesFile).equals(loadedModifiedTime)) {
+			return false;
+		}
+		reload();
+		return true;
+	}
+}
@@ -0,0 +1,104 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/**
+ * Parses pricing rules and compiles them into a {@link CompiledPricing}.
+ * 
+ * Each non-blank line that does not start with {@code #} is one rule of six
+ * whitespace separated fields:
+ * 
+ * <pre>
+ * # cinema  timeBand  screening  adult  child  infant
+ *   *       *         *          20     10     0
+ *   *       PEAK      *          22     11     0
+ *   7       *         *          18     9      0
+ *   7       PEAK      *          25     12     0
+ *   *       *         1001       30     15     0
+ * </pre>
+ * 
+ * {@code *} matches anything. A rule that names a screening must leave the
+ * cinema and time band as {@code *}. Rules with identical prices share one
+ * {@link PriceTable}.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PricingRuleCompiler {
+
+	private static final String ANY = "*";
+
+	private PricingRuleCompiler() {
+	}
+
+	public static CompiledPricing compile(List<String> lines) {
+
+		PriceTable defaultTable = null;
+		var timeBandTables = new PriceTable[Screening.TimeBand.values().length];
+		var cinemaRules = new HashMap<Long, PriceTable>();
+		var screeningRules = new HashMap<Long, PriceTable>();
+		var sharedTables = new HashMap<List<Integer>, PriceTable>();
+
+		for (var lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+			var line = lines.get(lineNumber - 1).strip();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+
+			var fields = line.split("\\s+");
+			if (fields.length != 6) {
+				throw invalidRule(lineNumber, "expected 6 fields but found " + fields.length);
+			}
+
+			PriceTable table;
+			Integer cinemaId;
+			Screening.TimeBand timeBand;
+			Long screeningId;
+			try {
+				var prices = List.of(Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+						Integer.parseInt(fields[5]));
+				table = sharedTables.computeIfAbsent(prices, p -> PriceTable.of(p.get(0), p.get(1), p.get(2)));
+				cinemaId = ANY.equals(fields[0]) ? null : Integer.valueOf(fields[0]);
+				timeBand = ANY.equals(fields[1]) ? null : Screening.TimeBand.valueOf(fields[1]);
+				screeningId = ANY.equals(fields[2]) ? null : Long.valueOf(fields[2]);
+			} catch (IllegalArgumentException e) {
+				throw invalidRule(lineNumber, e.getMessage());
+			}
+
+			if (screeningId != null) {
+				if (cinemaId != null || timeBand != null) {
+					throw invalidRule(lineNumber, "a screening rule must use * for cinema and time band");
+				}
+				putUnique(screeningRules, screeningId, table, lineNumber);
+			} else if (cinemaId != null) {
+				putUnique(cinemaRules, CompiledPricing.cinemaKey(cinemaId, timeBand), table, lineNumber);
+			} else if (timeBand != null) {
+				if (timeBandTables[timeBand.ordinal()] != null) {
+					throw invalidRule(lineNumber, "duplicate rule");
+				}
+				timeBandTables[timeBand.ordinal()] = table;
+			} else {
+				if (defaultTable != null) {
+					throw invalidRule(lineNumber, "duplicate rule");
+				}
+				defaultTable = table;
+			}
+		}
+
+		return new CompiledPricing(defaultTable != null ? defaultTable : PriceTable.DEFAULT, timeBandTables,
+				cinemaRules, screeningRules);
+	}
+
+	private static void putUnique(Map<Long, PriceTable> rules, long key, PriceTable table, int lineNumber) {
+		if (rules.putIfAbsent(key, table) != null) {
+			throw invalidRule(lineNumber, "duplicate rule");
+		}
+	}
+
+	private static IllegalArgumentException invalidRule(int lineNumber, String reason) {
+		return new IllegalArgumentException("Invalid pricing rule at line " + lineNumber + ": " + reason);
+	}
+}
@@ -0,0 +1,17 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/**
+ * Resolves the price table that applies to a screening. Implementations must
+ * be safe to call from many purchase threads at once and should not allocate
+ * per call.
+ * 
+ * @author raghavendra.araveti
+ */
+@FunctionalInterface
+public interface ScreeningPriceResolver {
+
+	PriceTable priceTableFor(Screening screening);
+
+}
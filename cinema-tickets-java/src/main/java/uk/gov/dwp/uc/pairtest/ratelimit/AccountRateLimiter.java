@@ -0,0 +1,204 @@
+package uk.gov.dwp.uc.pairtest.ratelimit;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-account token bucket combined with a cap on concurrent purchases per
+ * account.
+ * 
+ * Accounts are spread over independently locked stripes. Each stripe is an
+ * open-addressing table keyed by the primitive account id with the bucket
+ * state held in parallel primitive arrays, so checking an account neither
+ * boxes nor allocates. Accounts whose bucket has refilled and that have no
+ * purchase in flight are dropped whenever a stripe is resized, which keeps the
+ * tables sized to the accounts that are actually active.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class AccountRateLimiter {
+
+	private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+	private final Stripe[] stripes;
+	private final int stripeMask;
+	private final double tokensPerNano;
+	private final double burst;
+	private final int maxConcurrentPerAccount;
+	private final LongSupplier nanoClock;
+
+	/**
+	 * @param purchasesPerSecond      sustained purchases allowed per account
+	 * @param burst                   purchases an idle account may make at once
+	 * @param maxConcurrentPerAccount purchases an account may have in flight
+	 * @param concurrencyLevel        expected number of concurrent callers
+	 */
+	public AccountRateLimiter(double purchasesPerSecond, int burst, int maxConcurrentPerAccount,
+			int concurrencyLevel) {
+		this(purchasesPerSecond, burst, maxConcurrentPerAccount, concurrencyLevel, System::nanoTime);
+	}
+
+	AccountRateLimiter(double purchasesPerSecond, int burst, int maxConcurrentPerAccount, int concurrencyLevel,
+			LongSupplier nanoClock) {
+		var stripeCount = Integer.highestOneBit(Math.max(1, concurrencyLevel * 4 - 1)) << 1;
+		this.stripes = new Stripe[stripeCount];
+		for (var i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.stripeMask = stripeCount - 1;
+		this.tokensPerNano = purchasesPerSecond / 1_000_000_000d;
+		this.burst = burst;
+		this.maxConcurrentPerAccount = maxConcurrentPerAccount;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Takes one token and one in-flight slot for the account.
+	 * 
+	 * @return false if the account is over its rate or already has the maximum
+	 *         number of purchases in flight
+	 */
+	public boolean tryAcquire(long accountId) {
+		var hash = hash(accountId);
+		var stripe = stripes[(int) (hash >>> 32) & stripeMask];
+		var now = nanoClock.getAsLong();
+
+		stripe.lock.lock();
+		try {
+			var slot = stripe.findOrInsert(accountId, hash, now, this);
+			var tokens = refill(stripe.tokens[slot], stripe.refilledAt[slot], now);
+			stripe.refilledAt[slot] = now;
+
+			if (stripe.inFlight[slot] >= maxConcurrentPerAccount || tokens < 1d) {
+				stripe.tokens[slot] = tokens;
+				return false;
+			}
+			stripe.tokens[slot] = tokens - 1d;
+			stripe.inFlight[slot]++;
+			return true;
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the in-flight slot taken by a successful {@link #tryAcquire}.
+	 */
+	public void release(long accountId) {
+		var hash = hash(accountId);
+		var stripe = stripes[(int) (hash >>> 32) & stripeMask];
+
+		stripe.lock.lock();
+		try {
+			var slot = stripe.find(accountId, hash);
+			if (slot >= 0 && stripe.inFlight[slot] > 0) {
+				stripe.inFlight[slot]--;
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	private double refill(double tokens, long refilledAt, long now) {
+		return Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+	}
+
+	private static long hash(long accountId) {
+		var hash = accountId * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 29);
+	}
+
+	/*
+	 * Open-addressing table with linear probing. Entries are never removed in
+	 * place; idle accounts are dropped when the table is rebuilt on growth.
+	 */
+	private static final class Stripe {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private long[] keys = new long[INITIAL_STRIPE_CAPACITY];
+		private boolean[] used = new boolean[INITIAL_STRIPE_CAPACITY];
+		private double[] tokens = new double[INITIAL_STRIPE_CAPACITY];
+		private long[] refilledAt = new long[INITIAL_STRIPE_CAPACITY];
+		private int[] inFlight = new int[INITIAL_STRIPE_CAPACITY];
+		private int size;
+
+		int find(long key, long hash) {
+			var mask = keys.length - 1;
+			var slot = (int) hash & mask;
+			while (used[slot]) {
+				if (keys[slot] == key) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		int findOrInsert(long key, long hash, long now, AccountRateLimiter limiter) {
+			var slot = find(key, hash);
+			if (slot >= 0) {
+				return slot;
+			}
+			if ((size + 1) * 2 > keys.length) {
+				rebuild(now, limiter);
+			}
+			return insert(key, hash, limiter.burst, now, 0);
+		}
+
+		private int insert(long key, long hash, double initialTokens, long refilled, int running) {
+			var mask = keys.length - 1;
+			var slot = (int) hash & mask;
+			while (used[slot]) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			used[slot] = true;
+			tokens[slot] = initialTokens;
+			refilledAt[slot] = refilled;
+			inFlight[slot] = running;
+			size++;
+			return slot;
+		}
+
+		/*
+		 * Rebuilds the table without idle accounts, doubling its size if it would
+		 * still be more than a quarter full.
+		 */
+		private void rebuild(long now, AccountRateLimiter limiter) {
+			var oldKeys = keys;
+			var oldUsed = used;
+			var oldTokens = tokens;
+			var oldRefilledAt = refilledAt;
+			var oldInFlight = inFlight;
+
+			var live = 0;
+			for (var i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i] && !isIdle(oldTokens[i], oldRefilledAt[i], oldInFlight[i], now, limiter)) {
+					live++;
+				}
+			}
+			var capacity = oldKeys.length;
+			while ((live + 1) * 4 > capacity) {
+				capacity <<= 1;
+			}
+
+			keys = new long[capacity];
+			used = new boolean[capacity];
+			tokens = new double[capacity];
+			refilledAt = new long[capacity];
+			inFlight = new int[capacity];
+			size = 0;
+
+			for (var i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i] && !isIdle(oldTokens[i], oldRefilledAt[i], oldInFlight[i], now, limiter)) {
+					insert(oldKeys[i], hash(oldKeys[i]), oldTokens[i], oldRefilledAt[i], oldInFlight[i]);
+				}
+			}
+		}
+
+		private static boolean isIdle(double tokens, long refilledAt, int running, long now,
+				AccountRateLimiter limiter) {
+			return running == 0 && limiter.refill(tokens, refilledAt, now) >= limiter.burst;
+		}
+	}
+}
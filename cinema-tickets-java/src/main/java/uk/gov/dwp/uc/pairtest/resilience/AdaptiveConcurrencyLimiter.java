@@ -0,0 +1,193 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+ * Concurrency limit for a downstream service that adapts to the latency the
+ * service shows, in the style of TCP Vegas. The shortest round trip seen
+ * stands for the service with no queue; when a call takes longer, the
+ * difference is put down to queuing, and the number of calls queued is
+ * estimated as limit * (1 - minRtt / rtt). The limit grows while that queue
+ * is small and shrinks once it grows beyond a few calls, with thresholds that
+ * scale with log10 of the limit. A call that timed out or was refused for
+ * overload cuts the limit by a tenth straight away.
+ *
+ * Calls beyond the limit are refused immediately rather than queued, so a
+ * slow service sheds load instead of building a queue that ends in timeouts.
+ *
+ * The minimum round trip is forgotten every 30 * limit samples so that the
+ * limit follows a service that has become permanently slower. Round trips are
+ * sampled with tryLock: one that arrives while another thread is sampling is
+ * skipped, so completing a call never blocks. Cuts for dropped calls are never
+ * skipped; they are applied to the limit with a compare-and-set loop, and a
+ * round trip sample that raced with one is thrown away. Samples taken while
+ * fewer than half the permits are in use are ignored, as latency then says
+ * nothing about whether the limit is too high.
+ *
+ * @author raghavendra.araveti
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+	/**
+	 * Returned by {@link #tryAcquire()} when the call is over the limit.
+	 */
+	public static final long REJECTED = Long.MIN_VALUE;
+
+	private static final double DROP_FACTOR = 0.9;
+	private static final int PROBE_MULTIPLIER = 30;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final LongSupplier nanoClock;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private final ReentrantLock updateLock = new ReentrantLock();
+
+	// The bits of the estimated limit as a double; the limit is its whole part
+	private final AtomicLong estimatedLimit = new AtomicLong();
+
+	// Guarded by updateLock
+	private long minRttNanos = Long.MAX_VALUE;
+	private long samplesUntilProbe;
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this(initialLimit, minLimit, maxLimit, System::nanoTime);
+	}
+
+	AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+		if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.nanoClock = nanoClock;
+		this.estimatedLimit.set(Double.doubleToRawLongBits(initialLimit));
+		this.samplesUntilProbe = (long) PROBE_MULTIPLIER * initialLimit;
+	}
+
+	/**
+	 * Takes a permit for one call. A permit that is taken must be given back
+	 * with exactly one of {@link #onSuccess(long)}, {@link #onDropped()} or
+	 * {@link #onIgnored()}.
+	 * 
+	 * @return the time the call started, to pass to onSuccess, or
+	 *         {@link #REJECTED} if the limit has been reached
+	 */
+	public long tryAcquire() {
+		var limit = getLimit();
+		while (true) {
+			var current = inFlight.get();
+			if (current >= limit) {
+				rejected.increment();
+				return REJECTED;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return nanoClock.getAsLong();
+			}
+		}
+	}
+
+	/**
+	 * Checks, without taking a permit, that a call made now would not be
+	 * refused, so that work the call depends on can be turned away before it is
+	 * done. A call that would be refused is counted as rejected.
+	 */
+	public boolean tryAdmit() {
+		if (inFlight.get() >= getLimit()) {
+			rejected.increment();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Releases the permit of a call that completed normally, sampling its round
+	 * trip.
+	 */
+	public void onSuccess(long startNanos) {
+		var callsInFlight = inFlight.getAndDecrement();
+		update(nanoClock.getAsLong() - startNanos, callsInFlight);
+	}
+
+	/**
+	 * Releases the permit of a call that timed out or was refused because the
+	 * service is overloaded.
+	 */
+	public void onDropped() {
+		inFlight.decrementAndGet();
+		while (true) {
+			var current = estimatedLimit.get();
+			var newLimit = clamp(Double.longBitsToDouble(current) * DROP_FACTOR);
+			if (estimatedLimit.compareAndSet(current, Double.doubleToRawLongBits(newLimit))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Releases the permit of a call that failed for a reason that says nothing
+	 * about load.
+	 */
+	public void onIgnored() {
+		inFlight.decrementAndGet();
+	}
+
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(estimatedLimit.get());
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private void update(long rttNanos, int callsInFlight) {
+		if (!updateLock.tryLock()) {
+			return;
+		}
+		try {
+			var current = estimatedLimit.get();
+			var estimated = Double.longBitsToDouble(current);
+			if (--samplesUntilProbe <= 0) {
+				minRttNanos = Long.MAX_VALUE;
+				samplesUntilProbe = (long) PROBE_MULTIPLIER * (int) estimated;
+			}
+			if (rttNanos <= 0) {
+				return;
+			}
+			minRttNanos = Math.min(minRttNanos, rttNanos);
+			if (callsInFlight * 2 < estimated) {
+				return;
+			}
+
+			var queued = Math.ceil(estimated * (1 - (double) minRttNanos / rttNanos));
+			var step = Math.max(1, Math.log10(estimated));
+			double newLimit;
+			if (queued <= step) {
+				newLimit = estimated + 6 * step;
+			} else if (queued < 3 * step) {
+				newLimit = estimated + step;
+			} else if (queued > 6 * step) {
+				newLimit = estimated - step;
+			} else {
+				return;
+			}
+
+			// Fails only if a dropped call cut the limit meanwhile, and that cut should stand
+			estimatedLimit.compareAndSet(current, Double.doubleToRawLongBits(clamp(newLimit)));
+		} finally {
+			updateLock.unlock();
+		}
+	}
+
+	private double clamp(double newLimit) {
+		return Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+}
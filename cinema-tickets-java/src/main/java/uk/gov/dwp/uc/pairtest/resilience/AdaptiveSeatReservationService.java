@@ -0,0 +1,89 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatReservationService;
+import uk.gov.dwp.uc.pairtest.seating.SeatsUnavailableException;
+
+/**
+ * Decorator that limits the seat reservations in flight with an
+ * AdaptiveConcurrencyLimiter. A reservation over the limit is turned away at
+ * once with a ServiceUnavailableException carrying RESERVATION_UNAVAILABLE.
+ * A sold-out answer is sampled like any other completed reservation, and
+ * reservations that an inner decorator refused shrink the limit.
+ *
+ * It wraps screening-aware services such as SeatInventory as well as plain
+ * ones: the screening is passed through and the seats reserved are returned.
+ * As a ScreeningSeatReservationService it is also asked to admit a purchase
+ * before payment, and turns it away there when the limit has been reached, so
+ * that a pay-then-reserve purchase is shed before the customer is charged.
+ * Admitting a purchase only checks the limit and holds no permit, as the
+ * reservation may be made later on another thread. Other purchases can
+ * therefore fill the limit between the check and the reservation; such a
+ * reservation is still turned away, after payment, and the purchase relies on
+ * compensation to be refunded.
+ * 
+ * @author raghavendra.araveti
+ */
+public class AdaptiveSeatReservationService implements SeatReservationService, ScreeningSeatReservationService {
+
+	private final ScreeningSeatReservationService reservationService;
+	private final AdaptiveConcurrencyLimiter limiter;
+
+	public AdaptiveSeatReservationService(SeatReservationService reservationService,
+			AdaptiveConcurrencyLimiter limiter) {
+		this(ScreeningSeatReservationService.adapt(reservationService), limiter);
+	}
+
+	public AdaptiveSeatReservationService(ScreeningSeatReservationService reservationService,
+			AdaptiveConcurrencyLimiter limiter) {
+		this.reservationService = reservationService;
+		this.limiter = limiter;
+	}
+
+	@Override
+	public void admit(Screening screening) {
+		if (!limiter.tryAdmit()) {
+			throw limitReached();
+		}
+	}
+
+	@Override
+	public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+		reserveSeats(null, accountId, totalSeatsToAllocate);
+	}
+
+	@Override
+	public void reserveSeat(Screening screening, long accountId, int totalSeatsToAllocate) {
+		reserveSeats(screening, accountId, totalSeatsToAllocate);
+	}
+
+	@Override
+	public int[] reserveSeats(Screening screening, long accountId, int totalSeatsToAllocate) {
+		var startNanos = limiter.tryAcquire();
+		if (startNanos == AdaptiveConcurrencyLimiter.REJECTED) {
+			throw limitReached();
+		}
+		int[] seats;
+		try {
+			seats = reservationService.reserveSeats(screening, accountId, totalSeatsToAllocate);
+		} catch (SeatsUnavailableException e) {
+			limiter.onSuccess(startNanos);
+			throw e;
+		} catch (ServiceUnavailableException e) {
+			limiter.onDropped();
+			throw e;
+		} catch (RuntimeException e) {
+			limiter.onIgnored();
+			throw e;
+		}
+		limiter.onSuccess(startNanos);
+		return seats;
+	}
+
+	private static ServiceUnavailableException limitReached() {
+		return new ServiceUnavailableException(PurchaseErrorCode.RESERVATION_UNAVAILABLE,
+				"Seat reservation concurrency limit reached");
+	}
+}
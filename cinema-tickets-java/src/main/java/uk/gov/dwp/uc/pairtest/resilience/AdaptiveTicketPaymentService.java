@@ -0,0 +1,54 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.payment.PaymentTimeoutException;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+
+/**
+ * Decorator that limits the payments in flight with an
+ * AdaptiveConcurrencyLimiter. A payment over the limit is turned away at once
+ * with a ServiceUnavailableException carrying PAYMENT_UNAVAILABLE. Payments
+ * that time out, or that an inner decorator refused, shrink the limit.
+ * Refunds go straight to the gateway without counting against the limit; a
+ * gateway that cannot refund throws UnsupportedOperationException.
+ * 
+ * @author raghavendra.araveti
+ */
+public class AdaptiveTicketPaymentService implements RefundableTicketPaymentService {
+
+	private final TicketPaymentService paymentService;
+	private final AdaptiveConcurrencyLimiter limiter;
+
+	public AdaptiveTicketPaymentService(TicketPaymentService paymentService, AdaptiveConcurrencyLimiter limiter) {
+		this.paymentService = paymentService;
+		this.limiter = limiter;
+	}
+
+	@Override
+	public void makePayment(long accountId, int totalAmountToPay) {
+		var startNanos = limiter.tryAcquire();
+		if (startNanos == AdaptiveConcurrencyLimiter.REJECTED) {
+			throw new ServiceUnavailableException(PurchaseErrorCode.PAYMENT_UNAVAILABLE,
+					"Payment concurrency limit reached");
+		}
+		try {
+			paymentService.makePayment(accountId, totalAmountToPay);
+		} catch (PaymentTimeoutException | ServiceUnavailableException e) {
+			limiter.onDropped();
+			throw e;
+		} catch (RuntimeException e) {
+			limiter.onIgnored();
+			throw e;
+		}
+		limiter.onSuccess(startNanos);
+	}
+
+	@Override
+	public void refund(long accountId, int totalAmountToRefund) {
+		if (!(paymentService instanceof RefundableTicketPaymentService refundablePaymentService)) {
+			throw new UnsupportedOperationException("The wrapped payment service cannot refund");
+		}
+		refundablePaymentService.refund(accountId, totalAmountToRefund);
+	}
+}
@@ -0,0 +1,54 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of concurrent calls to a downstream service. Unlike the
+ * bounded services in the concurrent package, a caller that cannot get a
+ * permit within maxWait is turned away instead of queuing indefinitely, so a
+ * stalled service ties up at most maxConcurrentCalls threads.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class Bulkhead {
+
+	private final Semaphore permits;
+	private final long maxWaitNanos;
+	private final LongAdder rejected = new LongAdder();
+
+	public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+		this.permits = new Semaphore(maxConcurrentCalls);
+		this.maxWaitNanos = maxWait.toNanos();
+	}
+
+	/**
+	 * Takes a permit, waiting at most maxWait for one. A permit that is taken
+	 * must be given back with {@link #release()}.
+	 */
+	public boolean tryAcquire() {
+		try {
+			if (maxWaitNanos <= 0 ? permits.tryAcquire() : permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rejected.increment();
+		return false;
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	public int getAvailablePermits() {
+		return permits.availablePermits();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+}
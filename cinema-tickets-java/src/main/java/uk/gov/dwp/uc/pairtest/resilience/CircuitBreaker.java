@@ -0,0 +1,266 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/*
+ * Lock-free circuit breaker over a rolling failure-rate window.
+ *
+ * The window is split into time buckets. Each bucket is a single long holding
+ * the bucket's epoch (its start time divided by the bucket length, modulo
+ * 2^24), its call count and its failure count, so recording an outcome, and
+ * recycling a bucket that has fallen out of the window, is one CAS. The
+ * buckets are striped by thread so that concurrent callers rarely CAS the same
+ * long. The failure rate is only summed when a failure is recorded.
+ *
+ * Once the window holds at least minimumCalls calls and the failure rate
+ * reaches the threshold, the breaker opens and rejects every call for
+ * openDuration. It then lets halfOpenCalls trial calls through: if all of them
+ * succeed the breaker closes with an empty window, and the first failure opens
+ * it again. The state and the time it was entered share one AtomicLong, so
+ * every transition is a single CAS and a transition can never be observed
+ * without its timestamp.
+ *
+ * @author raghavendra.araveti
+ */
+public final class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final State[] STATES = State.values();
+
+	// Bucket layout: epoch in bits 40-63, calls in bits 20-39, failures in bits 0-19
+	private static final int COUNT_BITS = 20;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final int EPOCH_SHIFT = 2 * COUNT_BITS;
+	private static final long EPOCH_MASK = (1L << (64 - EPOCH_SHIFT)) - 1;
+	private static final long ONE_CALL = 1L << COUNT_BITS;
+
+	private final long bucketNanos;
+	private final int bucketCount;
+	private final int stripeMask;
+	private final AtomicLongArray buckets;
+	private final double failureRateThreshold;
+	private final int minimumCalls;
+	private final long openNanos;
+	private final int halfOpenCalls;
+	private final LongSupplier nanoClock;
+
+	// State ordinal in the low 2 bits, the nanoTime the state was entered in the rest
+	private final AtomicLong state;
+	private final AtomicInteger trialPermits = new AtomicInteger();
+	private final AtomicInteger trialSuccesses = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder timesOpened = new LongAdder();
+
+	/**
+	 * @param window               length of the rolling failure-rate window
+	 * @param windowBuckets        number of buckets the window is split into
+	 * @param failureRateThreshold failure rate, between 0 and 1, that opens the
+	 *                             breaker
+	 * @param minimumCalls         calls the window must hold before the failure
+	 *                             rate is acted on
+	 * @param openDuration         how long the breaker stays open before trial
+	 *                             calls are let through
+	 * @param halfOpenCalls        trial calls that must all succeed to close the
+	 *                             breaker again
+	 */
+	public CircuitBreaker(Duration window, int windowBuckets, double failureRateThreshold, int minimumCalls,
+			Duration openDuration, int halfOpenCalls) {
+		this(window, windowBuckets, failureRateThreshold, minimumCalls, openDuration, halfOpenCalls, System::nanoTime);
+	}
+
+	CircuitBreaker(Duration window, int windowBuckets, double failureRateThreshold, int minimumCalls,
+			Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+		if (windowBuckets <= 0 || window.toNanos() < windowBuckets) {
+			throw new IllegalArgumentException("The window must be split into at least one bucket");
+		}
+		if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+			throw new IllegalArgumentException(
+					"Failure rate threshold must be above 0 and at most 1 but was " + failureRateThreshold);
+		}
+		if (halfOpenCalls <= 0) {
+			throw new IllegalArgumentException("At least one half-open call is required");
+		}
+		var stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+		this.bucketNanos = window.toNanos() / windowBuckets;
+		this.bucketCount = windowBuckets;
+		this.stripeMask = stripes - 1;
+		this.buckets = new AtomicLongArray(stripes * windowBuckets);
+		this.failureRateThreshold = failureRateThreshold;
+		this.minimumCalls = Math.max(1, minimumCalls);
+		this.openNanos = openDuration.toNanos();
+		this.halfOpenCalls = halfOpenCalls;
+		this.nanoClock = nanoClock;
+		this.state = new AtomicLong(stateWord(State.CLOSED, nanoClock.getAsLong()));
+	}
+
+	/**
+	 * Asks to make a call. Every call that is permitted must be followed by
+	 * exactly one of {@link #onSuccess()} or {@link #onFailure()}.
+	 * 
+	 * @return false if the breaker is open, or half-open with all trial calls
+	 *         taken
+	 */
+	public boolean tryAcquirePermission() {
+		while (true) {
+			var word = state.get();
+			switch (stateOf(word)) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				var now = nanoClock.getAsLong();
+				if (now - sinceOf(word) < openNanos) {
+					rejected.increment();
+					return false;
+				}
+				if (state.compareAndSet(word, stateWord(State.HALF_OPEN, now))) {
+					trialSuccesses.set(0);
+					trialPermits.set(halfOpenCalls);
+				}
+				break;
+			case HALF_OPEN:
+				var permits = trialPermits.get();
+				if (permits <= 0) {
+					rejected.increment();
+					return false;
+				}
+				if (trialPermits.compareAndSet(permits, permits - 1)) {
+					return true;
+				}
+				break;
+			}
+		}
+	}
+
+	public void onSuccess() {
+		var word = state.get();
+		if (stateOf(word) == State.HALF_OPEN) {
+			if (trialSuccesses.incrementAndGet() >= halfOpenCalls
+					&& state.compareAndSet(word, stateWord(State.CLOSED, nanoClock.getAsLong()))) {
+				clearWindow();
+			}
+			return;
+		}
+		record(nanoClock.getAsLong(), 0);
+	}
+
+	public void onFailure() {
+		var now = nanoClock.getAsLong();
+		var word = state.get();
+		switch (stateOf(word)) {
+		case HALF_OPEN:
+			open(word, now);
+			break;
+		case CLOSED:
+			record(now, 1);
+			if (shouldOpen(now)) {
+				open(word, now);
+			}
+			break;
+		case OPEN:
+			// A call let through before the breaker opened; the window no longer matters
+			break;
+		}
+	}
+
+	public State getState() {
+		var word = state.get();
+		var current = stateOf(word);
+		if (current == State.OPEN && nanoClock.getAsLong() - sinceOf(word) >= openNanos) {
+			return State.HALF_OPEN;
+		}
+		return current;
+	}
+
+	/**
+	 * Failure rate over the current window, or 0 if the window is empty.
+	 */
+	public double getFailureRate() {
+		return Math.max(0, failureRate(nanoClock.getAsLong(), 1));
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	public long getTimesOpened() {
+		return timesOpened.sum();
+	}
+
+	private void open(long word, long now) {
+		if (state.compareAndSet(word, stateWord(State.OPEN, now))) {
+			trialPermits.set(0);
+			timesOpened.increment();
+		}
+	}
+
+	private void record(long now, long failures) {
+		var epoch = Math.floorDiv(now, bucketNanos);
+		var index = (int) (Thread.currentThread().threadId() & stripeMask) * bucketCount
+				+ (int) Math.floorMod(epoch, (long) bucketCount);
+		var maskedEpoch = epoch & EPOCH_MASK;
+		while (true) {
+			var bucket = buckets.get(index);
+			long next;
+			if (bucket >>> EPOCH_SHIFT != maskedEpoch) {
+				next = (maskedEpoch << EPOCH_SHIFT) | ONE_CALL | failures;
+			} else if (((bucket >>> COUNT_BITS) & COUNT_MASK) == COUNT_MASK) {
+				// A full bucket stops counting rather than overflowing into the epoch
+				return;
+			} else {
+				next = bucket + ONE_CALL + failures;
+			}
+			if (buckets.compareAndSet(index, bucket, next)) {
+				return;
+			}
+		}
+	}
+
+	private boolean shouldOpen(long now) {
+		return failureRate(now, minimumCalls) >= failureRateThreshold;
+	}
+
+	/*
+	 * Failure rate over the buckets that are still inside the window, or -1 if
+	 * they hold fewer than minimumCalls calls.
+	 */
+	private double failureRate(long now, int minimumCalls) {
+		var epoch = Math.floorDiv(now, bucketNanos) & EPOCH_MASK;
+		long calls = 0;
+		long failures = 0;
+		for (var i = 0; i < buckets.length(); i++) {
+			var bucket = buckets.get(i);
+			var age = (epoch - (bucket >>> EPOCH_SHIFT)) & EPOCH_MASK;
+			if (bucket != 0 && age < bucketCount) {
+				calls += (bucket >>> COUNT_BITS) & COUNT_MASK;
+				failures += bucket & COUNT_MASK;
+			}
+		}
+		return calls < minimumCalls ? -1 : (double) failures / calls;
+	}
+
+	private void clearWindow() {
+		for (var i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+	}
+
+	private static long stateWord(State state, long sinceNanos) {
+		return sinceNanos << 2 | state.ordinal();
+	}
+
+	private static State stateOf(long word) {
+		return STATES[(int) (word & 3)];
+	}
+
+	private static long sinceOf(long word) {
+		return word >> 2;
+	}
+}
@@ -0,0 +1,84 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatReservationService;
+import uk.gov.dwp.uc.pairtest.seating.SeatsUnavailableException;
+
+/**
+ * Decorator that guards the seat reservation service with a bulkhead and a
+ * circuit breaker. A reservation is turned away with a
+ * ServiceUnavailableException carrying RESERVATION_UNAVAILABLE, without
+ * calling the service, when the bulkhead is full or the breaker is open. A
+ * SeatsUnavailableException is an answer from a healthy service, so only
+ * other exceptions count as failures.
+ *
+ * It wraps screening-aware services such as SeatInventory as well as plain
+ * ones: the screening is passed through, the seats reserved are returned, and
+ * a purchase is admitted by asking the wrapped service.
+ * 
+ * @author raghavendra.araveti
+ */
+public class ResilientSeatReservationService implements SeatReservationService, ScreeningSeatReservationService {
+
+	private final ScreeningSeatReservationService reservationService;
+	private final CircuitBreaker circuitBreaker;
+	private final Bulkhead bulkhead;
+
+	public ResilientSeatReservationService(SeatReservationService reservationService, CircuitBreaker circuitBreaker,
+			Bulkhead bulkhead) {
+		this(ScreeningSeatReservationService.adapt(reservationService), circuitBreaker, bulkhead);
+	}
+
+	public ResilientSeatReservationService(ScreeningSeatReservationService reservationService,
+			CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+		this.reservationService = reservationService;
+		this.circuitBreaker = circuitBreaker;
+		this.bulkhead = bulkhead;
+	}
+
+	@Override
+	public void admit(Screening screening) {
+		reservationService.admit(screening);
+	}
+
+	@Override
+	public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+		reserveSeats(null, accountId, totalSeatsToAllocate);
+	}
+
+	@Override
+	public void reserveSeat(Screening screening, long accountId, int totalSeatsToAllocate) {
+		reserveSeats(screening, accountId, totalSeatsToAllocate);
+	}
+
+	@Override
+	public int[] reserveSeats(Screening screening, long accountId, int totalSeatsToAllocate) {
+		// Bulkhead first, so that a half-open trial permit is never taken by a call that then cannot run
+		if (!bulkhead.tryAcquire()) {
+			throw new ServiceUnavailableException(PurchaseErrorCode.RESERVATION_UNAVAILABLE,
+					"Too many seat reservations in flight");
+		}
+		try {
+			if (!circuitBreaker.tryAcquirePermission()) {
+				throw new ServiceUnavailableException(PurchaseErrorCode.RESERVATION_UNAVAILABLE,
+						"Seat reservation circuit breaker is open");
+			}
+			int[] seats;
+			try {
+				seats = reservationService.reserveSeats(screening, accountId, totalSeatsToAllocate);
+			} catch (SeatsUnavailableException e) {
+				circuitBreaker.onSuccess();
+				throw e;
+			} catch (RuntimeException e) {
+				circuitBreaker.onFailure();
+				throw e;
+			}
+			circuitBreaker.onSuccess();
+			return seats;
+		} finally {
+			bulkhead.release();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+
+/**
+ * Decorator that guards the payment gateway with a bulkhead and a circuit
+ * breaker. A payment is turned away with a ServiceUnavailableException carrying
+ * PAYMENT_UNAVAILABLE, without calling the gateway, when the bulkhead is full
+ * or the breaker is open. Every exception thrown by the gateway counts as a
+ * failure.
+ *
+ * Refunds go straight to the gateway, so that a breaker opened by failing
+ * payments never holds back money that is owed. A gateway that cannot refund
+ * throws UnsupportedOperationException, which a CompensationProcessor treats
+ * as a failed refund.
+ * 
+ * @author raghavendra.araveti
+ */
+public class ResilientTicketPaymentService implements RefundableTicketPaymentService {
+
+	private final TicketPaymentService paymentService;
+	private final CircuitBreaker circuitBreaker;
+	private final Bulkhead bulkhead;
+
+	public ResilientTicketPaymentService(TicketPaymentService paymentService, CircuitBreaker circuitBreaker,
+			Bulkhead bulkhead) {
+		this.paymentService = paymentService;
+		this.circuitBreaker = circuitBreaker;
+		this.bulkhead = bulkhead;
+	}
+
+	@Override
+	public void makePayment(long accountId, int totalAmountToPay) {
+		// Bulkhead first, so that a half-open trial permit is never taken by a call that then cannot run
+		if (!bulkhead.tryAcquire()) {
+			throw new ServiceUnavailableException(PurchaseErrorCode.PAYMENT_UNAVAILABLE,
+					"Too many payments in flight");
+		}
+		try {
+			if (!circuitBreaker.tryAcquirePermission()) {
+				throw new ServiceUnavailableException(PurchaseErrorCode.PAYMENT_UNAVAILABLE,
+						"Payment circuit breaker is open");
+			}
+			try {
+				paymentService.makePayment(accountId, totalAmountToPay);
+			} catch (RuntimeException e) {
+				circuitBreaker.onFailure();
+				throw e;
+			}
+			circuitBreaker.onSuccess();
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	@Override
+	public void refund(long accountId, int totalAmountToRefund) {
+		if (!(paymentService instanceof RefundableTicketPaymentService refundablePaymentService)) {
+			throw new UnsupportedOperationException("The wrapped payment service cannot refund");
+		}
+		refundablePaymentService.refund(accountId, totalAmountToRefund);
+	}
+}
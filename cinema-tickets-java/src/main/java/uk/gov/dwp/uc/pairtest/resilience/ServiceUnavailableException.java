@@ -0,0 +1,25 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Thrown instead of calling a downstream service that is known to be failing
+ * or is already at its concurrency limit. The error code is the one the
+ * purchase is rejected with.
+ * 
+ * @author raghavendra.araveti
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+	private final PurchaseErrorCode errorCode;
+
+	public ServiceUnavailableException(PurchaseErrorCode errorCode, String message) {
+		super(message, null, false, false);
+		this.errorCode = errorCode;
+	}
+
+	public PurchaseErrorCode getErrorCode() {
+		return errorCode;
+	}
+}
@@ -0,0 +1,58 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * The outcome of one order that went through a PurchaseRingBuffer. An outcome
+ * is a view of a ring slot and is only valid during the call to
+ * {@link PurchaseOutcomeHandler#onOutcome}; the slot is reused afterwards.
+ * 
+ * @author raghavendra.araveti
+ */
+public interface PurchaseOutcome {
+
+	/**
+	 * The sequence returned by publish for this order.
+	 */
+	long getSequence();
+
+	/**
+	 * The id of the screening the order was for, or 0 if it was not for one.
+	 */
+	long getScreeningId();
+
+	long getAccountId();
+
+	/**
+	 * Why the order was rejected, or null if it was accepted. An order whose
+	 * payment or reservation failed stays accepted and has a failure.
+	 */
+	PurchaseErrorCode getErrorCode();
+
+	/**
+	 * The total price of an accepted order, or 0 if validation rejected it.
+	 */
+	int getTotalPrice();
+
+	/**
+	 * The seats of an accepted order, or 0 if validation rejected it.
+	 */
+	int getNumSeats();
+
+	/**
+	 * The indexes of the seats reserved for the order, or null if none were or
+	 * the reservation service does not know which seats they are.
+	 */
+	int[] getSeats();
+
+	/**
+	 * The exception the payment or reservation failed with, or null.
+	 */
+	RuntimeException getFailure();
+
+	/**
+	 * Whether payment was taken. A paid order with a failure could not be
+	 * seated, and is being refunded if the ring has a CompensationProcessor.
+	 */
+	boolean isPaid();
+}
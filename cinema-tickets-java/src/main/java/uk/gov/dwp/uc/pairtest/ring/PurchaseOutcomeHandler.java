@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+/**
+ * Receives the outcome of every order, in sequence order, on the last stage of
+ * a PurchaseRingBuffer.
+ * 
+ * @author raghavendra.araveti
+ */
+@FunctionalInterface
+public interface PurchaseOutcomeHandler {
+
+	void onOutcome(PurchaseOutcome outcome);
+}
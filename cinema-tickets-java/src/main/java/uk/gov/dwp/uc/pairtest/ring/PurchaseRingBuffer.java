@@ -0,0 +1,525 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResultSink;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.payment.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.payment.PaymentBatch;
+import uk.gov.dwp.uc.pairtest.resilience.ServiceUnavailableException;
+import uk.gov.dwp.uc.pairtest.saga.CompensationProcessor;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseSaga;
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatReservationService;
+
+/*
+ * Disruptor-style ingestion for purchase spikes. Orders are written into a
+ * preallocated ring of slots and flow through four stages, each on its own
+ * thread: validation, payment, seat reservation and completion, which
+ * journals the order and hands its outcome to the PurchaseOutcomeHandler.
+ *
+ * Producers claim a sequence with one atomic increment, wait for the slot to
+ * have been completed a lap earlier, copy the order's account id and ticket
+ * counts into the slot's primitive fields, along with a reference to its
+ * screening, and publish it
+ * by stamping the slot's lap in an availability array. Each stage tracks the
+ * last sequence it finished and only reads up to the sequence its upstream
+ * stage has finished, so no slot is ever touched by two stages at once and
+ * no locks are needed. A stage that falls behind finds several sequences
+ * available at once and works through them in one pass, so stages batch
+ * naturally under load.
+ *
+ * The payment stage pays for each such run of orders, up to 256 at a time,
+ * with one call to a BatchTicketPaymentService. The ring's single payment
+ * thread therefore keeps up with a gateway whose round trip takes
+ * milliseconds, as long as the gateway takes batches; one that only takes
+ * single payments is adapted and paid one order at a time.
+ *
+ * The ring creates no objects per order, only one PaymentBatch per gateway
+ * call. Validation writes the error code, total price and seat count into the
+ * slot rather than creating a PurchaseResult, and nothing the producer passed
+ * in is kept but the screening, which producers share. The TicketServiceImpl
+ * is only used to validate and price the orders, with the prices of their
+ * screening; payment and reservation go straight to the services. Seats are
+ * reserved in the order's screening, and the seats the reservation service
+ * reports are journaled with the order.
+ * Before paying, the payment stage asks the reservation service to admit the
+ * order, so a service that is shedding load turns it away unpaid. An order
+ * turned away by a resilience decorator before payment is rejected with its
+ * error code. Once paid, any reservation failure, a decorator's refusal
+ * included, is a failure: the order is journaled as failed and, given a
+ * CompensationProcessor, handed to it to be refunded.
+ *
+ * Idle stages spin, then yield, then park briefly. Stop publishing before
+ * calling close, which waits for every published order to complete.
+ *
+ * @author raghavendra.araveti
+ */
+public final class PurchaseRingBuffer implements AutoCloseable {
+
+	private static final int IDLE_SPINS = 100;
+	private static final int IDLE_YIELDS = 200;
+	private static final long IDLE_PARK_NANOS = 50_000;
+	private static final int MAX_PAYMENT_BATCH = 256;
+
+	private final TicketServiceImpl ticketService;
+	private final BatchTicketPaymentService paymentService;
+	private final ScreeningSeatReservationService reservationService;
+	private final CompensationProcessor compensations;
+	private final PurchaseJournal journal;
+	private final PurchaseOutcomeHandler outcomeHandler;
+	private final Slot[] slots;
+	private final int mask;
+	private final int lapShift;
+	private final AtomicIntegerArray publishedLaps;
+	private final AtomicLong claimed = new AtomicLong(-1);
+	private final Stage[] stages;
+	private final Stage completion;
+	private volatile boolean running = true;
+
+	private PurchaseRingBuffer(TicketServiceImpl ticketService, BatchTicketPaymentService paymentService,
+			ScreeningSeatReservationService reservationService, CompensationProcessor compensations,
+			PurchaseJournal journal, int capacity, PurchaseOutcomeHandler outcomeHandler) {
+		this.ticketService = ticketService;
+		this.paymentService = paymentService;
+		this.reservationService = reservationService;
+		this.compensations = compensations;
+		this.journal = journal;
+		this.outcomeHandler = outcomeHandler;
+
+		var size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.slots = new Slot[size];
+		for (var i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		this.mask = size - 1;
+		this.lapShift = Integer.numberOfTrailingZeros(size);
+		this.publishedLaps = new AtomicIntegerArray(size);
+		for (var i = 0; i < size; i++) {
+			publishedLaps.set(i, -1);
+		}
+
+		var validation = new Stage("validate", null, Integer.MAX_VALUE, eachSlot(this::validate));
+		var payment = new Stage("pay", validation, MAX_PAYMENT_BATCH, this::pay);
+		var reservation = new Stage("reserve", payment, Integer.MAX_VALUE, eachSlot(this::reserve));
+		this.completion = new Stage("complete", reservation, Integer.MAX_VALUE, eachSlot(this::complete));
+		this.stages = new Stage[] { validation, payment, reservation, completion };
+	}
+
+	/**
+	 * @param ticketService  validates and prices the orders
+	 * @param journal        journal for orders that reach payment, or null
+	 * @param capacity       number of slots, rounded up to a power of two
+	 * @param outcomeHandler receives every outcome on the completion stage
+	 */
+	public static PurchaseRingBuffer start(TicketServiceImpl ticketService, TicketPaymentService paymentService,
+			SeatReservationService reservationService, PurchaseJournal journal, int capacity,
+			PurchaseOutcomeHandler outcomeHandler) {
+		return start(ticketService, paymentService, reservationService, null, journal, capacity, outcomeHandler);
+	}
+
+	/**
+	 * Starts a ring that refunds orders whose reservation failed after they
+	 * were paid. The compensation processor should refund through the same
+	 * payment service that takes the payments.
+	 */
+	public static PurchaseRingBuffer start(TicketServiceImpl ticketService, TicketPaymentService paymentService,
+			SeatReservationService reservationService, CompensationProcessor compensations, PurchaseJournal journal,
+			int capacity, PurchaseOutcomeHandler outcomeHandler) {
+		return start(ticketService, BatchTicketPaymentService.adapt(paymentService), reservationService,
+				compensations, journal, capacity, outcomeHandler);
+	}
+
+	/**
+	 * Starts a ring whose payment stage pays for each run of orders with one
+	 * call to a gateway that takes batches.
+	 */
+	public static PurchaseRingBuffer start(TicketServiceImpl ticketService, BatchTicketPaymentService paymentService,
+			SeatReservationService reservationService, CompensationProcessor compensations, PurchaseJournal journal,
+			int capacity, PurchaseOutcomeHandler outcomeHandler) {
+		return start(ticketService, paymentService, ScreeningSeatReservationService.adapt(reservationService),
+				compensations, journal, capacity, outcomeHandler);
+	}
+
+	/**
+	 * Starts a ring that reserves seats in the screening of each order, such as
+	 * from a SeatInventory, and pays with a gateway that takes batches.
+	 */
+	public static PurchaseRingBuffer start(TicketServiceImpl ticketService, BatchTicketPaymentService paymentService,
+			ScreeningSeatReservationService reservationService, CompensationProcessor compensations,
+			PurchaseJournal journal, int capacity, PurchaseOutcomeHandler outcomeHandler) {
+		var ring = new PurchaseRingBuffer(ticketService, paymentService, reservationService, compensations, journal,
+				capacity, outcomeHandler);
+		for (var stage : ring.stages) {
+			stage.thread.start();
+		}
+		return ring;
+	}
+
+	/**
+	 * Writes an order that is not for a particular screening into the next free
+	 * slot, like {@link #publish(Screening, long, int, int, int)}.
+	 * 
+	 * @return the sequence of the order, as seen by the outcome handler
+	 */
+	public long publish(long accountId, int adultTickets, int childTickets, int infantTickets) {
+		return publish(null, accountId, adultTickets, childTickets, infantTickets);
+	}
+
+	/**
+	 * Writes an order for a screening into the next free slot, waiting while
+	 * the ring is full. Safe to call from any number of threads. A count of zero
+	 * means no tickets of that type were ordered.
+	 * 
+	 * @return the sequence of the order, as seen by the outcome handler
+	 */
+	public long publish(Screening screening, long accountId, int adultTickets, int childTickets, int infantTickets) {
+		if (!running) {
+			throw new IllegalStateException("Purchase ring buffer has been closed");
+		}
+		var sequence = claimed.incrementAndGet();
+
+		// Wait for the order a lap earlier in this slot to have completed
+		var wrapPoint = sequence - slots.length;
+		for (var idle = 0; completion.sequence.get() < wrapPoint; idle++) {
+			idle(idle);
+		}
+
+		var index = (int) sequence & mask;
+		slots[index].set(sequence, screening, accountId, adultTickets, childTickets, infantTickets);
+		publishedLaps.set(index, (int) (sequence >>> lapShift));
+		return sequence;
+	}
+
+	/**
+	 * The sequence up to which every order has completed, or -1 if none has.
+	 */
+	public long getCompletedSequence() {
+		return completion.sequence.get();
+	}
+
+	/**
+	 * Waits until every order up to and including the sequence has completed.
+	 */
+	public void awaitCompleted(long sequence) {
+		for (var idle = 0; completion.sequence.get() < sequence; idle++) {
+			idle(idle);
+		}
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * Stops the stages once every published order has completed.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for (var stage : stages) {
+			try {
+				stage.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void validate(Slot slot) {
+		try {
+			ticketService.validatePurchase(slot.screening, slot.accountId, slot.adultTickets, slot.childTickets,
+					slot.infantTickets, slot);
+			slot.downstream = slot.errorCode == null;
+		} catch (RuntimeException e) {
+			slot.failure = e;
+		}
+	}
+
+	/*
+	 * Pays for the orders from first to last with one gateway call. Each order
+	 * is admitted by the reservation service first, and only the orders it
+	 * admits go into the batch.
+	 */
+	private void pay(long first, long last) {
+		var count = 0;
+		for (var s = first; s <= last; s++) {
+			var slot = slots[(int) s & mask];
+			if (slot.downstream && admit(slot)) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		var accountIds = new long[count];
+		var amounts = new int[count];
+		var i = 0;
+		for (var s = first; s <= last; s++) {
+			var slot = slots[(int) s & mask];
+			if (awaitingPayment(slot)) {
+				accountIds[i] = slot.accountId;
+				amounts[i++] = slot.totalPrice;
+			}
+		}
+		var batch = new PaymentBatch(accountIds, amounts);
+		RuntimeException batchFailure = null;
+		try {
+			paymentService.makePayments(batch);
+		} catch (RuntimeException e) {
+			batchFailure = e;
+		}
+
+		// An exception from the call fails every payment in the batch
+		i = 0;
+		for (var s = first; s <= last; s++) {
+			var slot = slots[(int) s & mask];
+			if (!awaitingPayment(slot)) {
+				continue;
+			}
+			var failure = batchFailure != null ? batchFailure : batch.getFailure(i++);
+			if (failure == null) {
+				slot.paid = true;
+			} else if (failure instanceof ServiceUnavailableException unavailable) {
+				slot.errorCode = unavailable.getErrorCode();
+			} else {
+				slot.failure = failure;
+			}
+		}
+	}
+
+	private boolean admit(Slot slot) {
+		try {
+			reservationService.admit(slot.screening);
+			return true;
+		} catch (ServiceUnavailableException e) {
+			slot.errorCode = e.getErrorCode();
+		} catch (RuntimeException e) {
+			slot.failure = e;
+		}
+		return false;
+	}
+
+	// Validated and admitted, but not yet paid for
+	private static boolean awaitingPayment(Slot slot) {
+		return slot.downstream && slot.errorCode == null && slot.failure == null && !slot.paid;
+	}
+
+	private void reserve(Slot slot) {
+		if (!slot.paid) {
+			return;
+		}
+		try {
+			slot.seats = reservationService.reserveSeats(slot.screening, slot.accountId, slot.numSeats);
+		} catch (RuntimeException e) {
+			// The order has been paid for, so even a refusal to reserve is a failure that needs a refund
+			slot.failure = e;
+			if (compensations != null) {
+				compensations.submit(new PurchaseSaga(slot.accountId, slot.totalPrice, slot.numSeats));
+			}
+		}
+	}
+
+	private void complete(Slot slot) {
+		// Orders rejected by validation are not journaled, as nothing happened to them
+		if (journal != null && slot.downstream) {
+			var screeningId = slot.getScreeningId();
+			if (slot.failure != null) {
+				journal.recordFailure(slot.accountId, screeningId, slot.adultTickets, slot.childTickets,
+						slot.infantTickets, slot.totalPrice, slot.numSeats);
+			} else {
+				journal.recordPurchase(slot.accountId, screeningId, slot.adultTickets, slot.childTickets,
+						slot.infantTickets, slot.totalPrice, slot.numSeats, slot.errorCode, slot.seats);
+			}
+		}
+		try {
+			outcomeHandler.onOutcome(slot);
+		} catch (RuntimeException e) {
+			// A failing handler must not stop the pipeline; the outcome is lost to it alone
+		}
+		slot.clear();
+	}
+
+	/*
+	 * The highest sequence from next onwards up to which every order has been
+	 * published, or next - 1 if next itself has not been.
+	 */
+	private long highestPublished(long next) {
+		var highest = claimed.get();
+		for (var sequence = next; sequence <= highest; sequence++) {
+			if (publishedLaps.get((int) sequence & mask) != (int) (sequence >>> lapShift)) {
+				return sequence - 1;
+			}
+		}
+		return highest;
+	}
+
+	private Step eachSlot(Consumer<Slot> step) {
+		return (first, last) -> {
+			for (var s = first; s <= last; s++) {
+				step.accept(slots[(int) s & mask]);
+			}
+		};
+	}
+
+	private static void idle(int idle) {
+		if (idle < IDLE_SPINS) {
+			Thread.onSpinWait();
+		} else if (idle < IDLE_SPINS + IDLE_YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+	}
+
+	/*
+	 * The work of a stage on the orders from first to last, inclusive.
+	 */
+	@FunctionalInterface
+	private interface Step {
+
+		void run(long first, long last);
+	}
+
+	private final class Stage {
+
+		final AtomicLong sequence = new AtomicLong(-1);
+		final Stage upstream;
+		final int maxBatch;
+		final Step step;
+		final Thread thread;
+		volatile boolean finished;
+
+		Stage(String name, Stage upstream, int maxBatch, Step step) {
+			this.upstream = upstream;
+			this.maxBatch = maxBatch;
+			this.step = step;
+			this.thread = Thread.ofPlatform().name("purchase-ring-" + name).daemon().unstarted(this::runUntilClosed);
+		}
+
+		private void runUntilClosed() {
+			var next = 0L;
+			var idle = 0;
+			while (true) {
+				// Read whether upstream is done before what it made available, so nothing is missed
+				var upstreamDone = !running && (upstream == null ? claimed.get() < next : upstream.finished);
+				var available = upstream == null ? highestPublished(next) : upstream.sequence.get();
+
+				if (available >= next) {
+					var last = Math.min(available, next + maxBatch - 1);
+					step.run(next, last);
+					sequence.lazySet(last);
+					next = last + 1;
+					idle = 0;
+				} else if (upstreamDone) {
+					finished = true;
+					return;
+				} else {
+					idle(idle++);
+				}
+			}
+		}
+	}
+
+	private static final class Slot implements PurchaseOutcome, PurchaseResultSink {
+
+		long sequence;
+		Screening screening;
+		long accountId;
+		int adultTickets;
+		int childTickets;
+		int infantTickets;
+		PurchaseErrorCode errorCode;
+		int totalPrice;
+		int numSeats;
+		int[] seats;
+		RuntimeException failure;
+		boolean downstream;
+		boolean paid;
+
+		void set(long sequence, Screening screening, long accountId, int adultTickets, int childTickets,
+				int infantTickets) {
+			this.sequence = sequence;
+			this.screening = screening;
+			this.accountId = accountId;
+			this.adultTickets = adultTickets;
+			this.childTickets = childTickets;
+			this.infantTickets = infantTickets;
+		}
+
+		void clear() {
+			errorCode = null;
+			totalPrice = 0;
+			numSeats = 0;
+			seats = null;
+			failure = null;
+			downstream = false;
+			paid = false;
+		}
+
+		@Override
+		public void accepted(int totalPrice, int numSeats) {
+			this.totalPrice = totalPrice;
+			this.numSeats = numSeats;
+		}
+
+		@Override
+		public void rejected(PurchaseErrorCode errorCode) {
+			this.errorCode = errorCode;
+		}
+
+		@Override
+		public long getSequence() {
+			return sequence;
+		}
+
+		@Override
+		public long getScreeningId() {
+			return screening != null ? screening.getScreeningId() : 0L;
+		}
+
+		@Override
+		public long getAccountId() {
+			return accountId;
+		}
+
+		@Override
+		public PurchaseErrorCode getErrorCode() {
+			return errorCode;
+		}
+
+		@Override
+		public int getTotalPrice() {
+			return totalPrice;
+		}
+
+		@Override
+		public int getNumSeats() {
+			return numSeats;
+		}
+
+		@Override
+		public int[] getSeats() {
+			return seats;
+		}
+
+		@Override
+		public RuntimeException getFailure() {
+			return failure;
+		}
+
+		@Override
+		public boolean isPaid() {
+			return paid;
+		}
+	}
+}
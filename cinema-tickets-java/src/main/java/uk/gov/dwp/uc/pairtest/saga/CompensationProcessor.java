@@ -0,0 +1,165 @@
+package uk.gov.dwp.uc.pairtest.saga;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+
+/*
+ * Refunds purchases that were paid for but could not be completed. Purchase
+ * threads only enqueue the saga and return; a single background thread drains
+ * the queue in batches and issues the refunds, so a storm of failed
+ * reservations never holds up purchases. A refund that fails is retried at the
+ * back of the queue until it has been attempted maxAttempts times, after which
+ * the saga is left in COMPENSATION_FAILED for manual reconciliation. Once
+ * the processor has been closed, a saga submitted to it is refunded on the
+ * submitting thread instead, with the same retries, so that it is not lost.
+ *
+ * @author raghavendra.araveti
+ */
+public final class CompensationProcessor implements AutoCloseable {
+
+	private static final long POLL_MILLIS = 100;
+
+	private final RefundableTicketPaymentService paymentService;
+	private final int maxBatchSize;
+	private final int maxAttempts;
+	private final long retryBackoffMillis;
+	private final LinkedBlockingQueue<PurchaseSaga> pending = new LinkedBlockingQueue<>();
+	private final LongAdder compensated = new LongAdder();
+	private final LongAdder compensationFailures = new LongAdder();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private CompensationProcessor(RefundableTicketPaymentService paymentService, int maxBatchSize, int maxAttempts,
+			long retryBackoffMillis) {
+		this.paymentService = paymentService;
+		this.maxBatchSize = maxBatchSize;
+		this.maxAttempts = maxAttempts;
+		this.retryBackoffMillis = retryBackoffMillis;
+		this.worker = Thread.ofPlatform().name("purchase-compensation").daemon().unstarted(this::processUntilClosed);
+	}
+
+	public static CompensationProcessor start(RefundableTicketPaymentService paymentService, int maxBatchSize,
+			int maxAttempts, long retryBackoffMillis) {
+		var processor = new CompensationProcessor(paymentService, maxBatchSize, maxAttempts, retryBackoffMillis);
+		processor.worker.start();
+		return processor;
+	}
+
+	/**
+	 * Queues a paid purchase for refund. Never blocks while the processor is
+	 * running; once it has been closed, refunds the purchase before returning.
+	 */
+	public void submit(PurchaseSaga saga) {
+		saga.transitionTo(PurchaseState.COMPENSATING);
+		pending.add(saga);
+
+		// The worker may have drained the queue and stopped already, so refund here whatever it did not take
+		if (!running && pending.remove(saga)) {
+			compensateUntilDone(saga);
+		}
+	}
+
+	public long getCompensatedCount() {
+		return compensated.sum();
+	}
+
+	public long getCompensationFailureCount() {
+		return compensationFailures.sum();
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the processor once every queued compensation has been attempted.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void processUntilClosed() {
+		var batch = new ArrayList<PurchaseSaga>(maxBatchSize);
+		while (running || !pending.isEmpty()) {
+			try {
+				var first = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				pending.drainTo(batch, maxBatchSize - 1);
+
+				var refunded = 0;
+				for (var saga : batch) {
+					refunded += compensate(saga) ? 1 : 0;
+				}
+
+				// Back off when the whole batch failed, rather than spinning against a failing gateway
+				if (refunded == 0 && !pending.isEmpty()) {
+					Thread.sleep(retryBackoffMillis);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private boolean compensate(PurchaseSaga saga) {
+		if (refund(saga)) {
+			return true;
+		}
+		if (saga.recordCompensationAttempt() < maxAttempts) {
+			pending.add(saga);
+		} else {
+			giveUp(saga);
+		}
+		return false;
+	}
+
+	/*
+	 * Refunds a saga submitted after close on the calling thread, backing off
+	 * between attempts as the worker would.
+	 */
+	private void compensateUntilDone(PurchaseSaga saga) {
+		while (!refund(saga)) {
+			if (saga.recordCompensationAttempt() >= maxAttempts) {
+				giveUp(saga);
+				return;
+			}
+			try {
+				Thread.sleep(retryBackoffMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private boolean refund(PurchaseSaga saga) {
+		try {
+			paymentService.refund(saga.getAccountId(), saga.getTotalPrice());
+			saga.transitionTo(PurchaseState.COMPENSATED);
+			compensated.increment();
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	private void giveUp(PurchaseSaga saga) {
+		saga.transitionTo(PurchaseState.COMPENSATION_FAILED);
+		compensationFailures.increment();
+	}
+}
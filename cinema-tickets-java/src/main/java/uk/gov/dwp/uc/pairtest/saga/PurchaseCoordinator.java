@@ -0,0 +1,251 @@
+package uk.gov.dwp.uc.pairtest.saga;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.jfr.PaymentEvent;
+import uk.gov.dwp.uc.pairtest.jfr.SeatReservationEvent;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.seating.ScreeningSeatReservationService;
+import uk.gov.dwp.uc.pairtest.seating.SeatHold;
+import uk.gov.dwp.uc.pairtest.seating.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.seating.SeatsUnavailableException;
+
+/*
+ * Runs the downstream steps of a validated purchase as a saga: take payment,
+ * then reserve seats. If the reservation fails after the payment was taken,
+ * the purchase is handed to the CompensationProcessor to be refunded
+ * asynchronously and the reservation failure is rethrown to the caller. The
+ * reservation service is asked to admit the purchase first, so one that is
+ * shedding load turns it away before the customer is charged.
+ *
+ * A coordinator built without a CompensationProcessor cannot refund, and
+ * leaves a purchase whose reservation failed in the FAILED state.
+ *
+ * A coordinator built with a SeatHoldService runs the steps the other way
+ * round: hold seats, take payment, then confirm the hold. A sold out screening
+ * is then turned away in the REJECTED state before any payment is taken, and a
+ * failed payment releases the held seats. Only a hold that expires while the
+ * payment is in flight still needs a refund.
+ *
+ * Given PurchaseMetrics, the coordinator times the payment and the
+ * reservation (or hold), failed calls included.
+ *
+ * @author raghavendra.araveti
+ */
+public class PurchaseCoordinator {
+
+	private final TicketPaymentService paymentService;
+	private final ScreeningSeatReservationService reservationService;
+	private final SeatHoldService seatHolds;
+	private final CompensationProcessor compensations;
+	private volatile PurchaseMetrics metrics;
+
+	public PurchaseCoordinator(TicketPaymentService paymentService, SeatReservationService reservationService) {
+		this(paymentService, ScreeningSeatReservationService.adapt(reservationService));
+	}
+
+	public PurchaseCoordinator(TicketPaymentService paymentService,
+			ScreeningSeatReservationService reservationService) {
+		this.paymentService = paymentService;
+		this.reservationService = reservationService;
+		this.seatHolds = null;
+		this.compensations = null;
+	}
+
+	/*
+	 * The compensation processor should refund through the same payment service
+	 * that takes the payments.
+	 */
+	public PurchaseCoordinator(RefundableTicketPaymentService paymentService,
+			SeatReservationService reservationService, CompensationProcessor compensations) {
+		this(paymentService, ScreeningSeatReservationService.adapt(reservationService), compensations);
+	}
+
+	public PurchaseCoordinator(RefundableTicketPaymentService paymentService,
+			ScreeningSeatReservationService reservationService, CompensationProcessor compensations) {
+		this.paymentService = paymentService;
+		this.reservationService = reservationService;
+		this.seatHolds = null;
+		this.compensations = compensations;
+	}
+
+	/*
+	 * Holds seats before taking payment. Purchases must be made against a
+	 * screening.
+	 */
+	public PurchaseCoordinator(TicketPaymentService paymentService, SeatHoldService seatHolds) {
+		this.paymentService = paymentService;
+		this.reservationService = null;
+		this.seatHolds = seatHolds;
+		this.compensations = null;
+	}
+
+	public PurchaseCoordinator(RefundableTicketPaymentService paymentService, SeatHoldService seatHolds,
+			CompensationProcessor compensations) {
+		this.paymentService = paymentService;
+		this.reservationService = null;
+		this.seatHolds = seatHolds;
+		this.compensations = compensations;
+	}
+
+	public void setMetrics(PurchaseMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public PurchaseSaga execute(long accountId, int totalPrice, int numSeats) {
+		return execute(null, accountId, totalPrice, numSeats);
+	}
+
+	/*
+	 * Runs a purchase made against a screening, reserving the seats in that
+	 * screening.
+	 */
+	public PurchaseSaga execute(Screening screening, long accountId, int totalPrice, int numSeats) {
+		return execute(screening, new PurchaseSaga(accountId, totalPrice, numSeats));
+	}
+
+	/*
+	 * Runs the purchase tracked by a saga the caller created, so that the caller
+	 * can still tell whether payment was taken when a step throws.
+	 */
+	public PurchaseSaga execute(Screening screening, PurchaseSaga saga) {
+
+		var accountId = saga.getAccountId();
+		var metrics = this.metrics;
+		if (seatHolds != null) {
+			return holdThenPay(saga, screening, metrics);
+		}
+
+		// Turn the purchase away before payment if the reservation service would already refuse it
+		try {
+			reservationService.admit(screening);
+		} catch (RuntimeException e) {
+			saga.transitionTo(PurchaseState.FAILED);
+			throw e;
+		}
+
+		// Make payment to the payment service
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+		var paymentEvent = new PaymentEvent();
+		paymentEvent.begin();
+		try {
+			paymentService.makePayment(accountId, saga.getTotalPrice());
+		} catch (RuntimeException e) {
+			saga.transitionTo(PurchaseState.FAILED);
+			throw e;
+		} finally {
+			if (metrics != null) {
+				startNanos = metrics.recordStage(PurchaseStage.PAYMENT, startNanos);
+			}
+			commit(paymentEvent, saga);
+		}
+		saga.transitionTo(PurchaseState.PAID);
+
+		// Reserve seats using the seat reservation service, refunding the payment if that fails
+		var reservationEvent = new SeatReservationEvent();
+		reservationEvent.begin();
+		try {
+			saga.setSeats(reservationService.reserveSeats(screening, accountId, saga.getNumSeats()));
+		} catch (RuntimeException e) {
+			if (compensations != null) {
+				compensations.submit(saga);
+			} else {
+				saga.transitionTo(PurchaseState.FAILED);
+			}
+			throw e;
+		} finally {
+			if (metrics != null) {
+				metrics.recordStage(PurchaseStage.RESERVATION, startNanos);
+			}
+			commit(reservationEvent, saga, saga.getState() == PurchaseState.PAID);
+		}
+		saga.transitionTo(PurchaseState.RESERVED);
+
+		return saga;
+	}
+
+	private PurchaseSaga holdThenPay(PurchaseSaga saga, Screening screening, PurchaseMetrics metrics) {
+		if (screening == null) {
+			throw new IllegalArgumentException("A screening is required to hold seats");
+		}
+		var accountId = saga.getAccountId();
+
+		// Hold the seats, turning the purchase away before payment if there are not enough
+		var startNanos = metrics != null ? metrics.startTiming() : PurchaseMetrics.NOT_TIMED;
+		var reservationEvent = new SeatReservationEvent();
+		reservationEvent.begin();
+		SeatHold hold;
+		try {
+			hold = seatHolds.hold(screening.getScreeningId(), accountId, saga.getNumSeats());
+		} catch (SeatsUnavailableException e) {
+			saga.transitionTo(PurchaseState.REJECTED);
+			return saga;
+		} finally {
+			if (metrics != null) {
+				startNanos = metrics.recordStage(PurchaseStage.RESERVATION, startNanos);
+			}
+			commit(reservationEvent, saga, saga.getState() == PurchaseState.STARTED);
+		}
+		saga.transitionTo(PurchaseState.HELD);
+
+		// Make payment to the payment service, giving the seats back if that fails
+		var paymentEvent = new PaymentEvent();
+		paymentEvent.begin();
+		try {
+			paymentService.makePayment(accountId, saga.getTotalPrice());
+		} catch (RuntimeException e) {
+			seatHolds.release(hold);
+			saga.transitionTo(PurchaseState.FAILED);
+			throw e;
+		} finally {
+			if (metrics != null) {
+				metrics.recordStage(PurchaseStage.PAYMENT, startNanos);
+			}
+			commit(paymentEvent, saga);
+		}
+		saga.transitionTo(PurchaseState.PAID);
+
+		// Keep the held seats, refunding the payment if the hold ran out while paying
+		if (!seatHolds.confirm(hold)) {
+			if (compensations != null) {
+				compensations.submit(saga);
+			} else {
+				saga.transitionTo(PurchaseState.FAILED);
+			}
+			throw new SeatsUnavailableException("Seat hold expired before the payment completed");
+		}
+		saga.setSeats(hold.getSeats());
+		saga.transitionTo(PurchaseState.RESERVED);
+
+		return saga;
+	}
+
+	/*
+	 * Fills in and commits the JFR event of a payment. The fields are only set
+	 * when a recording has enabled the event.
+	 */
+	private static void commit(PaymentEvent event, PurchaseSaga saga) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.accountId = saga.getAccountId();
+			event.numSeats = saga.getNumSeats();
+			event.totalPrice = saga.getTotalPrice();
+			event.succeeded = saga.getState() != PurchaseState.FAILED;
+			event.commit();
+		}
+	}
+
+	private static void commit(SeatReservationEvent event, PurchaseSaga saga, boolean succeeded) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.accountId = saga.getAccountId();
+			event.numSeats = saga.getNumSeats();
+			event.totalPrice = saga.getTotalPrice();
+			event.succeeded = succeeded;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package uk.gov.dwp.uc.pairtest.saga;
+
+/**
+ * Tracks one purchase through the states of {@link PurchaseState}. A saga is
+ * only touched by one thread at a time: the purchase thread until it hands the
+ * saga over for compensation, then the compensation thread.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class PurchaseSaga {
+
+	private final long accountId;
+	private final int totalPrice;
+	private final int numSeats;
+	private volatile PurchaseState state = PurchaseState.STARTED;
+	private volatile boolean paid;
+	private int[] seats;
+	private int compensationAttempts;
+
+	public PurchaseSaga(long accountId, int totalPrice, int numSeats) {
+		this.accountId = accountId;
+		this.totalPrice = totalPrice;
+		this.numSeats = numSeats;
+	}
+
+	public long getAccountId() {
+		return accountId;
+	}
+
+	public int getTotalPrice() {
+		return totalPrice;
+	}
+
+	public int getNumSeats() {
+		return numSeats;
+	}
+
+	public PurchaseState getState() {
+		return state;
+	}
+
+	/**
+	 * Whether the payment was taken, even if the purchase failed afterwards and
+	 * the payment is being or has been refunded.
+	 */
+	public boolean isPaid() {
+		return paid;
+	}
+
+	/**
+	 * The indexes of the seats the purchase was given, or null if they are not
+	 * known: the purchase was not seated, or its reservation service does not
+	 * say which seats it took.
+	 */
+	public int[] getSeats() {
+		return seats;
+	}
+
+	void setSeats(int[] seats) {
+		this.seats = seats;
+	}
+
+	void transitionTo(PurchaseState state) {
+		if (state == PurchaseState.PAID) {
+			paid = true;
+		}
+		this.state = state;
+	}
+
+	int recordCompensationAttempt() {
+		return ++compensationAttempts;
+	}
+}
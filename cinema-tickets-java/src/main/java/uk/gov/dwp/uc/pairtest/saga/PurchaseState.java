@@ -0,0 +1,14 @@
+package uk.gov.dwp.uc.pairtest.saga;
+
+/**
+ * States a purchase moves through while the {@link PurchaseCoordinator} takes
+ * payment, reserves seats and, if the reservation fails, refunds the payment.
+ * A coordinator that holds seats before taking payment passes through HELD,
+ * and ends in REJECTED without taking payment if the seats cannot be held.
+ * 
+ * @author raghavendra.araveti
+ */
+public enum PurchaseState {
+
+	STARTED, HELD, PAID, RESERVED, REJECTED, FAILED, COMPENSATING, COMPENSATED, COMPENSATION_FAILED
+}
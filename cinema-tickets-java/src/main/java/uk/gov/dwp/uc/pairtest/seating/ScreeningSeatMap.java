@@ -0,0 +1,272 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/*
+ * Seat bitmap of one screening. Each row of the auditorium is one long word in
+ * which a set bit is a taken seat; bits past the end of a row are kept set so
+ * they are never handed out. A 300-seat screen therefore fits in a couple of
+ * cache lines and counting free seats is a popcount per row.
+ *
+ * Seats are claimed and released with compare-and-set on the row words, so
+ * threads only contend when they touch the same row at the same moment and no
+ * thread ever blocks another. A claim that cannot be satisfied in full gives
+ * back the seats it already took, so seats are never handed out twice and the
+ * screen is never oversold.
+ *
+ * Group orders are seated together where possible: claimBestAvailable finds
+ * every run of free seats long enough for the group with a few shift-and-mask
+ * steps per row word, ranks the runs by SeatQuality and claims the best one
+ * with a single compare-and-set.
+ *
+ * @author raghavendra.araveti
+ */
+public final class ScreeningSeatMap implements SeatReservationService {
+
+	private static final int[] NO_SEATS = new int[0];
+	private static final int MAX_CONTIGUOUS_ATTEMPTS = 8;
+
+	private final long screeningId;
+	private final SeatLayout layout;
+	private final SeatQuality quality;
+	private final AtomicLongArray rows;
+
+	public ScreeningSeatMap(long screeningId, SeatLayout layout) {
+		this(screeningId, layout, SeatQuality.centreWeighted(layout));
+	}
+
+	public ScreeningSeatMap(long screeningId, SeatLayout layout, SeatQuality quality) {
+		this.screeningId = screeningId;
+		this.layout = layout;
+		this.quality = quality;
+		this.rows = new AtomicLongArray(layout.rows());
+		for (var row = 0; row < layout.rows(); row++) {
+			rows.set(row, layout.paddingMask(row));
+		}
+	}
+
+	public long getScreeningId() {
+		return screeningId;
+	}
+
+	public SeatLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Reserves the best available seats for the account, throwing if the
+	 * screening does not have enough free seats.
+	 */
+	@Override
+	public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+		claimBestAvailable(totalSeatsToAllocate);
+	}
+
+	/**
+	 * Takes the best-scoring run of adjacent free seats in a single row. If no
+	 * row has a long enough run, the group is split and seated wherever there are
+	 * free seats.
+	 * 
+	 * @return the indexes of the seats taken
+	 * @throws SeatsUnavailableException if fewer seats are free than requested
+	 */
+	public int[] claimBestAvailable(int count) {
+		if (count <= 0 || count > SeatLayout.MAX_SEATS_PER_ROW) {
+			return claim(count);
+		}
+
+		for (var attempt = 0; attempt < MAX_CONTIGUOUS_ATTEMPTS; attempt++) {
+			var bestRow = -1;
+			var bestColumn = -1;
+			var bestScore = Long.MIN_VALUE;
+			var bestWord = 0L;
+
+			for (var row = 0; row < layout.rows(); row++) {
+				if (layout.rowLength(row) < count) {
+					continue;
+				}
+				var word = rows.get(row);
+				var starts = runStarts(~word, count);
+				while (starts != 0) {
+					var column = Long.numberOfTrailingZeros(starts);
+					starts &= starts - 1;
+					var score = quality.runScore(row, column, count);
+					if (score > bestScore) {
+						bestRow = row;
+						bestColumn = column;
+						bestScore = score;
+						bestWord = word;
+					}
+				}
+			}
+
+			if (bestRow < 0) {
+				break;
+			}
+
+			var run = (count == SeatLayout.MAX_SEATS_PER_ROW ? -1L : (1L << count) - 1) << bestColumn;
+			if (rows.compareAndSet(bestRow, bestWord, bestWord | run)) {
+				var seats = new int[count];
+				for (var i = 0; i < count; i++) {
+					seats[i] = SeatLayout.seatIndex(bestRow, bestColumn + i);
+				}
+				return seats;
+			}
+		}
+
+		// No run long enough, or the best runs kept being taken: seat the group wherever there is room
+		return claim(count);
+	}
+
+	/**
+	 * Takes the requested number of free seats, or none at all if there are not
+	 * enough. A pass over the rows that comes up short, because other claims
+	 * took seats in rows it had yet to reach, is repeated for the rest of the
+	 * seats for as long as the free seat count shows there are enough left.
+	 * 
+	 * @return the indexes of the seats taken
+	 * @throws SeatsUnavailableException if fewer seats are free than requested
+	 */
+	public int[] claim(int count) {
+		if (count <= 0) {
+			return NO_SEATS;
+		}
+
+		var seats = new int[count];
+		var taken = 0;
+		while (taken < count) {
+			// Too few seats left for the rest of the claim; give back what we took
+			if (availableSeats() < count - taken) {
+				release(seats, taken);
+				throw soldOut(count);
+			}
+
+			for (var row = 0; row < layout.rows() && taken < count; row++) {
+				long current;
+				long claimed;
+				do {
+					current = rows.get(row);
+					claimed = lowestBits(~current, count - taken);
+				} while (claimed != 0 && !rows.compareAndSet(row, current, current | claimed));
+
+				while (claimed != 0) {
+					seats[taken++] = SeatLayout.seatIndex(row, Long.numberOfTrailingZeros(claimed));
+					claimed &= claimed - 1;
+				}
+			}
+		}
+		return seats;
+	}
+
+	/**
+	 * Frees seats previously returned by {@link #claim(int)}.
+	 */
+	public void release(int[] seats) {
+		release(seats, seats.length);
+	}
+
+	private void release(int[] seats, int count) {
+		for (var i = 0; i < count; i++) {
+			var seat = seats[i];
+			var row = SeatLayout.rowOf(seat);
+			var bit = 1L << SeatLayout.columnOf(seat);
+			if ((layout.paddingMask(row) & bit) != 0) {
+				throw new IllegalStateException("Seat " + seat + " does not exist in screening " + screeningId);
+			}
+
+			long current;
+			do {
+				current = rows.get(row);
+				if ((current & bit) == 0) {
+					throw new IllegalStateException("Seat " + seat + " of screening " + screeningId + " is not taken");
+				}
+			} while (!rows.compareAndSet(row, current, current & ~bit));
+		}
+	}
+
+	public boolean isTaken(int seat) {
+		return (rows.get(SeatLayout.rowOf(seat)) & (1L << SeatLayout.columnOf(seat))) != 0;
+	}
+
+	/**
+	 * Number of free seats. Under concurrent claims this is a snapshot that may
+	 * already be out of date when it returns.
+	 */
+	public int availableSeats() {
+		var free = 0;
+		for (var row = 0; row < layout.rows(); row++) {
+			free += Long.bitCount(~rows.get(row));
+		}
+		return free;
+	}
+
+	/*
+	 * Reads one row word, padding bits included, for a snapshot.
+	 */
+	long rowWord(int row) {
+		return rows.get(row);
+	}
+
+	/*
+	 * Overwrites one row word from a snapshot, keeping the padding bits set.
+	 */
+	void restoreRow(int row, long word) {
+		rows.set(row, word | layout.paddingMask(row));
+	}
+
+	/*
+	 * Takes the given seats again during recovery. Seats that are already taken
+	 * are left as they are, so a purchase that is in both the snapshot and the
+	 * journal is seated once.
+	 */
+	void restoreSeats(int[] seats) {
+		for (var seat : seats) {
+			var row = SeatLayout.rowOf(seat);
+			var bit = 1L << SeatLayout.columnOf(seat);
+			if (row >= layout.rows() || (layout.paddingMask(row) & bit) != 0) {
+				throw new IllegalStateException("Seat " + seat + " does not exist in screening " + screeningId);
+			}
+			rows.getAndAccumulate(row, bit, (word, taken) -> word | taken);
+		}
+	}
+
+	/*
+	 * Marks every column at which a run of at least length free seats begins.
+	 * Bit i of the result is set when bits i to i + length - 1 of free are all
+	 * set; the run length covered doubles on each step, so a run of 20 takes five
+	 * shift-and-mask steps rather than twenty.
+	 */
+	static long runStarts(long free, int length) {
+		var starts = free;
+		var covered = 1;
+		while (covered < length && starts != 0) {
+			var step = Math.min(covered, length - covered);
+			starts &= starts >>> step;
+			covered += step;
+		}
+		return starts;
+	}
+
+	/*
+	 * Keeps at most the lowest n set bits of a word.
+	 */
+	private static long lowestBits(long bits, int n) {
+		if (Long.bitCount(bits) <= n) {
+			return bits;
+		}
+		var kept = 0L;
+		for (var i = 0; i < n; i++) {
+			var lowest = bits & -bits;
+			kept |= lowest;
+			bits ^= lowest;
+		}
+		return kept;
+	}
+
+	private SeatsUnavailableException soldOut(int count) {
+		return new SeatsUnavailableException("Not enough seats left for screening " + screeningId + ", " + count
+				+ " requested");
+	}
+}
@@ -0,0 +1,46 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/**
+ * Seat reservation for a particular screening. Purchases that were not made
+ * against a screening pass a null screening.
+ * 
+ * @author raghavendra.araveti
+ */
+@FunctionalInterface
+public interface ScreeningSeatReservationService {
+
+	void reserveSeat(Screening screening, long accountId, int totalSeatsToAllocate);
+
+	/**
+	 * Reserves seats like {@link #reserveSeat}, returning the indexes of the
+	 * seats taken, or null if the service does not know which seats they are.
+	 */
+	default int[] reserveSeats(Screening screening, long accountId, int totalSeatsToAllocate) {
+		reserveSeat(screening, accountId, totalSeatsToAllocate);
+		return null;
+	}
+
+	/**
+	 * Called before payment is taken for a purchase. A service that already
+	 * knows it would refuse the reservation throws here, so that the purchase
+	 * is turned away before the customer is charged. Does nothing by default.
+	 */
+	default void admit(Screening screening) {
+	}
+
+	/**
+	 * Adapts a reservation service that has no notion of screenings. The
+	 * screening is ignored. A service that is also a
+	 * ScreeningSeatReservationService is returned as it is.
+	 */
+	static ScreeningSeatReservationService adapt(SeatReservationService reservationService) {
+		if (reservationService instanceof ScreeningSeatReservationService screeningReservationService) {
+			return screeningReservationService;
+		}
+		return (screening, accountId, totalSeatsToAllocate) -> reservationService.reserveSeat(accountId,
+				totalSeatsToAllocate);
+	}
+}
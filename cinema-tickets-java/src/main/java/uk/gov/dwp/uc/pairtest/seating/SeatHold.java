@@ -0,0 +1,64 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+/**
+ * Seats held for an account while it pays. A hold ends in exactly one of
+ * CONFIRMED, RELEASED or EXPIRED; only a confirmed hold keeps its seats.
+ * 
+ * The hold is also its own entry in the expiry timing wheel, so holding seats
+ * allocates nothing beyond the hold itself.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class SeatHold {
+
+	public enum State {
+		HELD, CONFIRMED, RELEASED, EXPIRED
+	}
+
+	private final long screeningId;
+	private final long accountId;
+	private final int[] seats;
+	private volatile State state = State.HELD;
+
+	// Timing wheel links, guarded by the SeatHoldService lock
+	long deadlineTick;
+	int wheelLevel;
+	int wheelSlot;
+	SeatHold previous;
+	SeatHold next;
+
+	SeatHold(long screeningId, long accountId, int[] seats, long deadlineTick) {
+		this.screeningId = screeningId;
+		this.accountId = accountId;
+		this.seats = seats;
+		this.deadlineTick = deadlineTick;
+	}
+
+	public long getScreeningId() {
+		return screeningId;
+	}
+
+	public long getAccountId() {
+		return accountId;
+	}
+
+	public int[] getSeats() {
+		return seats.clone();
+	}
+
+	public int getNumSeats() {
+		return seats.length;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	int[] seats() {
+		return seats;
+	}
+
+	void setState(State state) {
+		this.state = state;
+	}
+}
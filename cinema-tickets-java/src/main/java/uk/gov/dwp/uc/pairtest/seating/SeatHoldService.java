@@ -0,0 +1,182 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+ * Holds seats while a customer pays. hold takes the best available seats in
+ * the screening straight away, so no one else can buy them, and the hold is
+ * then either confirmed, which keeps the seats, or released, which frees them.
+ * A hold that is neither confirmed nor released within the hold duration
+ * expires and its seats are freed.
+ *
+ * Expiry runs on a hierarchical timing wheel rather than a scheduled task per
+ * hold: adding or ending a hold is O(1) however many holds are outstanding, and
+ * the holds due on a tick are expired together. A background thread advances
+ * the wheel every tick; expireHolds can also be called directly.
+ *
+ * @author raghavendra.araveti
+ */
+public final class SeatHoldService implements AutoCloseable {
+
+	private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+
+	private final SeatInventory inventory;
+	private final long holdTicks;
+	private final long tickNanos;
+	private final LongSupplier nanoClock;
+	private final TimingWheel wheel;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LongAdder expired = new LongAdder();
+	private final Thread ticker;
+	private volatile boolean running = true;
+
+	SeatHoldService(SeatInventory inventory, Duration holdDuration, Duration tick, LongSupplier nanoClock) {
+		if (tick.toNanos() <= 0 || holdDuration.compareTo(tick) < 0) {
+			throw new IllegalArgumentException("Hold duration must be at least one tick of " + tick);
+		}
+		this.inventory = inventory;
+		this.tickNanos = tick.toNanos();
+		this.holdTicks = holdDuration.toNanos() / tickNanos;
+		this.nanoClock = nanoClock;
+		this.wheel = new TimingWheel(currentTick());
+		this.ticker = Thread.ofPlatform().name("seat-hold-expiry").daemon().unstarted(this::expireUntilClosed);
+	}
+
+	/**
+	 * Starts a service whose holds expire after holdDuration, checked every 10
+	 * milliseconds.
+	 */
+	public static SeatHoldService start(SeatInventory inventory, Duration holdDuration) {
+		return start(inventory, holdDuration, DEFAULT_TICK);
+	}
+
+	public static SeatHoldService start(SeatInventory inventory, Duration holdDuration, Duration tick) {
+		var service = new SeatHoldService(inventory, holdDuration, tick, System::nanoTime);
+		service.ticker.start();
+		return service;
+	}
+
+	/**
+	 * Takes the best available seats in the screening and holds them for the
+	 * account until the hold is confirmed, released or expires.
+	 * 
+	 * @throws SeatsUnavailableException if the screening does not have enough
+	 *                                   free seats
+	 */
+	public SeatHold hold(long screeningId, long accountId, int totalSeatsToAllocate) {
+		var seats = inventory.screening(screeningId).claimBestAvailable(totalSeatsToAllocate);
+		var hold = new SeatHold(screeningId, accountId, seats, currentTick() + holdTicks);
+
+		lock.lock();
+		try {
+			wheel.add(hold);
+		} finally {
+			lock.unlock();
+		}
+		return hold;
+	}
+
+	/**
+	 * Keeps the held seats for good.
+	 * 
+	 * @return false if the hold had already expired or been released, in which
+	 *         case its seats may have been sold to someone else
+	 */
+	public boolean confirm(SeatHold hold) {
+		return end(hold, SeatHold.State.CONFIRMED);
+	}
+
+	/**
+	 * Frees the held seats.
+	 * 
+	 * @return false if the hold had already ended
+	 */
+	public boolean release(SeatHold hold) {
+		if (!end(hold, SeatHold.State.RELEASED)) {
+			return false;
+		}
+		inventory.screening(hold.getScreeningId()).release(hold.seats());
+		return true;
+	}
+
+	/**
+	 * Expires every hold that has run past its hold duration and frees its seats.
+	 * 
+	 * @return how many holds expired
+	 */
+	public int expireHolds() {
+		lock.lock();
+		try {
+			var count = wheel.advanceTo(currentTick(), this::expire);
+			expired.add(count);
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getHeldCount() {
+		lock.lock();
+		try {
+			return wheel.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getExpiredCount() {
+		return expired.sum();
+	}
+
+	/**
+	 * Stops expiring holds. Outstanding holds keep their seats.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		ticker.interrupt();
+		try {
+			ticker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean end(SeatHold hold, SeatHold.State state) {
+		lock.lock();
+		try {
+			if (hold.getState() != SeatHold.State.HELD) {
+				return false;
+			}
+			wheel.remove(hold);
+			hold.setState(state);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void expire(SeatHold hold) {
+		hold.setState(SeatHold.State.EXPIRED);
+		inventory.screening(hold.getScreeningId()).release(hold.seats());
+	}
+
+	private long currentTick() {
+		return nanoClock.getAsLong() / tickNanos;
+	}
+
+	private void expireUntilClosed() {
+		while (running) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(tickNanos);
+			} catch (InterruptedException e) {
+				return;
+			}
+			expireHolds();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+
+/*
+ * In-process seat inventory holding a ScreeningSeatMap per screening. Each
+ * screening map is also a SeatReservationService on its own, for callers that
+ * only ever sell one screening.
+ *
+ * @author raghavendra.araveti
+ */
+public class SeatInventory implements ScreeningSeatReservationService {
+
+	private final ConcurrentHashMap<Long, ScreeningSeatMap> screenings = new ConcurrentHashMap<>();
+
+	public ScreeningSeatMap addScreening(long screeningId, SeatLayout layout) {
+		return addScreening(screeningId, layout, SeatQuality.centreWeighted(layout));
+	}
+
+	public ScreeningSeatMap addScreening(long screeningId, SeatLayout layout, SeatQuality quality) {
+		var seatMap = new ScreeningSeatMap(screeningId, layout, quality);
+		if (screenings.putIfAbsent(screeningId, seatMap) != null) {
+			throw new IllegalStateException("Screening " + screeningId + " already exists");
+		}
+		return seatMap;
+	}
+
+	public ScreeningSeatMap screening(long screeningId) {
+		var seatMap = screenings.get(screeningId);
+		if (seatMap == null) {
+			throw new IllegalArgumentException("Unknown screening " + screeningId);
+		}
+		return seatMap;
+	}
+
+	@Override
+	public void reserveSeat(Screening screening, long accountId, int totalSeatsToAllocate) {
+		reserveSeats(screening, accountId, totalSeatsToAllocate);
+	}
+
+	@Override
+	public int[] reserveSeats(Screening screening, long accountId, int totalSeatsToAllocate) {
+		if (screening == null) {
+			throw new IllegalArgumentException("A screening is required to reserve seats from the seat inventory");
+		}
+		return reserveSeats(screening.getScreeningId(), totalSeatsToAllocate);
+	}
+
+	/**
+	 * Takes the best available seats in a screening and returns which seats were
+	 * taken.
+	 */
+	public int[] reserveSeats(long screeningId, int totalSeatsToAllocate) {
+		return screening(screeningId).claimBestAvailable(totalSeatsToAllocate);
+	}
+
+	public int availableSeats(long screeningId) {
+		return screening(screeningId).availableSeats();
+	}
+
+	/*
+	 * The seat map of a screening, or null if there is no such screening.
+	 */
+	ScreeningSeatMap findScreening(long screeningId) {
+		return screenings.get(screeningId);
+	}
+
+	Collection<ScreeningSeatMap> screenings() {
+		return screenings.values();
+	}
+}
@@ -0,0 +1,264 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseRecord;
+
+/*
+ * Periodic binary snapshots of every screening's seat bitmap, and recovery of
+ * a SeatInventory from the latest snapshot plus the purchases journaled after
+ * it. A snapshot records the last journal sequence at the moment it was
+ * started; recovery loads the bitmaps and then takes back the exact seats of
+ * every completed purchase journaled after that sequence.
+ *
+ * Snapshots are taken while purchases continue. The journal sequence is read
+ * before any bitmap is copied, so every purchase journaled up to that sequence
+ * is in the snapshot; a purchase in flight at the time may be in both the
+ * snapshot and the replay. Replaying a seat that is already taken leaves it
+ * taken, so such a purchase is seated once, in the seats it was sold.
+ * Purchases journaled without their seats were not seated from a
+ * SeatInventory and are skipped. Holds are not journaled, so seats held when
+ * the snapshot was taken stay taken.
+ *
+ * File layout: magic, version, journal sequence, screening count, then per
+ * screening its id, row count, row lengths and row words, and finally a
+ * CRC32C of everything before it. Files are written to a temporary name and
+ * moved into place, and the two most recent are kept.
+ *
+ * @author raghavendra.araveti
+ */
+public final class SeatInventorySnapshotter implements AutoCloseable {
+
+	private static final int MAGIC = 0x53454154;
+	private static final int VERSION = 1;
+	private static final String SNAPSHOT_PREFIX = "seats-";
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final int SNAPSHOTS_KEPT = 2;
+
+	private final SeatInventory inventory;
+	private final PurchaseJournal journal;
+	private final Path directory;
+	private final long intervalNanos;
+	private final LongAdder failures = new LongAdder();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private SeatInventorySnapshotter(SeatInventory inventory, PurchaseJournal journal, Path directory,
+			Duration interval) {
+		this.inventory = inventory;
+		this.journal = journal;
+		this.directory = directory;
+		this.intervalNanos = interval.toNanos();
+		this.worker = Thread.ofPlatform().name("seat-inventory-snapshot").daemon().unstarted(this::snapshotUntilClosed);
+	}
+
+	/**
+	 * Starts taking a snapshot of the inventory every interval.
+	 */
+	public static SeatInventorySnapshotter start(SeatInventory inventory, PurchaseJournal journal, Path directory,
+			Duration interval) throws IOException {
+		Files.createDirectories(directory);
+		var snapshotter = new SeatInventorySnapshotter(inventory, journal, directory, interval);
+		snapshotter.worker.start();
+		return snapshotter;
+	}
+
+	/**
+	 * Takes a snapshot now.
+	 * 
+	 * @return the snapshot file
+	 */
+	public Path snapshot() throws IOException {
+		var file = write(inventory, journal.getLastSequence(), directory);
+		var snapshots = snapshotFiles(directory);
+		for (var i = 0; i < snapshots.size() - SNAPSHOTS_KEPT; i++) {
+			Files.deleteIfExists(snapshots.get(i));
+		}
+		return file;
+	}
+
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		worker.interrupt();
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Rebuilds the seat bitmaps of the inventory from the latest intact snapshot
+	 * and the journal. Screenings already in the inventory keep their layout
+	 * and seat quality, which must match the snapshot; others are added with
+	 * centre-weighted seat quality.
+	 * 
+	 * @return how many journaled purchases had their seats taken back
+	 */
+	public static long recover(SeatInventory inventory, Path snapshotDirectory, Path journalDirectory)
+			throws IOException {
+		var journalSequence = 0L;
+		if (Files.isDirectory(snapshotDirectory)) {
+			var snapshots = snapshotFiles(snapshotDirectory);
+			for (var i = snapshots.size() - 1; i >= 0; i--) {
+				try {
+					journalSequence = read(snapshots.get(i), inventory);
+					break;
+				} catch (IOException e) {
+					// A damaged snapshot falls back to the one before it, with a longer replay
+				}
+			}
+		}
+
+		var reseated = new LongAdder();
+		PurchaseJournal.replay(journalDirectory, journalSequence, record -> {
+			if (record.getOutcome() != PurchaseRecord.Outcome.COMPLETED || record.getNumSeats() == 0) {
+				return;
+			}
+			var seatMap = inventory.findScreening(record.getScreeningId());
+			var seats = record.getSeats();
+			if (seatMap == null || seats.length == 0) {
+				return;
+			}
+			seatMap.restoreSeats(seats);
+			reseated.increment();
+		});
+		return reseated.sum();
+	}
+
+	static Path write(SeatInventory inventory, long journalSequence, Path directory) throws IOException {
+		var seatMaps = new ArrayList<>(inventory.screenings());
+		var file = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, journalSequence, SNAPSHOT_SUFFIX));
+		var temporary = directory.resolve(file.getFileName() + ".tmp");
+
+		var crc = new CRC32C();
+		try (var out = new DataOutputStream(
+				new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(journalSequence);
+			out.writeInt(seatMaps.size());
+			for (var seatMap : seatMaps) {
+				var layout = seatMap.getLayout();
+				out.writeLong(seatMap.getScreeningId());
+				out.writeShort(layout.rows());
+				for (var row = 0; row < layout.rows(); row++) {
+					out.writeByte(layout.rowLength(row));
+				}
+				for (var row = 0; row < layout.rows(); row++) {
+					out.writeLong(seatMap.rowWord(row));
+				}
+			}
+			out.flush();
+			out.writeInt((int) crc.getValue());
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+
+	/*
+	 * Loads a snapshot into the inventory and returns its journal sequence. The
+	 * whole file is checked before anything is loaded.
+	 */
+	static long read(Path file, SeatInventory inventory) throws IOException {
+		var crc = new CRC32C();
+		try (var in = new DataInputStream(
+				new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a seat inventory snapshot: " + file);
+			}
+			var journalSequence = in.readLong();
+			var count = in.readInt();
+			var screeningIds = new long[count];
+			var layouts = new SeatLayout[count];
+			var words = new long[count][];
+			for (var i = 0; i < count; i++) {
+				screeningIds[i] = in.readLong();
+				var rowLengths = new int[in.readUnsignedShort()];
+				for (var row = 0; row < rowLengths.length; row++) {
+					rowLengths[row] = in.readUnsignedByte();
+				}
+				layouts[i] = SeatLayout.of(rowLengths);
+				words[i] = new long[rowLengths.length];
+				for (var row = 0; row < rowLengths.length; row++) {
+					words[i][row] = in.readLong();
+				}
+			}
+			var expectedCrc = (int) crc.getValue();
+			if (in.readInt() != expectedCrc) {
+				throw new IOException("Seat inventory snapshot is damaged: " + file);
+			}
+
+			for (var i = 0; i < count; i++) {
+				var seatMap = inventory.findScreening(screeningIds[i]);
+				if (seatMap == null) {
+					seatMap = inventory.addScreening(screeningIds[i], layouts[i]);
+				} else if (!sameShape(seatMap.getLayout(), layouts[i])) {
+					throw new IOException("Screening " + screeningIds[i] + " has a different layout in " + file);
+				}
+				for (var row = 0; row < words[i].length; row++) {
+					seatMap.restoreRow(row, words[i][row]);
+				}
+			}
+			return journalSequence;
+		}
+	}
+
+	private static boolean sameShape(SeatLayout a, SeatLayout b) {
+		if (a.rows() != b.rows()) {
+			return false;
+		}
+		for (var row = 0; row < a.rows(); row++) {
+			if (a.rowLength(row) != b.rowLength(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<Path> snapshotFiles(Path directory) throws IOException {
+		var snapshots = new ArrayList<Path>();
+		try (var files = Files.list(directory)) {
+			files.filter(file -> {
+				var name = file.getFileName().toString();
+				return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+			}).sorted().forEach(snapshots::add);
+		}
+		return snapshots;
+	}
+
+	private void snapshotUntilClosed() {
+		while (running) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(intervalNanos);
+				snapshot();
+			} catch (InterruptedException e) {
+				return;
+			} catch (IOException | RuntimeException e) {
+				failures.increment();
+			}
+		}
+	}
+}
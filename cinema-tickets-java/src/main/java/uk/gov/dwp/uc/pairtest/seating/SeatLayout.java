@@ -0,0 +1,78 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Object
+ * 
+ * The seating plan of an auditorium: how many seats each row has. Rows are at
+ * most {@value #MAX_SEATS_PER_ROW} seats wide so that every row fits in one
+ * {@code long} word of a seat bitmap. A seat is identified by its index
+ * {@code row * 64 + column}.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class SeatLayout {
+
+	public static final int MAX_SEATS_PER_ROW = Long.SIZE;
+
+	private final int[] rowLengths;
+	private final int capacity;
+
+	private SeatLayout(int[] rowLengths) {
+		this.rowLengths = rowLengths;
+		this.capacity = Arrays.stream(rowLengths).sum();
+	}
+
+	public static SeatLayout of(int... rowLengths) {
+		if (rowLengths.length == 0) {
+			throw new IllegalArgumentException("A seat layout needs at least one row");
+		}
+		for (var rowLength : rowLengths) {
+			if (rowLength < 1 || rowLength > MAX_SEATS_PER_ROW) {
+				throw new IllegalArgumentException(
+						"Row length must be between 1 and " + MAX_SEATS_PER_ROW + " but was " + rowLength);
+			}
+		}
+		return new SeatLayout(rowLengths.clone());
+	}
+
+	public static SeatLayout uniform(int rows, int seatsPerRow) {
+		var rowLengths = new int[rows];
+		Arrays.fill(rowLengths, seatsPerRow);
+		return of(rowLengths);
+	}
+
+	public int rows() {
+		return rowLengths.length;
+	}
+
+	public int rowLength(int row) {
+		return rowLengths[row];
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/*
+	 * Bits of a row word that do not correspond to a seat. They are kept set in
+	 * the seat bitmap so they can never be allocated.
+	 */
+	long paddingMask(int row) {
+		var rowLength = rowLengths[row];
+		return rowLength == MAX_SEATS_PER_ROW ? 0L : -1L << rowLength;
+	}
+
+	public static int seatIndex(int row, int column) {
+		return row * MAX_SEATS_PER_ROW + column;
+	}
+
+	public static int rowOf(int seatIndex) {
+		return seatIndex / MAX_SEATS_PER_ROW;
+	}
+
+	public static int columnOf(int seatIndex) {
+		return seatIndex % MAX_SEATS_PER_ROW;
+	}
+}
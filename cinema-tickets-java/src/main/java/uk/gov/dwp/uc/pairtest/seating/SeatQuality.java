@@ -0,0 +1,68 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+/**
+ * Immutable Object
+ * 
+ * Quality score of every seat of an auditorium, higher being better. Scores are
+ * stored as running totals per row so that the score of any run of adjacent
+ * seats is one subtraction.
+ * 
+ * @author raghavendra.araveti
+ */
+public final class SeatQuality {
+
+	private final long[][] rowTotals;
+
+	private SeatQuality(long[][] rowTotals) {
+		this.rowTotals = rowTotals;
+	}
+
+	/**
+	 * Builds quality scores from one array of seat scores per row.
+	 */
+	public static SeatQuality of(SeatLayout layout, int[][] seatScores) {
+		if (seatScores.length != layout.rows()) {
+			throw new IllegalArgumentException(
+					"Expected scores for " + layout.rows() + " rows but got " + seatScores.length);
+		}
+		var rowTotals = new long[layout.rows()][];
+		for (var row = 0; row < layout.rows(); row++) {
+			if (seatScores[row].length != layout.rowLength(row)) {
+				throw new IllegalArgumentException("Expected " + layout.rowLength(row) + " scores for row " + row
+						+ " but got " + seatScores[row].length);
+			}
+			rowTotals[row] = new long[seatScores[row].length + 1];
+			for (var column = 0; column < seatScores[row].length; column++) {
+				rowTotals[row][column + 1] = rowTotals[row][column] + seatScores[row][column];
+			}
+		}
+		return new SeatQuality(rowTotals);
+	}
+
+	/**
+	 * Default scores favouring seats near the middle of each row and rows about
+	 * two thirds of the way back from the screen.
+	 */
+	public static SeatQuality centreWeighted(SeatLayout layout) {
+		var bestRow = (layout.rows() - 1) * 2 / 3.0;
+		var seatScores = new int[layout.rows()][];
+		for (var row = 0; row < layout.rows(); row++) {
+			var rowLength = layout.rowLength(row);
+			var centre = (rowLength - 1) / 2.0;
+			seatScores[row] = new int[rowLength];
+			for (var column = 0; column < rowLength; column++) {
+				var rowPenalty = Math.abs(row - bestRow) / Math.max(1, layout.rows());
+				var columnPenalty = Math.abs(column - centre) / Math.max(1, rowLength);
+				seatScores[row][column] = (int) Math.round(1_000 * (1 - rowPenalty) * (1 - columnPenalty));
+			}
+		}
+		return of(layout, seatScores);
+	}
+
+	/**
+	 * Total score of {@code length} adjacent seats starting at {@code column}.
+	 */
+	public long runScore(int row, int column, int length) {
+		return rowTotals[row][column + length] - rowTotals[row][column];
+	}
+}
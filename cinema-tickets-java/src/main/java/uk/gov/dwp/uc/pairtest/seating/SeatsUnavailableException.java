@@ -0,0 +1,15 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+/**
+ * Thrown when a screening does not have enough free seats for a reservation.
+ * 
+ * @author raghavendra.araveti
+ */
+public class SeatsUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public SeatsUnavailableException(String message) {
+		super(message, null, false, false);
+	}
+}
@@ -0,0 +1,137 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import java.util.function.Consumer;
+
+/*
+ * Hierarchical timing wheel of seat holds. Each level has 64 slots and each
+ * slot of a level spans a whole turn of the level below, so four levels cover
+ * 64^4 ticks. A hold is linked into the slot of the highest level at which its
+ * deadline differs from the current tick, which makes adding and removing a
+ * hold O(1). When the lower levels complete a turn, the next slot of the level
+ * above is unlinked in one step and its holds drop down a level; a level 0 slot
+ * is expired as a whole when its tick is reached. Holds beyond the range of the
+ * top level go round it again until they come into range.
+ *
+ * Not thread-safe: SeatHoldService guards it with its lock.
+ *
+ * @author raghavendra.araveti
+ */
+final class TimingWheel {
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	private final SeatHold[][] slots = new SeatHold[LEVELS][SLOTS];
+	private long currentTick;
+	private int size;
+
+	TimingWheel(long startTick) {
+		this.currentTick = startTick;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/*
+	 * Adds a hold due at its deadlineTick. A deadline that has already passed is
+	 * expired on the next tick.
+	 */
+	void add(SeatHold hold) {
+		if (hold.deadlineTick <= currentTick) {
+			hold.deadlineTick = currentTick + 1;
+		}
+		link(hold);
+		size++;
+	}
+
+	void remove(SeatHold hold) {
+		unlink(hold);
+		size--;
+	}
+
+	/*
+	 * Advances the wheel to nowTick, passing every hold whose deadline has been
+	 * reached to expire. Returns how many holds expired.
+	 */
+	int advanceTo(long nowTick, Consumer<SeatHold> expire) {
+		var expired = 0;
+		while (currentTick < nowTick) {
+			if (size == 0) {
+				// Nothing to expire or cascade, so skip straight to now
+				currentTick = nowTick;
+				break;
+			}
+			currentTick++;
+			cascade();
+
+			var slot = (int) (currentTick & SLOT_MASK);
+			var hold = slots[0][slot];
+			slots[0][slot] = null;
+			while (hold != null) {
+				var next = hold.next;
+				hold.previous = null;
+				hold.next = null;
+				size--;
+				expired++;
+				expire.accept(hold);
+				hold = next;
+			}
+		}
+		return expired;
+	}
+
+	/*
+	 * Moves the holds of every upper-level slot that starts at the current tick
+	 * down the wheel, highest level first so that they can fall more than one
+	 * level.
+	 */
+	private void cascade() {
+		var level = 0;
+		while (level + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+			level++;
+		}
+		for (; level > 0; level--) {
+			var slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+			var hold = slots[level][slot];
+			slots[level][slot] = null;
+			while (hold != null) {
+				var next = hold.next;
+				hold.previous = null;
+				hold.next = null;
+				link(hold);
+				hold = next;
+			}
+		}
+	}
+
+	private void link(SeatHold hold) {
+		var differingBit = 63 - Long.numberOfLeadingZeros(hold.deadlineTick ^ currentTick);
+		var level = Math.min(differingBit / SLOT_BITS, LEVELS - 1);
+		var slot = (int) ((hold.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+		hold.wheelLevel = level;
+		hold.wheelSlot = slot;
+		hold.previous = null;
+		hold.next = slots[level][slot];
+		if (hold.next != null) {
+			hold.next.previous = hold;
+		}
+		slots[level][slot] = hold;
+	}
+
+	private void unlink(SeatHold hold) {
+		if (hold.previous != null) {
+			hold.previous.next = hold.next;
+		} else {
+			slots[hold.wheelLevel][hold.wheelSlot] = hold.next;
+		}
+		if (hold.next != null) {
+			hold.next.previous = hold.previous;
+		}
+		hold.previous = null;
+		hold.next = null;
+	}
+}
@@ -0,0 +1,100 @@
+package uk.gov.dwp.uc.pairtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.idempotency.IdempotencyCache;
+
+/**
+ * Unit tests for the `IdempotentTicketService` class, checking that retries
+ * under the same idempotency key never charge the account twice.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class IdempotentTicketServiceTest {
+
+	private TicketPaymentService mockPaymentService;
+	private SeatReservationService mockReservationService;
+	private IdempotentTicketService ticketService;
+
+	@Before
+	public void setUp() {
+		mockPaymentService = mock(TicketPaymentService.class);
+		mockReservationService = mock(SeatReservationService.class);
+		ticketService = new IdempotentTicketService(new TicketServiceImpl(mockPaymentService, mockReservationService),
+				new IdempotencyCache(1_000, Duration.ofMinutes(10), 16));
+	}
+
+	@Test
+	public void testRetryWithSameKeyReturnsStoredResult() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		PurchaseResult first = ticketService.purchase("order-1", 123L, adultTicketType);
+		PurchaseResult retry = ticketService.purchase("order-1", 123L, adultTicketType);
+
+		assertSame(first, retry);
+		verify(mockPaymentService, Mockito.times(1)).makePayment(123L, 40);
+		verify(mockReservationService, Mockito.times(1)).reserveSeat(123L, 2);
+	}
+
+	@Test
+	public void testPurchasesWithoutKeyAreNotDeduplicated() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		ticketService.purchase(null, 123L, adultTicketType);
+		ticketService.purchase(null, 123L, adultTicketType);
+
+		verify(mockPaymentService, Mockito.times(2)).makePayment(123L, 40);
+	}
+
+	@Test
+	public void testKeyReusedForDifferentPurchaseIsRejected() {
+		TicketTypeRequest twoAdults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest threeAdults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3);
+
+		ticketService.purchase("order-1", 123L, twoAdults);
+		PurchaseResult reused = ticketService.purchase("order-1", 123L, threeAdults);
+		PurchaseResult otherAccount = ticketService.purchase("order-1", 456L, threeAdults);
+
+		assertEquals(PurchaseErrorCode.IDEMPOTENCY_KEY_REUSED, reused.getErrorCode());
+		assertTrue(otherAccount.isAccepted());
+		verify(mockPaymentService, Mockito.never()).makePayment(123L, 60);
+		verify(mockPaymentService).makePayment(456L, 60);
+	}
+
+	@Test
+	public void testFailedPurchaseCanBeRetriedWithSameKey() {
+		doThrow(new IllegalStateException("Payment gateway timed out")).doNothing().when(mockPaymentService)
+				.makePayment(Mockito.anyLong(), Mockito.anyInt());
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+		try {
+			ticketService.purchase("order-1", 123L, adultTicketType);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Payment gateway timed out", e.getMessage());
+		}
+		PurchaseResult retry = ticketService.purchase("order-1", 123L, adultTicketType);
+
+		assertEquals(20, retry.getTotalPrice());
+		verify(mockPaymentService, Mockito.times(2)).makePayment(123L, 20);
+		verify(mockReservationService, Mockito.times(1)).reserveSeat(123L, 1);
+	}
+}
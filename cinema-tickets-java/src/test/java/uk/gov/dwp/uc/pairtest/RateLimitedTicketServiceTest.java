@@ -0,0 +1,102 @@
+package uk.gov.dwp.uc.pairtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.ratelimit.AccountRateLimiter;
+
+/**
+ * Unit tests for the `RateLimitedTicketService` class, checking that rate
+ * limited purchases are rejected before they reach the downstream services,
+ * and that invalid account ids are left for validation to reject.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class RateLimitedTicketServiceTest {
+
+	private TicketPaymentService mockPaymentService;
+	private SeatReservationService mockReservationService;
+	private RateLimitedTicketService ticketService;
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Before
+	public void setUp() {
+		mockPaymentService = mock(TicketPaymentService.class);
+		mockReservationService = mock(SeatReservationService.class);
+		ticketService = new RateLimitedTicketService(new TicketServiceImpl(mockPaymentService, mockReservationService),
+				new AccountRateLimiter(0.001, 2, 1, 4));
+	}
+
+	@Test
+	public void testPurchaseTicketsOverRateIsRejected() throws InvalidPurchaseException {
+		thrown.expect(InvalidPurchaseException.class);
+		thrown.expectMessage("Too many purchases for this account. Please try again later");
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+		ticketService.purchaseTickets(123L, adultTicketType);
+		ticketService.purchaseTickets(123L, adultTicketType);
+
+		try {
+			ticketService.purchaseTickets(123L, adultTicketType);
+		} catch (InvalidPurchaseException e) {
+			assertEquals(PurchaseErrorCode.RATE_LIMITED, e.getErrorCode());
+			verify(mockPaymentService, Mockito.times(2)).makePayment(123L, 20);
+
+			throw e;
+		}
+	}
+
+	@Test
+	public void testBatchPurchaseRejectsOnlyRateLimitedOrders() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+		List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, adultTicketType),
+				new PurchaseOrder(123L, adultTicketType), new PurchaseOrder(123L, adultTicketType),
+				new PurchaseOrder(456L, adultTicketType));
+
+		List<PurchaseResult> results = ticketService.purchaseTickets(purchaseOrders);
+
+		assertTrue(results.get(0).isAccepted());
+		assertEquals(PurchaseErrorCode.RATE_LIMITED, results.get(1).getErrorCode());
+		assertEquals(PurchaseErrorCode.RATE_LIMITED, results.get(2).getErrorCode());
+		assertTrue(results.get(3).isAccepted());
+		verify(mockPaymentService).makePayment(123L, 20);
+		verify(mockPaymentService).makePayment(456L, 20);
+	}
+
+	@Test
+	public void testInvalidAccountIdIsRejectedByValidationNotRateLimited() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+		for (var i = 0; i < 3; i++) {
+			assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID,
+					ticketService.purchase(0L, adultTicketType).getErrorCode());
+			assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID,
+					ticketService.purchase(-1L, adultTicketType).getErrorCode());
+		}
+		List<PurchaseResult> results = ticketService.purchaseTickets(
+				List.of(new PurchaseOrder(0L, adultTicketType), new PurchaseOrder(0L, adultTicketType)));
+
+		assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID, results.get(0).getErrorCode());
+		assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID, results.get(1).getErrorCode());
+	}
+}
@@ -4,9 +4,17 @@
 package uk.gov.dwp.uc.pairtest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -15,9 +23,18 @@ import org.mockito.Mockito;
 
 import thirdparty.paymentgateway.TicketPaymentService;
 import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResultSink;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+import uk.gov.dwp.uc.pairtest.seating.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
 
 /**
  * This class contains unit tests for the `TicketServiceImpl` class. It uses
@@ -258,4 +275,243 @@ public class TicketServiceImplTest {
 
 	}
 
+	@Test
+	public void testBatchPurchaseReturnsResultPerOrderWithoutThrowing() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+		List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, adultTicketType, childTicketType),
+				new PurchaseOrder(0L, adultTicketType), new PurchaseOrder(456L, childTicketType),
+				new PurchaseOrder(789L, adultTicketType));
+
+		List<PurchaseResult> results = ticketService.purchaseTickets(purchaseOrders);
+
+		assertEquals(4, results.size());
+		assertTrue(results.get(0).isAccepted());
+		assertEquals(50, results.get(0).getTotalPrice());
+		assertEquals(3, results.get(0).getNumSeats());
+		assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID, results.get(1).getErrorCode());
+		assertEquals(PurchaseErrorCode.MISSING_ADULT_TICKET, results.get(2).getErrorCode());
+		assertTrue(results.get(3).isAccepted());
+
+		// Rejected orders never reach the downstream services
+		verify(mockPaymentService).makePayment(123L, 50);
+		verify(mockReservationService).reserveSeat(123L, 3);
+		verify(mockPaymentService).makePayment(789L, 40);
+		verify(mockReservationService).reserveSeat(789L, 2);
+		verify(mockPaymentService, Mockito.never()).makePayment(Mockito.eq(456L), Mockito.anyInt());
+	}
+
+	@Test
+	public void testBatchPurchaseGroupsDownstreamCallsByAccount() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+		TicketTypeRequest infantTicketType = new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1);
+		List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, adultTicketType),
+				new PurchaseOrder(123L, adultTicketType, infantTicketType), new PurchaseOrder(123L, adultTicketType));
+
+		ticketService.purchaseTickets(purchaseOrders);
+
+		verify(mockPaymentService, Mockito.times(1)).makePayment(123L, 60);
+		verify(mockReservationService, Mockito.times(1)).reserveSeat(123L, 3);
+	}
+
+	@Test
+	public void testBatchPurchaseSplitsAccountGroupThatWouldExceedTheTicketLimit() {
+		List<Integer> reservedSeats = new ArrayList<>();
+		ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+		}, (accountId, totalSeatsToAllocate) -> {
+			if (reservedSeats.size() == 1) {
+				throw new IllegalStateException("Seat booking error");
+			}
+			reservedSeats.add(totalSeatsToAllocate);
+		});
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 15);
+		List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, adultTicketType),
+				new PurchaseOrder(123L, adultTicketType));
+
+		List<PurchaseResult> results = ticketService.purchaseTickets(purchaseOrders);
+
+		// The orders cannot share a purchase of 30 seats, so each goes downstream, and fails, on its own
+		assertTrue(results.get(0).isAccepted());
+		assertEquals(PurchaseErrorCode.PURCHASE_FAILED, results.get(1).getErrorCode());
+		assertEquals(List.of(15), reservedSeats);
+	}
+
+	@Test
+	public void testBatchPurchaseFailureForOneAccountDoesNotStopTheBatch() {
+		List<Long> chargedAccounts = new ArrayList<>();
+		ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+			if (accountId == 456L) {
+				throw new IllegalStateException("Payment gateway error");
+			}
+			chargedAccounts.add(accountId);
+		}, (accountId, totalSeatsToAllocate) -> {
+		});
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+		List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, adultTicketType),
+				new PurchaseOrder(456L, adultTicketType), new PurchaseOrder(789L, adultTicketType),
+				new PurchaseOrder(456L, adultTicketType));
+
+		List<PurchaseResult> results = ticketService.purchaseTickets(purchaseOrders);
+
+		// Every order of the failed account is reported, and the accounts either side are still charged
+		assertTrue(results.get(0).isAccepted());
+		assertEquals(PurchaseErrorCode.PURCHASE_FAILED, results.get(1).getErrorCode());
+		assertTrue(results.get(2).isAccepted());
+		assertEquals(PurchaseErrorCode.PURCHASE_FAILED, results.get(3).getErrorCode());
+		assertEquals(List.of(123L, 789L), chargedAccounts);
+	}
+
+	@Test
+	public void testBatchPurchaseRejectsAccountGroupTurnedAwayForLackOfSeats() {
+		Screening screening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		SeatInventory inventory = new SeatInventory();
+		inventory.addScreening(1001L, SeatLayout.uniform(1, 3));
+		List<Long> chargedAccounts = new ArrayList<>();
+
+		try (SeatHoldService holdService = SeatHoldService.start(inventory, Duration.ofMinutes(10))) {
+			ticketService = new TicketServiceImpl(
+					new PurchaseCoordinator((accountId, totalAmountToPay) -> chargedAccounts.add(accountId),
+							holdService),
+					PriceTable.DEFAULT);
+			TicketTypeRequest twoAdults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+			TicketTypeRequest oneAdult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+			List<PurchaseOrder> purchaseOrders = List.of(new PurchaseOrder(123L, twoAdults),
+					new PurchaseOrder(456L, oneAdult), new PurchaseOrder(456L, oneAdult));
+
+			List<PurchaseResult> results = ticketService.purchaseTickets(screening, purchaseOrders);
+
+			assertTrue(results.get(0).isAccepted());
+			assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, results.get(1).getErrorCode());
+			assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, results.get(2).getErrorCode());
+			assertEquals(List.of(123L), chargedAccounts);
+			assertEquals(1, inventory.availableSeats(1001L));
+		}
+	}
+
+	@Test
+	public void testValidatePurchaseReturnsSharedRejectionWithoutThrowing() {
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+		PurchaseResult first = ticketService.validatePurchase(1L, childTicketType);
+		PurchaseResult second = ticketService.validatePurchase(2L, childTicketType);
+
+		assertEquals(PurchaseErrorCode.MISSING_ADULT_TICKET, first.getErrorCode());
+		assertSame(first, second);
+		verify(mockPaymentService, Mockito.never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+		verify(mockReservationService, Mockito.never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test
+	public void testValidatePurchaseDoesNotCallDownstreamServicesForValidPurchase() {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+		PurchaseResult result = ticketService.validatePurchase(123L, adultTicketType, childTicketType);
+
+		assertTrue(result.isAccepted());
+		assertEquals(50, result.getTotalPrice());
+		assertEquals(3, result.getNumSeats());
+		verify(mockPaymentService, Mockito.never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+		verify(mockReservationService, Mockito.never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test
+	public void testTicketCountsAreValidatedByTheSameRulesAsTicketTypeRequests() {
+		int max = Integer.MAX_VALUE;
+		int[][] purchases = { { 0, 0, 0 }, { 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 }, { 2, 1, 1 }, { -1, 0, 0 },
+				{ 1, -1, 0 }, { 0, -1, 0 }, { 0, 0, -1 }, { 20, 0, 0 }, { 21, 0, 0 }, { 15, 5, 0 }, { 15, 6, 0 },
+				{ 20, 0, 1 }, { 10, 0, 11 }, { 0, 21, 0 }, { -1, 21, 0 }, { 21, -1, 0 }, { max, 0, 0 }, { 1, max, 0 },
+				{ 1, 0, max }, { max, max, max } };
+
+		for (long accountId : new long[] { 1L, 0L, -1L }) {
+			for (int[] purchase : purchases) {
+				List<TicketTypeRequest> requests = new ArrayList<>();
+				if (purchase[0] != 0) {
+					requests.add(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, purchase[0]));
+				}
+				if (purchase[1] != 0) {
+					requests.add(new TicketTypeRequest(TicketTypeRequest.Type.CHILD, purchase[1]));
+				}
+				if (purchase[2] != 0) {
+					requests.add(new TicketTypeRequest(TicketTypeRequest.Type.INFANT, purchase[2]));
+				}
+				PurchaseResult expected = ticketService.validatePurchase(accountId,
+						requests.toArray(new TicketTypeRequest[0]));
+
+				List<PurchaseResult> actual = new ArrayList<>();
+				ticketService.validatePurchase(accountId, purchase[0], purchase[1], purchase[2],
+						new PurchaseResultSink() {
+							@Override
+							public void accepted(int totalPrice, int numSeats) {
+								actual.add(PurchaseResult.accepted(totalPrice, numSeats));
+							}
+
+							@Override
+							public void rejected(PurchaseErrorCode errorCode) {
+								actual.add(PurchaseResult.rejected(errorCode));
+							}
+						});
+
+				String purchaseName = accountId + " " + Arrays.toString(purchase);
+				assertEquals(purchaseName, 1, actual.size());
+				assertEquals(purchaseName, expected.getErrorCode(), actual.get(0).getErrorCode());
+				assertEquals(purchaseName, expected.getTotalPrice(), actual.get(0).getTotalPrice());
+				assertEquals(purchaseName, expected.getNumSeats(), actual.get(0).getNumSeats());
+			}
+		}
+	}
+
+	@Test
+	public void testRejectedPurchaseExceptionSkipsStackTrace() {
+		TicketTypeRequest[] ticketTypeRequests = new TicketTypeRequest[] {};
+
+		try {
+			ticketService.purchaseTickets(1L, ticketTypeRequests);
+			fail("Expected InvalidPurchaseException");
+		} catch (InvalidPurchaseException e) {
+			assertEquals(PurchaseErrorCode.MISSING_TICKET_REQUEST, e.getErrorCode());
+			assertEquals(0, e.getStackTrace().length);
+		}
+	}
+
+	@Test
+	public void testPurchaseTicketsUsesSwappedPriceTable() throws InvalidPurchaseException {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+		ticketService.setPriceTable(PriceTable.of(25, 12, 0));
+		ticketService.purchaseTickets(123L, adultTicketType, childTicketType);
+
+		verify(mockPaymentService).makePayment(123L, 62);
+		verify(mockReservationService).reserveSeat(123L, 3);
+	}
+
+	@Test
+	public void testPurchaseAgainstScreeningUsesScreeningPrices() {
+		Screening peakScreening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		ticketService = new TicketServiceImpl(mockPaymentService, mockReservationService,
+				screening -> screening.getTimeBand() == Screening.TimeBand.PEAK ? PriceTable.of(25, 12, 0)
+						: PriceTable.DEFAULT);
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+		PurchaseResult result = ticketService.purchase(peakScreening, 123L, adultTicketType, childTicketType);
+
+		assertEquals(62, result.getTotalPrice());
+		verify(mockPaymentService).makePayment(123L, 62);
+		verify(mockReservationService).reserveSeat(123L, 3);
+	}
+
+	@Test
+	public void testValidatePurchaseWithoutScreeningUsesOwnPriceTable() {
+		ticketService = new TicketServiceImpl(mockPaymentService, mockReservationService,
+				screening -> screening.getTimeBand() == Screening.TimeBand.PEAK ? PriceTable.of(25, 12, 0)
+						: PriceTable.DEFAULT);
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		PurchaseResult result = ticketService.validatePurchase(null, 123L, adultTicketType);
+
+		assertEquals(40, result.getTotalPrice());
+	}
+
 }
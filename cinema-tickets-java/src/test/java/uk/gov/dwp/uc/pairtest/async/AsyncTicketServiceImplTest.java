@@ -0,0 +1,133 @@
+package uk.gov.dwp.uc.pairtest.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.CompensationProcessor;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+
+/**
+ * Unit tests for the `AsyncTicketServiceImpl` class, covering accepted and
+ * rejected purchases, downstream failures, refunds and many orders in flight
+ * at once.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class AsyncTicketServiceImplTest {
+
+	private TicketPaymentService mockPaymentService;
+	private SeatReservationService mockReservationService;
+	private ExecutorService executor;
+	private AsyncTicketServiceImpl ticketService;
+
+	@Before
+	public void setUp() {
+		mockPaymentService = mock(TicketPaymentService.class);
+		mockReservationService = mock(SeatReservationService.class);
+		executor = AsyncTicketServiceImpl.boundedExecutor(4, 64);
+		ticketService = new AsyncTicketServiceImpl(new TicketServiceImpl(mockPaymentService, mockReservationService),
+				executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testPurchaseTicketsAsyncWithValidTicketTypeRequests() throws Exception {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+		TicketTypeRequest childTicketType = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+
+		PurchaseResult result = ticketService.purchaseTicketsAsync(123L, adultTicketType, childTicketType).get();
+
+		assertTrue(result.isAccepted());
+		verify(mockPaymentService).makePayment(123L, 50);
+		verify(mockReservationService).reserveSeat(123L, 3);
+	}
+
+	@Test
+	public void testPurchaseTicketsAsyncCompletesWithRejectedResult() throws Exception {
+		TicketTypeRequest infantTicketType = new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1);
+
+		PurchaseResult result = ticketService.purchaseTicketsAsync(123L, infantTicketType).get();
+
+		assertEquals(PurchaseErrorCode.MISSING_ADULT_TICKET, result.getErrorCode());
+		verify(mockPaymentService, Mockito.never()).makePayment(Mockito.anyLong(), Mockito.anyInt());
+		verify(mockReservationService, Mockito.never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void testPurchaseTicketsAsyncSkipsReservationWhenPaymentFails() throws Exception {
+		doThrow(new IllegalStateException("Payment gateway unavailable")).when(mockPaymentService)
+				.makePayment(Mockito.anyLong(), Mockito.anyInt());
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+		try {
+			ticketService.purchaseTicketsAsync(123L, adultTicketType).get();
+		} finally {
+			verify(mockReservationService, Mockito.never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+		}
+	}
+
+	@Test
+	public void testPurchaseTicketsAsyncRefundsPaymentWhenReservationFails() throws Exception {
+		RefundableTicketPaymentService refundablePaymentService = mock(RefundableTicketPaymentService.class);
+		doThrow(new IllegalStateException("Seat reservation unavailable")).when(mockReservationService)
+				.reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+
+		try (CompensationProcessor compensations = CompensationProcessor.start(refundablePaymentService, 32, 3, 1)) {
+			ticketService = new AsyncTicketServiceImpl(new TicketServiceImpl(
+					new PurchaseCoordinator(refundablePaymentService, mockReservationService, compensations),
+					PriceTable.DEFAULT), executor);
+			try {
+				ticketService.purchaseTicketsAsync(123L, adultTicketType).get();
+				fail("Expected ExecutionException");
+			} catch (ExecutionException e) {
+				assertEquals("Seat reservation unavailable", e.getCause().getMessage());
+			}
+		}
+
+		verify(refundablePaymentService).makePayment(123L, 20);
+		verify(refundablePaymentService).refund(123L, 20);
+	}
+
+	@Test
+	public void testPurchaseTicketsAsyncWithManyOrdersInFlight() throws Exception {
+		TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+		List<CompletableFuture<PurchaseResult>> futures = new ArrayList<>();
+
+		for (long accountId = 1; accountId <= 500; accountId++) {
+			futures.add(ticketService.purchaseTicketsAsync(accountId, adultTicketType));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+		verify(mockPaymentService, Mockito.times(500)).makePayment(Mockito.anyLong(), Mockito.eq(20));
+		verify(mockReservationService, Mockito.times(500)).reserveSeat(Mockito.anyLong(), Mockito.eq(1));
+	}
+}
@@ -0,0 +1,108 @@
+package uk.gov.dwp.uc.pairtest.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+
+/**
+ * Load test for the `VirtualThreadTicketService` facade, with both downstream
+ * services blocking for a few milliseconds per call to stand in for remote
+ * round trips. Checks that every purchase completes and that neither service
+ * ever has more calls in flight than its limit. The throughput comparison with
+ * platform threads lives in VirtualThreadBenchmark in the benchmarks module.
+ * Also checks that a configured TicketServiceImpl handed to the facade is the
+ * one its purchases run through.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class VirtualThreadTicketServiceLoadTest {
+
+	private static final int PURCHASES = 2_000;
+	private static final int MAX_PAYMENTS_IN_FLIGHT = 16;
+	private static final int MAX_RESERVATIONS_IN_FLIGHT = 8;
+	private static final long DOWNSTREAM_LATENCY_MILLIS = 5;
+
+	private final AtomicInteger payments = new AtomicInteger();
+	private final AtomicInteger reservations = new AtomicInteger();
+	private final AtomicInteger paymentsInFlight = new AtomicInteger();
+	private final AtomicInteger reservationsInFlight = new AtomicInteger();
+	private final AtomicInteger maxPaymentsInFlight = new AtomicInteger();
+	private final AtomicInteger maxReservationsInFlight = new AtomicInteger();
+
+	private final TicketPaymentService slowPaymentService = (accountId, totalAmountToPay) -> {
+		maxPaymentsInFlight.accumulateAndGet(paymentsInFlight.incrementAndGet(), Math::max);
+		pause();
+		paymentsInFlight.decrementAndGet();
+		payments.incrementAndGet();
+	};
+
+	private final SeatReservationService slowReservationService = (accountId, totalSeatsToAllocate) -> {
+		maxReservationsInFlight.accumulateAndGet(reservationsInFlight.incrementAndGet(), Math::max);
+		pause();
+		reservationsInFlight.decrementAndGet();
+		reservations.incrementAndGet();
+	};
+
+	private final TicketTypeRequest adultTicketType = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+	@Test
+	public void testEveryPurchaseCompletesWithinTheInFlightLimits() throws Exception {
+		try (var ticketService = new VirtualThreadTicketService(slowPaymentService, slowReservationService,
+				MAX_PAYMENTS_IN_FLIGHT, MAX_RESERVATIONS_IN_FLIGHT)) {
+			List<CompletableFuture<PurchaseResult>> futures = new ArrayList<>(PURCHASES);
+			for (long accountId = 1; accountId <= PURCHASES; accountId++) {
+				futures.add(ticketService.purchaseTicketsAsync(accountId, adultTicketType));
+			}
+			for (var future : futures) {
+				assertTrue(future.get().isAccepted());
+			}
+		}
+
+		assertEquals(PURCHASES, payments.get());
+		assertEquals(PURCHASES, reservations.get());
+		assertTrue(maxPaymentsInFlight.get() <= MAX_PAYMENTS_IN_FLIGHT);
+		assertTrue(maxReservationsInFlight.get() <= MAX_RESERVATIONS_IN_FLIGHT);
+	}
+
+	@Test
+	public void testPurchasesRunThroughTheTicketServiceHandedIn() throws Exception {
+		var metrics = new PurchaseMetrics();
+		var configuredService = new TicketServiceImpl(
+				new BoundedTicketPaymentService(slowPaymentService, MAX_PAYMENTS_IN_FLIGHT),
+				new BoundedSeatReservationService(slowReservationService, MAX_RESERVATIONS_IN_FLIGHT));
+		configuredService.setMetrics(metrics);
+
+		try (var ticketService = new VirtualThreadTicketService(configuredService)) {
+			assertTrue(ticketService.purchaseTicketsAsync(1L, adultTicketType).get().isAccepted());
+			assertEquals(PurchaseErrorCode.INVALID_ACCOUNT_ID,
+					ticketService.purchaseTicketsAsync(0L, adultTicketType).get().getErrorCode());
+		}
+
+		assertEquals(1, metrics.snapshot().getAcceptedCount());
+		assertEquals(1, metrics.snapshot().getRejectedCount(PurchaseErrorCode.INVALID_ACCOUNT_ID));
+		assertEquals(1, payments.get());
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(DOWNSTREAM_LATENCY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.ShardedTicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.journal.FsyncPolicy;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseRecord;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.payment.PaymentGatewayException;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/**
+ * Unit tests for `ShardedPurchaseEngine`, `BoundedMpscQueue` and
+ * `ShardedTicketService`, covering seat allocation on the owning shard,
+ * payment failures, journaling and concurrent purchases across shards.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class ShardedPurchaseEngineTest {
+
+	private static final Screening SCREENING = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+	private static final TicketTypeRequest TWO_ADULTS = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+	private final TicketServiceImpl ticketService = new TicketServiceImpl(new TicketPaymentServiceImpl(),
+			new SeatReservationServiceImpl());
+
+	@Test
+	public void testPurchaseTakesSeatsAndPayment() {
+		AtomicInteger paid = new AtomicInteger();
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService,
+				(accountId, amount) -> paid.addAndGet(amount), 4, 64)) {
+			engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(2, 10));
+
+			PurchaseResult result = engine.purchase(SCREENING, 123L, TWO_ADULTS);
+
+			assertTrue(result.isAccepted());
+			assertEquals(result.getTotalPrice(), paid.get());
+			assertEquals(18, engine.availableSeats(SCREENING.getScreeningId()));
+		}
+	}
+
+	@Test
+	public void testSoldOutPurchaseIsRejectedUnpaid() {
+		AtomicInteger payments = new AtomicInteger();
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService,
+				(accountId, amount) -> payments.incrementAndGet(), 4, 64)) {
+			engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(1, 3));
+			engine.purchase(SCREENING, 123L, TWO_ADULTS);
+
+			PurchaseResult result = engine.purchase(SCREENING, 456L, TWO_ADULTS);
+
+			assertFalse(result.isAccepted());
+			assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, result.getErrorCode());
+			assertEquals(1, payments.get());
+		}
+	}
+
+	@Test
+	public void testFailedPaymentGivesSeatsBack() {
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService, (accountId, amount) -> {
+			throw new PaymentGatewayException("Payment declined by the payment gateway");
+		}, 4, 64)) {
+			engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(2, 10));
+
+			try {
+				engine.purchase(SCREENING, 123L, TWO_ADULTS);
+				fail("Expected PaymentGatewayException");
+			} catch (PaymentGatewayException e) {
+				assertEquals("Payment declined by the payment gateway", e.getMessage());
+			}
+			assertEquals(20, engine.availableSeats(SCREENING.getScreeningId()));
+		}
+	}
+
+	@Test
+	public void testFailedPaymentAfterCloseIsNotHiddenByTheRelease() {
+		AtomicReference<ShardedPurchaseEngine> engine = new AtomicReference<>();
+		engine.set(ShardedPurchaseEngine.start(ticketService, (accountId, amount) -> {
+			engine.get().close();
+			throw new PaymentGatewayException("Payment declined by the payment gateway");
+		}, 4, 64));
+		engine.get().addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(2, 10));
+
+		try {
+			engine.get().purchase(SCREENING, 123L, TWO_ADULTS);
+			fail("Expected PaymentGatewayException");
+		} catch (PaymentGatewayException e) {
+			assertEquals("Payment declined by the payment gateway", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testPurchasesAreJournaledAndCounted() throws Exception {
+		Path directory = Files.createTempDirectory("purchase-journal");
+		PurchaseMetrics metrics = new PurchaseMetrics();
+		ticketService.setMetrics(metrics);
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO);
+				ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService,
+						new TicketPaymentServiceImpl(), 4, 64)) {
+			ticketService.setJournal(journal);
+			engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(1, 3));
+
+			engine.purchase(SCREENING, 123L, TWO_ADULTS);
+			engine.purchase(SCREENING, 456L, TWO_ADULTS);
+		}
+
+		List<PurchaseRecord> records = new ArrayList<>();
+		PurchaseJournal.replay(directory, 0, records::add);
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+
+		assertEquals(2, records.size());
+		assertEquals(PurchaseRecord.Outcome.COMPLETED, records.get(0).getOutcome());
+		assertEquals(SCREENING.getScreeningId(), records.get(0).getScreeningId());
+		assertEquals(2, records.get(0).getSeats().length);
+		assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, records.get(1).getErrorCode());
+		assertEquals(1, metrics.snapshot().getAcceptedCount());
+		assertEquals(1, metrics.snapshot().getRejectedCount(PurchaseErrorCode.INSUFFICIENT_SEATS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownScreeningIsRejected() {
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService, new TicketPaymentServiceImpl(),
+				4, 64)) {
+			engine.purchase(SCREENING, 123L, TWO_ADULTS);
+		}
+	}
+
+	@Test
+	public void testConcurrentPurchasesNeverOversell() throws Exception {
+		int screenings = 16;
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService, new TicketPaymentServiceImpl(),
+				4, 16)) {
+			for (long id = 1; id <= screenings; id++) {
+				engine.addScreening(id, SeatLayout.uniform(5, 10));
+			}
+
+			AtomicInteger[] sold = new AtomicInteger[screenings + 1];
+			for (int id = 1; id <= screenings; id++) {
+				sold[id] = new AtomicInteger();
+			}
+			List<Future<?>> buyers = new ArrayList<>();
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (int buyer = 0; buyer < 128; buyer++) {
+					int firstScreening = buyer;
+					buyers.add(executor.submit(() -> {
+						for (int i = 0; i < 20; i++) {
+							int id = (firstScreening + i) % screenings + 1;
+							Screening screening = new Screening(id, 7, Screening.TimeBand.OFF_PEAK);
+							if (engine.purchase(screening, 123L, TWO_ADULTS).isAccepted()) {
+								sold[id].addAndGet(2);
+							}
+						}
+					}));
+				}
+			}
+			for (Future<?> buyer : buyers) {
+				buyer.get(10, TimeUnit.SECONDS);
+			}
+
+			for (int id = 1; id <= screenings; id++) {
+				assertEquals(50, sold[id].get());
+				assertEquals(0, engine.availableSeats(id));
+			}
+		}
+	}
+
+	@Test
+	public void testAdapterThrowsForSoldOutScreening() {
+		try (ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService, new TicketPaymentServiceImpl(),
+				2, 64)) {
+			engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(1, 2));
+			ShardedTicketService adapter = new ShardedTicketService(engine, SCREENING);
+			adapter.purchaseTickets(123L, TWO_ADULTS);
+
+			try {
+				adapter.purchaseTickets(123L, TWO_ADULTS);
+				fail("Expected InvalidPurchaseException");
+			} catch (InvalidPurchaseException e) {
+				assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, e.getErrorCode());
+			}
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void testPurchaseAfterCloseFailsInsteadOfWaiting() {
+		ShardedPurchaseEngine engine = ShardedPurchaseEngine.start(ticketService, new TicketPaymentServiceImpl(), 2,
+				64);
+		engine.addScreening(SCREENING.getScreeningId(), SeatLayout.uniform(2, 10));
+		engine.close();
+
+		try {
+			engine.purchase(SCREENING, 123L, TWO_ADULTS);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Purchase engine has been closed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testQueueIsBoundedAndFirstInFirstOut() {
+		BoundedMpscQueue<Integer> queue = new BoundedMpscQueue<>(4);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertEquals(Integer.valueOf(0), queue.poll());
+		assertTrue(queue.offer(4));
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+}
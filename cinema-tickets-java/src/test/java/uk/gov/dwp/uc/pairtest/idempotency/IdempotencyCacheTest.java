@@ -0,0 +1,132 @@
+package uk.gov.dwp.uc.pairtest.idempotency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Unit tests for `IdempotencyCache`, driven by a fake clock to cover expiry,
+ * the bound on the number of entries, purchases still in progress, and keys
+ * reused across accounts or requests.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class IdempotencyCacheTest {
+
+	private static final long ACCOUNT_ID = 123L;
+	private static final long FINGERPRINT = IdempotencyCache
+			.fingerprint(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testRecordedOutcomeIsReturnedForSameKey() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1), 4, now::get);
+		CompletableFuture<PurchaseResult> first = new CompletableFuture<>();
+
+		assertNull(cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, first));
+		assertSame(first, cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>()));
+	}
+
+	@Test
+	public void testExpiredOutcomeIsReplaced() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofSeconds(10), 4, now::get);
+		cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, completed());
+
+		now.addAndGet(Duration.ofSeconds(11).toNanos());
+
+		assertNull(cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>()));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testOldestEntriesAreEvictedWhenFull() {
+		IdempotencyCache cache = new IdempotencyCache(8, Duration.ofMinutes(1), 1, now::get);
+
+		for (int i = 0; i < 20; i++) {
+			cache.putIfAbsent(ACCOUNT_ID, "order-" + i, FINGERPRINT, completed());
+		}
+
+		assertEquals(8, cache.size());
+		assertNull(cache.putIfAbsent(ACCOUNT_ID, "order-0", FINGERPRINT, new CompletableFuture<>()));
+	}
+
+	@Test
+	public void testRemoveOnlyRemovesMatchingOutcome() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1), 4, now::get);
+		CompletableFuture<PurchaseResult> first = new CompletableFuture<>();
+		cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, first);
+
+		cache.remove(ACCOUNT_ID, "order-1", new CompletableFuture<>());
+		assertSame(first, cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>()));
+
+		cache.remove(ACCOUNT_ID, "order-1", first);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testPurchaseInProgressIsNeverEvicted() {
+		IdempotencyCache cache = new IdempotencyCache(2, Duration.ofSeconds(10), 1, now::get);
+		CompletableFuture<PurchaseResult> inProgress = new CompletableFuture<>();
+		cache.putIfAbsent(ACCOUNT_ID, "order-0", FINGERPRINT, inProgress);
+
+		for (int i = 1; i < 5; i++) {
+			cache.putIfAbsent(ACCOUNT_ID, "order-" + i, FINGERPRINT, completed());
+		}
+		now.addAndGet(Duration.ofSeconds(11).toNanos());
+
+		// Still in progress after its time to live, so a retry must wait for it rather than pay again
+		assertSame(inProgress, cache.putIfAbsent(ACCOUNT_ID, "order-0", FINGERPRINT, new CompletableFuture<>()));
+	}
+
+	@Test
+	public void testNewKeyIsRejectedWhenStripeIsFullOfPurchasesInProgress() {
+		IdempotencyCache cache = new IdempotencyCache(2, Duration.ofMinutes(1), 1, now::get);
+		cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>());
+		cache.putIfAbsent(ACCOUNT_ID, "order-2", FINGERPRINT, new CompletableFuture<>());
+
+		CompletableFuture<PurchaseResult> rejected = cache.putIfAbsent(ACCOUNT_ID, "order-3", FINGERPRINT,
+				new CompletableFuture<>());
+
+		assertEquals(PurchaseErrorCode.IDEMPOTENCY_CACHE_FULL, rejected.join().getErrorCode());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testKeysAreScopedToTheAccount() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1), 4, now::get);
+		cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>());
+
+		assertNull(cache.putIfAbsent(456L, "order-1", FINGERPRINT, new CompletableFuture<>()));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testKeyReusedForDifferentRequestIsRejected() {
+		IdempotencyCache cache = new IdempotencyCache(100, Duration.ofMinutes(1), 4, now::get);
+		CompletableFuture<PurchaseResult> first = completed();
+		cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, first);
+		long otherFingerprint = IdempotencyCache.fingerprint(new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3));
+
+		CompletableFuture<PurchaseResult> rejected = cache.putIfAbsent(ACCOUNT_ID, "order-1", otherFingerprint,
+				new CompletableFuture<>());
+
+		assertEquals(PurchaseErrorCode.IDEMPOTENCY_KEY_REUSED, rejected.join().getErrorCode());
+		assertSame(first, cache.putIfAbsent(ACCOUNT_ID, "order-1", FINGERPRINT, new CompletableFuture<>()));
+	}
+
+	private static CompletableFuture<PurchaseResult> completed() {
+		return CompletableFuture.completedFuture(PurchaseResult.accepted(40, 2));
+	}
+}
@@ -0,0 +1,85 @@
+package uk.gov.dwp.uc.pairtest.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Unit tests for the Flight Recorder events emitted by `TicketServiceImpl` and
+ * `PurchaseCoordinator`.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PurchaseEventsTest {
+
+	@Test
+	public void testPurchaseStagesAreRecorded() throws Exception {
+		TicketServiceImpl ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+		}, (accountId, totalSeatsToAllocate) -> {
+			throw new IllegalStateException("Seat reservation unavailable");
+		});
+		Path dump = Files.createTempFile("purchase-events", ".jfr");
+
+		try (Recording recording = new Recording()) {
+			recording.enable(PurchaseValidationEvent.class);
+			recording.enable(PurchasePricedEvent.class);
+			recording.enable(PaymentEvent.class);
+			recording.enable(SeatReservationEvent.class);
+			recording.start();
+
+			ticketService.purchase(123L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2));
+			try {
+				ticketService.purchase(123L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+						new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+			} catch (IllegalStateException e) {
+				// The reservation failure is recorded too
+			}
+
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		Files.delete(dump);
+
+		List<RecordedEvent> validations = eventsNamed(events, "uk.gov.dwp.uc.pairtest.PurchaseValidation");
+		assertEquals(2, validations.size());
+		assertEquals("MISSING_ADULT_TICKET", validations.get(0).getString("errorCode"));
+		assertNull(validations.get(1).getString("errorCode"));
+		assertEquals(3, validations.get(1).getInt("numSeats"));
+
+		RecordedEvent priced = eventsNamed(events, "uk.gov.dwp.uc.pairtest.PurchasePriced").get(0);
+		assertEquals(123L, priced.getLong("accountId"));
+		assertEquals(50, priced.getInt("totalPrice"));
+
+		RecordedEvent payment = eventsNamed(events, "uk.gov.dwp.uc.pairtest.Payment").get(0);
+		assertTrue(payment.getBoolean("succeeded"));
+		assertEquals(50, payment.getInt("totalPrice"));
+
+		RecordedEvent reservation = eventsNamed(events, "uk.gov.dwp.uc.pairtest.SeatReservation").get(0);
+		assertFalse(reservation.getBoolean("succeeded"));
+		assertEquals(3, reservation.getInt("numSeats"));
+	}
+
+	private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+		return events.stream()
+				.filter(event -> event.getEventType().getName().equals(name))
+				.sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,255 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/**
+ * Unit tests for `PurchaseJournal`, covering record contents and seats,
+ * segment rollover, reopening, empty and torn segments, group commit and
+ * journaling from `TicketServiceImpl`.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PurchaseJournalTest {
+
+	private static final TicketTypeRequest[] FAMILY_ORDER = { new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+			new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1),
+			new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1),
+			new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1) };
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("purchase-journal");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testRecordsAreReadBackInOrder() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			journal.recordPurchase(123L, 1001L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+			journal.recordPurchase(456L, 1001L, FAMILY_ORDER,
+					PurchaseResult.rejected(PurchaseErrorCode.INSUFFICIENT_SEATS));
+			journal.recordFailure(789L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+		}
+
+		List<PurchaseRecord> records = replay(0);
+
+		assertEquals(3, records.size());
+		PurchaseRecord completed = records.get(0);
+		assertEquals(1L, completed.getSequence());
+		assertEquals(123L, completed.getAccountId());
+		assertEquals(1001L, completed.getScreeningId());
+		assertEquals(3, completed.getNoOfTickets(TicketTypeRequest.Type.ADULT));
+		assertEquals(1, completed.getNoOfTickets(TicketTypeRequest.Type.CHILD));
+		assertEquals(1, completed.getNoOfTickets(TicketTypeRequest.Type.INFANT));
+		assertEquals(70, completed.getTotalPrice());
+		assertEquals(4, completed.getNumSeats());
+		assertEquals(PurchaseRecord.Outcome.COMPLETED, completed.getOutcome());
+		assertNull(completed.getErrorCode());
+		assertTrue(completed.getTimestampMillis() > 0);
+
+		assertEquals(PurchaseRecord.Outcome.REJECTED, records.get(1).getOutcome());
+		assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, records.get(1).getErrorCode());
+		assertEquals(PurchaseRecord.Outcome.FAILED, records.get(2).getOutcome());
+	}
+
+	@Test
+	public void testSeatsAreReadBackWithTheirPurchase() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			journal.recordPurchase(123L, 1001L, FAMILY_ORDER, PurchaseResult.accepted(70, 4),
+					new int[] { 3, 4, 5, 70 });
+			journal.recordPurchase(456L, 1001L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+		}
+
+		List<PurchaseRecord> records = replay(0);
+
+		assertArrayEquals(new int[] { 3, 4, 5, 70 }, records.get(0).getSeats());
+		assertEquals(0, records.get(1).getSeats().length);
+	}
+
+	@Test
+	public void testRecordsGivenAsTicketCountsAreReadBack() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			journal.recordPurchase(123L, 0L, 3, 1, 1, 70, 4, null);
+			journal.recordPurchase(456L, 0L, 0, 2, 0, 0, 0, PurchaseErrorCode.MISSING_ADULT_TICKET);
+			journal.recordFailure(789L, 0L, 3, 1, 1, 70, 4);
+		}
+
+		List<PurchaseRecord> records = replay(0);
+
+		PurchaseRecord completed = records.get(0);
+		assertEquals(PurchaseRecord.Outcome.COMPLETED, completed.getOutcome());
+		assertEquals(3, completed.getNoOfTickets(TicketTypeRequest.Type.ADULT));
+		assertEquals(1, completed.getNoOfTickets(TicketTypeRequest.Type.CHILD));
+		assertEquals(1, completed.getNoOfTickets(TicketTypeRequest.Type.INFANT));
+		assertEquals(70, completed.getTotalPrice());
+		assertEquals(4, completed.getNumSeats());
+		assertEquals(PurchaseRecord.Outcome.REJECTED, records.get(1).getOutcome());
+		assertEquals(PurchaseErrorCode.MISSING_ADULT_TICKET, records.get(1).getErrorCode());
+		assertEquals(2, records.get(1).getNoOfTickets(TicketTypeRequest.Type.CHILD));
+		assertEquals(PurchaseRecord.Outcome.FAILED, records.get(2).getOutcome());
+		assertEquals(70, records.get(2).getTotalPrice());
+	}
+
+	@Test
+	public void testReopenedJournalContinuesAcrossSegments() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, FsyncPolicy.NEVER, Duration.ZERO)) {
+			for (int i = 0; i < 10; i++) {
+				journal.recordPurchase(i + 1, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+			}
+		}
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, FsyncPolicy.NEVER, Duration.ZERO)) {
+			assertEquals(10, journal.getLastSequence());
+			journal.recordPurchase(11L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+		}
+
+		List<PurchaseRecord> records = replay(0);
+		assertEquals(11, records.size());
+		for (int i = 0; i < records.size(); i++) {
+			assertEquals(i + 1, records.get(i).getSequence());
+			assertEquals(i + 1, records.get(i).getAccountId());
+		}
+		assertEquals(3, replay(8).size());
+	}
+
+	@Test
+	public void testEmptyTailSegmentIsStartedAgain() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 2, FsyncPolicy.NEVER, Duration.ZERO)) {
+			journal.recordPurchase(1L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+			journal.recordPurchase(2L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+		}
+		// A crash right after the next segment was created, before it was sized
+		Files.createFile(directory.resolve(String.format("purchases-%020d.journal", 3)));
+
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 2, FsyncPolicy.NEVER, Duration.ZERO)) {
+			assertEquals(2, journal.getLastSequence());
+			journal.recordPurchase(3L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+			journal.recordPurchase(4L, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+		}
+
+		assertEquals(4, replay(0).size());
+	}
+
+	@Test
+	public void testTornRecordEndsTheJournal() throws Exception {
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			for (int i = 0; i < 3; i++) {
+				journal.recordPurchase(i + 1, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4));
+			}
+		}
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.findFirst().get();
+		}
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 42 }), PurchaseJournal.RECORD_SIZE + 30);
+		}
+
+		assertEquals(1, replay(0).size());
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			assertEquals(1, journal.getLastSequence());
+		}
+	}
+
+	@Test
+	public void testGroupCommitMakesEveryAppendDurable() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 256, FsyncPolicy.ALWAYS, Duration.ZERO)) {
+			for (int i = 0; i < 400; i++) {
+				long accountId = i + 1;
+				executor.execute(
+						() -> journal.recordPurchase(accountId, 0L, FAMILY_ORDER, PurchaseResult.accepted(70, 4)));
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+			assertEquals(400, journal.getLastSequence());
+		}
+
+		assertEquals(400, replay(0).size());
+	}
+
+	@Test
+	public void testTicketServiceJournalsCompletedPurchases() throws Exception {
+		TicketServiceImpl ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+		}, (accountId, totalSeatsToAllocate) -> {
+		});
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.PERIODIC,
+				Duration.ofMillis(10))) {
+			ticketService.setJournal(journal);
+
+			ticketService.purchase(123L, FAMILY_ORDER);
+			ticketService.purchase(0L, FAMILY_ORDER);
+		}
+
+		List<PurchaseRecord> records = replay(0);
+		assertEquals(1, records.size());
+		assertEquals(123L, records.get(0).getAccountId());
+		assertEquals(PurchaseRecord.Outcome.COMPLETED, records.get(0).getOutcome());
+	}
+
+	@Test
+	public void testTicketServiceJournalsTheSeatsItWasGiven() throws Exception {
+		SeatInventory inventory = new SeatInventory();
+		inventory.addScreening(1001L, SeatLayout.uniform(10, 20));
+		PurchaseCoordinator coordinator = new PurchaseCoordinator((accountId, totalAmountToPay) -> {
+		}, inventory);
+		TicketServiceImpl ticketService = new TicketServiceImpl(coordinator, PriceTable.DEFAULT);
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO)) {
+			ticketService.setJournal(journal);
+
+			ticketService.purchase(new Screening(1001L, 7, Screening.TimeBand.PEAK), 123L, FAMILY_ORDER);
+		}
+
+		int[] seats = replay(0).get(0).getSeats();
+		assertEquals(4, seats.length);
+		for (int seat : seats) {
+			assertTrue(inventory.screening(1001L).isTaken(seat));
+		}
+		assertEquals(196, inventory.availableSeats(1001L));
+	}
+
+	private List<PurchaseRecord> replay(long afterSequence) throws Exception {
+		List<PurchaseRecord> records = new ArrayList<>();
+		PurchaseJournal.replay(directory, afterSequence, records::add);
+		return records;
+	}
+}
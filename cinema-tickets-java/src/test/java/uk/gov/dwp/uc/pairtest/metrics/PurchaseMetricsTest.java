@@ -0,0 +1,100 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+
+/**
+ * Unit tests for `PurchaseMetrics` and `LatencyHistogram`, covering bucket
+ * precision, percentiles, concurrent recording and the metrics recorded by
+ * `TicketServiceImpl`.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PurchaseMetricsTest {
+
+	@Test
+	public void testEveryValueFallsInsideItsBucket() {
+		for (long value : new long[] { 0, 1, 31, 32, 33, 63, 64, 1_000, 123_456_789, Long.MAX_VALUE }) {
+			int bucket = LatencyHistogram.bucketOf(value);
+
+			assertTrue(LatencyHistogram.lowestValueOf(bucket) <= value);
+			assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+			assertTrue(LatencyHistogram.highestValueOf(bucket) - LatencyHistogram.lowestValueOf(bucket) <= value / 32);
+		}
+	}
+
+	@Test
+	public void testPercentilesAreWithinBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1_000; micros++) {
+			histogram.record(micros * 1_000);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+
+		assertEquals(1_000, snapshot.getTotalCount());
+		assertWithinPercent(500_000, snapshot.getValueAtPercentile(50), 4);
+		assertWithinPercent(990_000, snapshot.getValueAtPercentile(99), 4);
+		assertWithinPercent(1_000_000, snapshot.getMaxValue(), 4);
+		assertWithinPercent(500_500, (long) snapshot.getMean(), 4);
+	}
+
+	@Test
+	public void testConcurrentRecordingLosesNothing() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		for (int thread = 0; thread < 8; thread++) {
+			executor.execute(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					histogram.record(i % 64);
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(800_000, histogram.snapshot().getTotalCount());
+	}
+
+	@Test
+	public void testTicketServiceRecordsStagesAndOutcomes() {
+		TicketServiceImpl ticketService = new TicketServiceImpl((accountId, totalAmountToPay) -> {
+		}, (accountId, totalSeatsToAllocate) -> {
+		});
+		PurchaseMetrics metrics = new PurchaseMetrics(1);
+		ticketService.setMetrics(metrics);
+
+		ticketService.purchase(123L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+		ticketService.purchase(123L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2));
+		ticketService.purchase(0L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+		ticketService.purchase(123L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 21));
+
+		PurchaseMetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(1, snapshot.getAcceptedCount());
+		assertEquals(1, snapshot.getRejectedCount(PurchaseErrorCode.MISSING_ADULT_TICKET));
+		assertEquals(1, snapshot.getRejectedCount(PurchaseErrorCode.INVALID_ACCOUNT_ID));
+		assertEquals(1, snapshot.getRejectedCount(PurchaseErrorCode.MAX_TICKETS_EXCEEDED));
+		assertEquals(0, snapshot.getRejectedCount(PurchaseErrorCode.RATE_LIMITED));
+		assertEquals(4, snapshot.getLatency(PurchaseStage.VALIDATION).getTotalCount());
+		assertEquals(1, snapshot.getLatency(PurchaseStage.PAYMENT).getTotalCount());
+		assertEquals(1, snapshot.getLatency(PurchaseStage.RESERVATION).getTotalCount());
+		assertEquals(0, snapshot.getLatency(PurchaseStage.PRICING).getTotalCount());
+	}
+
+	private static void assertWithinPercent(long expected, long actual, int percent) {
+		assertTrue("Expected " + expected + " but was " + actual,
+				Math.abs(actual - expected) <= expected * percent / 100);
+	}
+}
@@ -0,0 +1,244 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for `BatchingTicketPaymentService`, covering the size and time
+ * triggers, the outcome each caller gets back and refunds.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class BatchingTicketPaymentServiceTest {
+
+	@Test
+	public void testFullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		BatchTicketPaymentService gateway = batch -> batchSizes.add(batch.size());
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(gateway, 16,
+				Duration.ofSeconds(30), 1)) {
+			long start = System.nanoTime();
+			awaitAll(pay(service, 64));
+
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+			assertEquals(List.of(16, 16, 16, 16), batchSizes);
+			assertEquals(4, service.getBatchesSent());
+			assertEquals(64, service.getPaymentsSent());
+		}
+	}
+
+	@Test
+	public void testPartialBatchIsSentWhenTheWindowCloses() {
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(batch -> {
+		}, 16, Duration.ofMillis(20), 1)) {
+			long start = System.nanoTime();
+			service.makePayment(123L, 50);
+
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+			assertEquals(1, service.getBatchesSent());
+		}
+	}
+
+	@Test
+	public void testPaymentLeftBehindByAFullBatchKeepsItsWindow() throws Exception {
+		CountDownLatch firstBatchHeld = new CountDownLatch(1);
+		AtomicBoolean firstBatch = new AtomicBoolean(true);
+		BatchTicketPaymentService gateway = batch -> {
+			if (firstBatch.getAndSet(false)) {
+				awaitUninterruptibly(firstBatchHeld);
+			}
+		};
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(gateway, 2,
+				Duration.ofSeconds(1), 1)) {
+			ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+			// The first batch holds the only slot and the second waits for it, so 5, 6 and 7 queue up behind them
+			for (long accountId = 1; accountId <= 6; accountId++) {
+				long id = accountId;
+				callers.submit(() -> service.makePayment(id, 50));
+				Thread.sleep(20);
+			}
+			Future<Long> last = callers.submit(() -> {
+				long start = System.nanoTime();
+				service.makePayment(7L, 50);
+				return System.nanoTime() - start;
+			});
+			Thread.sleep(800);
+			firstBatchHeld.countDown();
+
+			// Payment 7 is left behind when 5 and 6 go out 800ms in, and must not wait a fresh second from then
+			long waitedNanos = last.get(10, TimeUnit.SECONDS);
+			assertTrue("Waited " + waitedNanos / 1_000_000 + "ms", waitedNanos < TimeUnit.MILLISECONDS.toNanos(1_500));
+			callers.shutdown();
+		}
+	}
+
+	@Test
+	public void testDeclinedPaymentFailsOnlyItsCaller() throws Exception {
+		BatchTicketPaymentService gateway = batch -> {
+			for (int i = 0; i < batch.size(); i++) {
+				if (batch.getAccountId(i) == 2L) {
+					batch.fail(i, new PaymentGatewayException("Payment declined by the payment gateway"));
+				}
+			}
+		};
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(gateway, 4,
+				Duration.ofSeconds(30), 1)) {
+			List<Future<?>> payments = pay(service, 4);
+
+			for (int i = 0; i < payments.size(); i++) {
+				try {
+					payments.get(i).get(10, TimeUnit.SECONDS);
+					assertTrue(i != 1);
+				} catch (ExecutionException e) {
+					assertEquals(1, i);
+					assertEquals("Payment declined by the payment gateway", e.getCause().getMessage());
+				}
+			}
+			assertEquals(1, service.getBatchesSent());
+		}
+	}
+
+	@Test
+	public void testFailedBatchFailsEveryCaller() {
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(batch -> {
+			throw new PaymentTimeoutException("Payment batch timed out");
+		}, 16, Duration.ZERO, 1)) {
+			service.makePayment(123L, 50);
+			fail("Expected PaymentTimeoutException");
+		} catch (PaymentTimeoutException e) {
+			assertEquals("Payment batch timed out", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFailedBatchGivesEachCallerItsOwnException() throws Exception {
+		IllegalStateException batchFailure = new IllegalStateException("Payment gateway unavailable");
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(batch -> {
+			throw batchFailure;
+		}, 2, Duration.ofSeconds(30), 1)) {
+			List<Future<?>> payments = pay(service, 2);
+			List<Throwable> failures = new ArrayList<>();
+			for (Future<?> payment : payments) {
+				try {
+					payment.get(10, TimeUnit.SECONDS);
+					fail("Expected PaymentGatewayException");
+				} catch (ExecutionException e) {
+					failures.add(e.getCause());
+				}
+			}
+
+			assertTrue(failures.get(0) instanceof PaymentGatewayException);
+			assertTrue(failures.get(0) != failures.get(1));
+			assertSame(batchFailure, failures.get(0).getCause());
+			assertSame(batchFailure, failures.get(1).getCause());
+		}
+	}
+
+	@Test
+	public void testBatchAbandonedByAnErrorStillCompletesItsCallers() {
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(batch -> {
+			throw new AssertionError("Payment gateway crashed");
+		}, 16, Duration.ZERO, 1)) {
+			service.makePayment(123L, 50);
+			fail("Expected PaymentGatewayException");
+		} catch (PaymentGatewayException e) {
+			assertEquals("Payment batch was abandoned; its outcome is unknown", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRefundGoesStraightToTheGateway() {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(LatencyModel.fixed(Duration.ZERO),
+				Duration.ofSeconds(1), 0, 8);
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(gateway, 16,
+				Duration.ofSeconds(30), 1)) {
+			service.refund(123L, 50);
+
+			assertEquals(1, gateway.getCompletedCount());
+			assertEquals(0, service.getBatchesSent());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedServiceRejectsPayments() {
+		BatchingTicketPaymentService service = BatchingTicketPaymentService.start(batch -> {
+		}, 16, Duration.ofMillis(1), 1);
+		service.close();
+
+		service.makePayment(123L, 50);
+	}
+
+	@Test
+	public void testConcurrentPaymentsShareGatewayCalls() throws Exception {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(
+				LatencyModel.fixed(Duration.ofMillis(5)), Duration.ofSeconds(5), 0, 64);
+
+		try (BatchingTicketPaymentService service = BatchingTicketPaymentService.start(gateway, 50,
+				Duration.ofMillis(2), 4)) {
+			awaitAll(pay(service, 500));
+
+			assertEquals(500, gateway.getCompletedCount());
+			assertTrue("Gateway calls: " + gateway.getCallCount(), gateway.getCallCount() <= 50);
+		}
+	}
+
+	@Test
+	public void testAdaptedGatewayTakesPaymentsOneAtATime() {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(LatencyModel.fixed(Duration.ZERO),
+				Duration.ofSeconds(1), 0, 8);
+		PaymentBatch batch = new PaymentBatch(new long[] { 1L, 2L, 3L }, new int[] { 25, 40, 15 });
+
+		BatchTicketPaymentService.adapt(gateway).makePayments(batch);
+
+		assertEquals(3, gateway.getCallCount());
+		assertEquals(null, batch.getFailure(2));
+	}
+
+	// Account ids are 1..count, one virtual thread per payment
+	private static List<Future<?>> pay(BatchingTicketPaymentService service, int count) {
+		ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+		List<Future<?>> payments = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			long accountId = i;
+			payments.add(callers.submit(() -> service.makePayment(accountId, 50)));
+		}
+		callers.shutdown();
+		return payments;
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitAll(List<Future<?>> payments) throws Exception {
+		for (Future<?> payment : payments) {
+			payment.get(10, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for `SimulatedTicketPaymentService` and `LatencyModel`, covering
+ * latency, failures, timeouts and the concurrency cap.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class SimulatedTicketPaymentServiceTest {
+
+	@Test
+	public void testPaymentTakesTheModelledLatency() {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(
+				LatencyModel.fixed(Duration.ofMillis(20)), Duration.ofSeconds(1), 0, 8);
+
+		long start = System.nanoTime();
+		gateway.makePayment(123L, 50);
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertEquals(1, gateway.getCompletedCount());
+	}
+
+	@Test
+	public void testFailingGatewayDeclinesPayment() {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(
+				LatencyModel.fixed(Duration.ZERO), Duration.ofSeconds(1), 1, 8);
+
+		try {
+			gateway.makePayment(123L, 50);
+			fail("Expected PaymentGatewayException");
+		} catch (PaymentGatewayException e) {
+			assertEquals("Payment declined by the payment gateway", e.getMessage());
+		}
+		assertEquals(1, gateway.getFailedCount());
+	}
+
+	@Test
+	public void testSlowPaymentTimesOut() {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(
+				LatencyModel.fixed(Duration.ofSeconds(10)), Duration.ofMillis(20), 0, 8);
+
+		long start = System.nanoTime();
+		try {
+			gateway.makePayment(123L, 50);
+			fail("Expected PaymentTimeoutException");
+		} catch (PaymentTimeoutException e) {
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+		}
+		assertEquals(1, gateway.getTimedOutCount());
+	}
+
+	@Test
+	public void testConcurrencyCapQueuesCallers() throws Exception {
+		SimulatedTicketPaymentService gateway = new SimulatedTicketPaymentService(
+				LatencyModel.fixed(Duration.ofMillis(20)), Duration.ofSeconds(5), 0, 2);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 8; i++) {
+			long accountId = i + 1;
+			executor.execute(() -> gateway.makePayment(accountId, 50));
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		// Eight calls two at a time take at least four rounds of 20 ms
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(80));
+		assertEquals(8, gateway.getCompletedCount());
+	}
+
+	@Test
+	public void testLogNormalLatencyHasTheRequestedMedian() {
+		LatencyModel model = LatencyModel.logNormal(Duration.ofMillis(100), 0.5);
+		Random random = new Random(42);
+
+		long[] samples = new long[10_001];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = model.nextLatencyNanos(random);
+		}
+		Arrays.sort(samples);
+
+		long median = samples[samples.length / 2];
+		assertTrue(Math.abs(median - TimeUnit.MILLISECONDS.toNanos(100)) < TimeUnit.MILLISECONDS.toNanos(5));
+		assertTrue(samples[(int) (samples.length * 0.99)] > 2 * median);
+	}
+
+	@Test
+	public void testBimodalLatencyMixesBothModes() {
+		LatencyModel model = LatencyModel.bimodal(LatencyModel.fixed(Duration.ofMillis(1)),
+				LatencyModel.fixed(Duration.ofMillis(500)), 0.1);
+		Random random = new Random(42);
+
+		int slow = 0;
+		for (int i = 0; i < 10_000; i++) {
+			slow += model.nextLatencyNanos(random) == TimeUnit.MILLISECONDS.toNanos(500) ? 1 : 0;
+		}
+
+		assertTrue(slow > 800 && slow < 1200);
+	}
+}
@@ -0,0 +1,108 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Unit tests for `PricingEngine` and the rules it compiles, covering rule
+ * precedence, shared price tables, reloading and rejected rule files.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PricingEngineTest {
+
+	private static final List<String> RULES = List.of(
+			"# cinema  timeBand  screening  adult  child  infant",
+			"*         *         *          20     10     0",
+			"*         PEAK      *          22     11     0",
+			"7         *         *          18     9      0",
+			"7         PEAK      *          25     12     0",
+			"*         *         1001       30     15     0",
+			"*         *         1002       25     12     0");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path rulesFile;
+
+	@Before
+	public void setUp() throws IOException {
+		rulesFile = folder.newFile("pricing.rules").toPath();
+		Files.write(rulesFile, RULES);
+	}
+
+	@Test
+	public void testMostSpecificRuleWins() throws IOException {
+		PricingEngine engine = new PricingEngine(rulesFile);
+
+		assertEquals(30, adultPrice(engine, new Screening(1001L, 7, Screening.TimeBand.PEAK)));
+		assertEquals(25, adultPrice(engine, new Screening(2000L, 7, Screening.TimeBand.PEAK)));
+		assertEquals(18, adultPrice(engine, new Screening(2000L, 7, Screening.TimeBand.OFF_PEAK)));
+		assertEquals(22, adultPrice(engine, new Screening(2000L, 8, Screening.TimeBand.PEAK)));
+		assertEquals(20, adultPrice(engine, new Screening(2000L, 8, Screening.TimeBand.OFF_PEAK)));
+	}
+
+	@Test
+	public void testRulesWithIdenticalPricesShareOnePriceTable() throws IOException {
+		PricingEngine engine = new PricingEngine(rulesFile);
+
+		assertSame(engine.priceTableFor(new Screening(1002L, 1, Screening.TimeBand.OFF_PEAK)),
+				engine.priceTableFor(new Screening(2000L, 7, Screening.TimeBand.PEAK)));
+	}
+
+	@Test
+	public void testReloadIfModifiedSwapsInNewRules() throws IOException {
+		PricingEngine engine = new PricingEngine(rulesFile);
+		Screening screening = new Screening(3000L, 1, Screening.TimeBand.OFF_PEAK);
+
+		assertFalse(engine.reloadIfModified());
+
+		Files.write(rulesFile, List.of("* * * 35 17 0"));
+		FileTime modifiedTime = Files.getLastModifiedTime(rulesFile);
+		Files.setLastModifiedTime(rulesFile, FileTime.from(modifiedTime.toInstant().plusSeconds(1)));
+
+		assertTrue(engine.reloadIfModified());
+		assertEquals(35, adultPrice(engine, screening));
+	}
+
+	@Test
+	public void testInvalidRulesFileKeepsCurrentRules() throws IOException {
+		PricingEngine engine = new PricingEngine(rulesFile);
+		Files.write(rulesFile, List.of("* * * 20 10", "* * * 20 10 0"));
+
+		try {
+			engine.reload();
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Invalid pricing rule at line 1: expected 6 fields but found 5", e.getMessage());
+		}
+		assertEquals(30, adultPrice(engine, new Screening(1001L, 7, Screening.TimeBand.PEAK)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testScreeningRuleCannotNameCinema() {
+		PricingRuleCompiler.compile(List.of("7 * 1001 30 15 0"));
+	}
+
+	private static int adultPrice(PricingEngine engine, Screening screening) {
+		return engine.priceTableFor(screening).priceOf(TicketTypeRequest.Type.ADULT);
+	}
+}
@@ -0,0 +1,69 @@
+package uk.gov.dwp.uc.pairtest.ratelimit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for `AccountRateLimiter`, driven by a fake clock to cover bursts,
+ * refills, the per-account concurrency cap and many distinct accounts.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class AccountRateLimiterTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testBurstIsAllowedThenRejected() {
+		AccountRateLimiter limiter = new AccountRateLimiter(1, 3, 100, 1, now::get);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire(123L));
+			limiter.release(123L);
+		}
+		assertFalse(limiter.tryAcquire(123L));
+	}
+
+	@Test
+	public void testTokensRefillOverTime() {
+		AccountRateLimiter limiter = new AccountRateLimiter(2, 1, 100, 1, now::get);
+
+		assertTrue(limiter.tryAcquire(123L));
+		limiter.release(123L);
+		assertFalse(limiter.tryAcquire(123L));
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		assertTrue(limiter.tryAcquire(123L));
+	}
+
+	@Test
+	public void testConcurrentPurchasesPerAccountAreCapped() {
+		AccountRateLimiter limiter = new AccountRateLimiter(1_000, 1_000, 2, 1, now::get);
+
+		assertTrue(limiter.tryAcquire(123L));
+		assertTrue(limiter.tryAcquire(123L));
+		assertFalse(limiter.tryAcquire(123L));
+
+		limiter.release(123L);
+		assertTrue(limiter.tryAcquire(123L));
+	}
+
+	@Test
+	public void testAccountsAreLimitedIndependently() {
+		AccountRateLimiter limiter = new AccountRateLimiter(1, 1, 1, 4, now::get);
+
+		for (long accountId = 1; accountId <= 10_000; accountId++) {
+			assertTrue(limiter.tryAcquire(accountId));
+			limiter.release(accountId);
+		}
+		for (long accountId = 1; accountId <= 10_000; accountId++) {
+			assertFalse(limiter.tryAcquire(accountId));
+		}
+	}
+}
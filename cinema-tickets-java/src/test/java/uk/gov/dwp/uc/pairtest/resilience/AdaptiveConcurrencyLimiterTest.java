@@ -0,0 +1,191 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/**
+ * Unit tests for `AdaptiveConcurrencyLimiter` and the adaptive decorators,
+ * driven by a fake clock to cover how the limit follows latency and how
+ * purchases over the limit are shed.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testCallsOverTheLimitAreRejected() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 100, now::get);
+
+		assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+		assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+		assertEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+		assertEquals(1, limiter.getRejectedCount());
+
+		limiter.onIgnored();
+
+		assertNotEquals(AdaptiveConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+	}
+
+	@Test
+	public void testLimitGrowsWhileLatencyStaysLow() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, now::get);
+
+		for (int i = 0; i < 5; i++) {
+			saturate(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+
+		assertTrue("Limit: " + limiter.getLimit(), limiter.getLimit() > 10);
+	}
+
+	@Test
+	public void testLimitShrinksWhenLatencyRises() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, now::get);
+		saturate(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+		int limitAtLowLatency = limiter.getLimit();
+
+		for (int i = 0; i < 20; i++) {
+			saturate(limiter, TimeUnit.MILLISECONDS.toNanos(40));
+		}
+
+		assertTrue("Limit: " + limiter.getLimit(), limiter.getLimit() < limitAtLowLatency);
+	}
+
+	@Test
+	public void testDroppedCallCutsTheLimit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, now::get);
+
+		limiter.tryAcquire();
+		limiter.onDropped();
+
+		assertEquals(45, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testLimitNeverFallsBelowMinimum() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 100, now::get);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.tryAcquire();
+			limiter.onDropped();
+		}
+
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testPurchaseOverTheLimitIsShedWithoutCallingGateway() {
+		AtomicInteger gatewayCalls = new AtomicInteger();
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, now::get);
+		TicketServiceImpl ticketService = new TicketServiceImpl(new AdaptiveTicketPaymentService(
+				(accountId, amount) -> gatewayCalls.incrementAndGet(), limiter), new SeatReservationServiceImpl());
+		TicketTypeRequest adults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		// Another payment holds the only permit
+		long startNanos = limiter.tryAcquire();
+		PurchaseResult shed = ticketService.purchase(123L, adults);
+		limiter.onSuccess(startNanos);
+		PurchaseResult accepted = ticketService.purchase(123L, adults);
+
+		assertFalse(shed.isAccepted());
+		assertEquals(PurchaseErrorCode.PAYMENT_UNAVAILABLE, shed.getErrorCode());
+		assertTrue(accepted.isAccepted());
+		assertEquals(1, gatewayCalls.get());
+	}
+
+	@Test
+	public void testReservationOverTheLimitIsShedBeforePayment() {
+		AtomicInteger gatewayCalls = new AtomicInteger();
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, now::get);
+		TicketServiceImpl ticketService = new TicketServiceImpl((accountId, amount) -> gatewayCalls.incrementAndGet(),
+				new AdaptiveSeatReservationService(new SeatReservationServiceImpl(), limiter));
+		TicketTypeRequest adults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		// Another reservation holds the only permit
+		long startNanos = limiter.tryAcquire();
+		PurchaseResult shed = ticketService.purchase(123L, adults);
+		limiter.onSuccess(startNanos);
+		PurchaseResult accepted = ticketService.purchase(123L, adults);
+
+		assertFalse(shed.isAccepted());
+		assertEquals(PurchaseErrorCode.RESERVATION_UNAVAILABLE, shed.getErrorCode());
+		assertTrue(accepted.isAccepted());
+		assertEquals(1, gatewayCalls.get());
+		assertEquals(1, limiter.getRejectedCount());
+	}
+
+	@Test
+	public void testLimitedSeatInventoryReservesSeatsInTheScreening() {
+		SeatInventory inventory = new SeatInventory();
+		inventory.addScreening(1001L, SeatLayout.uniform(1, 3));
+		Screening screening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, now::get);
+		AdaptiveSeatReservationService reservationService = new AdaptiveSeatReservationService(inventory, limiter);
+
+		int[] seats = reservationService.reserveSeats(screening, 123L, 2);
+
+		assertEquals(2, seats.length);
+		assertEquals(1, inventory.availableSeats(1001L));
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testRefundIsNotCountedAgainstTheLimit() {
+		List<Integer> refunds = new ArrayList<>();
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, now::get);
+		AdaptiveTicketPaymentService paymentService = new AdaptiveTicketPaymentService(
+				new RefundableTicketPaymentService() {
+					@Override
+					public void makePayment(long accountId, int totalAmountToPay) {
+					}
+
+					@Override
+					public void refund(long accountId, int totalAmountToRefund) {
+						refunds.add(totalAmountToRefund);
+					}
+				}, limiter);
+
+		// Another payment holds the only permit
+		long startNanos = limiter.tryAcquire();
+		paymentService.refund(123L, 40);
+		limiter.onSuccess(startNanos);
+
+		assertEquals(List.of(40), refunds);
+	}
+
+	// Fills every permit, then completes all the calls after the given round trip
+	private void saturate(AdaptiveConcurrencyLimiter limiter, long rttNanos) {
+		int permits = limiter.getLimit();
+		long[] starts = new long[permits];
+		for (int i = 0; i < permits; i++) {
+			starts[i] = limiter.tryAcquire();
+		}
+		now.addAndGet(rttNanos);
+		for (int i = 0; i < permits; i++) {
+			limiter.onSuccess(starts[i]);
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.payment.PaymentGatewayException;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+import uk.gov.dwp.uc.pairtest.seating.SeatsUnavailableException;
+
+/**
+ * Unit tests for `CircuitBreaker`, `Bulkhead` and the resilient decorators,
+ * driven by a fake clock to cover the rolling window, the half-open trial
+ * calls and fast rejection of purchases.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class CircuitBreakerTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testBreakerOpensWhenFailureRateIsReached() {
+		CircuitBreaker breaker = breaker(10, 1);
+
+		for (int i = 0; i < 5; i++) {
+			breaker.onSuccess();
+		}
+		for (int i = 0; i < 4; i++) {
+			breaker.onFailure();
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+		breaker.onFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(1, breaker.getRejectedCount());
+	}
+
+	@Test
+	public void testBreakerWaitsForMinimumCalls() {
+		CircuitBreaker breaker = breaker(10, 1);
+
+		for (int i = 0; i < 9; i++) {
+			breaker.onFailure();
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void testFailuresOutsideTheWindowAreForgotten() {
+		CircuitBreaker breaker = breaker(10, 1);
+
+		for (int i = 0; i < 9; i++) {
+			breaker.onFailure();
+		}
+		now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+		breaker.onFailure();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(1.0, breaker.getFailureRate(), 0);
+	}
+
+	@Test
+	public void testHalfOpenBreakerClosesAfterTrialCallsSucceed() {
+		CircuitBreaker breaker = openBreaker(2);
+		now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+		assertTrue(breaker.tryAcquirePermission());
+		assertTrue(breaker.tryAcquirePermission());
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.onSuccess();
+		breaker.onSuccess();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0.0, breaker.getFailureRate(), 0);
+	}
+
+	@Test
+	public void testHalfOpenBreakerReopensOnFailure() {
+		CircuitBreaker breaker = openBreaker(2);
+		now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+
+		assertTrue(breaker.tryAcquirePermission());
+		breaker.onFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(2, breaker.getTimesOpened());
+	}
+
+	@Test
+	public void testBulkheadRejectsCallsBeyondItsLimit() {
+		Bulkhead bulkhead = new Bulkhead(2, Duration.ZERO);
+
+		assertTrue(bulkhead.tryAcquire());
+		assertTrue(bulkhead.tryAcquire());
+		assertFalse(bulkhead.tryAcquire());
+
+		bulkhead.release();
+
+		assertTrue(bulkhead.tryAcquire());
+		assertEquals(1, bulkhead.getRejectedCount());
+	}
+
+	@Test
+	public void testOpenBreakerRejectsPurchaseWithoutCallingGateway() {
+		AtomicInteger gatewayCalls = new AtomicInteger();
+		ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService((accountId, amount) -> {
+			gatewayCalls.incrementAndGet();
+			throw new PaymentGatewayException("Payment declined by the payment gateway");
+		}, breaker(2, 1), new Bulkhead(8, Duration.ZERO));
+		TicketServiceImpl ticketService = new TicketServiceImpl(paymentService, new SeatReservationServiceImpl());
+		TicketTypeRequest adults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				ticketService.purchase(123L, adults);
+				fail("Expected PaymentGatewayException");
+			} catch (PaymentGatewayException e) {
+				assertEquals("Payment declined by the payment gateway", e.getMessage());
+			}
+		}
+		PurchaseResult result = ticketService.purchase(123L, adults);
+
+		assertFalse(result.isAccepted());
+		assertEquals(PurchaseErrorCode.PAYMENT_UNAVAILABLE, result.getErrorCode());
+		assertEquals(2, gatewayCalls.get());
+		try {
+			ticketService.purchaseTickets(123L, adults);
+			fail("Expected InvalidPurchaseException");
+		} catch (InvalidPurchaseException e) {
+			assertEquals(PurchaseErrorCode.PAYMENT_UNAVAILABLE, e.getErrorCode());
+			assertEquals("Payments are temporarily unavailable. Please try again later", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testOpenReservationBreakerAfterPaymentFailsThePurchase() {
+		AtomicInteger payments = new AtomicInteger();
+		ResilientSeatReservationService reservationService = new ResilientSeatReservationService(
+				new SeatReservationServiceImpl(), openBreaker(1), new Bulkhead(8, Duration.ZERO));
+		TicketServiceImpl ticketService = new TicketServiceImpl((accountId, amount) -> payments.incrementAndGet(),
+				reservationService);
+		TicketTypeRequest adults = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+		// The payment has been taken, so the purchase has failed rather than been turned away
+		try {
+			ticketService.purchase(123L, adults);
+			fail("Expected ServiceUnavailableException");
+		} catch (ServiceUnavailableException e) {
+			assertEquals(PurchaseErrorCode.RESERVATION_UNAVAILABLE, e.getErrorCode());
+		}
+		List<PurchaseResult> results = ticketService.purchaseTickets(List.of(new PurchaseOrder(123L, adults)));
+
+		assertEquals(PurchaseErrorCode.PURCHASE_FAILED, results.get(0).getErrorCode());
+		assertEquals(2, payments.get());
+	}
+
+	@Test
+	public void testSoldOutReservationDoesNotOpenBreaker() {
+		CircuitBreaker breaker = breaker(2, 1);
+		ResilientSeatReservationService reservationService = new ResilientSeatReservationService(
+				(accountId, seats) -> {
+					throw new SeatsUnavailableException("Sold out");
+				}, breaker, new Bulkhead(8, Duration.ZERO));
+
+		for (int i = 0; i < 5; i++) {
+			try {
+				reservationService.reserveSeat(123L, 2);
+				fail("Expected SeatsUnavailableException");
+			} catch (SeatsUnavailableException e) {
+				assertEquals("Sold out", e.getMessage());
+			}
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testGuardedSeatInventoryReservesSeatsInTheScreening() {
+		SeatInventory inventory = new SeatInventory();
+		inventory.addScreening(1001L, SeatLayout.uniform(1, 3));
+		Screening screening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		CircuitBreaker breaker = breaker(2, 1);
+		ResilientSeatReservationService reservationService = new ResilientSeatReservationService(inventory, breaker,
+				new Bulkhead(8, Duration.ZERO));
+
+		int[] seats = reservationService.reserveSeats(screening, 123L, 2);
+		try {
+			reservationService.reserveSeats(screening, 456L, 2);
+			fail("Expected SeatsUnavailableException");
+		} catch (SeatsUnavailableException e) {
+			// Sold out is an answer, not a failure
+		}
+
+		assertEquals(2, seats.length);
+		assertEquals(1, inventory.availableSeats(1001L));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testRefundIsNotHeldBackByAnOpenBreaker() {
+		List<Integer> refunds = new ArrayList<>();
+		ResilientTicketPaymentService paymentService = new ResilientTicketPaymentService(
+				new RefundableTicketPaymentService() {
+					@Override
+					public void makePayment(long accountId, int totalAmountToPay) {
+					}
+
+					@Override
+					public void refund(long accountId, int totalAmountToRefund) {
+						refunds.add(totalAmountToRefund);
+					}
+				}, openBreaker(1), new Bulkhead(8, Duration.ZERO));
+
+		paymentService.refund(123L, 40);
+
+		assertEquals(List.of(40), refunds);
+	}
+
+	// 10 second window, opens at a 50% failure rate, stays open for 5 seconds
+	private CircuitBreaker breaker(int minimumCalls, int halfOpenCalls) {
+		return new CircuitBreaker(Duration.ofSeconds(10), 10, 0.5, minimumCalls, Duration.ofSeconds(5), halfOpenCalls,
+				now::get);
+	}
+
+	private CircuitBreaker openBreaker(int halfOpenCalls) {
+		CircuitBreaker breaker = breaker(1, halfOpenCalls);
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		return breaker;
+	}
+}
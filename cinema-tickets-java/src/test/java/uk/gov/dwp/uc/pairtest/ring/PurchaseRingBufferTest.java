@@ -0,0 +1,318 @@
+package uk.gov.dwp.uc.pairtest.ring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.paymentgateway.TicketPaymentServiceImpl;
+import thirdparty.seatbooking.SeatReservationService;
+import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResultSink;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.journal.FsyncPolicy;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseRecord;
+import uk.gov.dwp.uc.pairtest.payment.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.payment.PaymentGatewayException;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.resilience.AdaptiveConcurrencyLimiter;
+import uk.gov.dwp.uc.pairtest.resilience.AdaptiveSeatReservationService;
+import uk.gov.dwp.uc.pairtest.resilience.ServiceUnavailableException;
+import uk.gov.dwp.uc.pairtest.saga.CompensationProcessor;
+import uk.gov.dwp.uc.pairtest.seating.SeatInventory;
+import uk.gov.dwp.uc.pairtest.seating.SeatLayout;
+
+/**
+ * Unit tests for `PurchaseRingBuffer`, covering the outcome of each stage,
+ * refunds for orders paid but not seated, seats in a screening and their
+ * journal records, ordering of outcomes and many producers lapping a small
+ * ring.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PurchaseRingBufferTest {
+
+	private final TicketServiceImpl ticketService = new TicketServiceImpl(new TicketPaymentServiceImpl(),
+			new SeatReservationServiceImpl());
+	private final List<String> outcomes = new CopyOnWriteArrayList<>();
+
+	@Test
+	public void testOrdersFlowThroughEveryStage() {
+		AtomicInteger paid = new AtomicInteger();
+		AtomicInteger seats = new AtomicInteger();
+
+		try (PurchaseRingBuffer ring = start((accountId, amount) -> paid.addAndGet(amount),
+				(accountId, numSeats) -> seats.addAndGet(numSeats), 8)) {
+			ring.publish(123L, 2, 0, 0);
+			long last = ring.publish(0L, 2, 0, 0);
+			ring.awaitCompleted(last);
+		}
+
+		assertEquals(List.of("0 123 accepted", "1 0 INVALID_ACCOUNT_ID"), outcomes);
+		assertEquals(40, paid.get());
+		assertEquals(2, seats.get());
+	}
+
+	@Test
+	public void testOrdersAreValidatedFromTheirTicketCounts() {
+		List<Integer> prices = new CopyOnWriteArrayList<>();
+
+		try (PurchaseRingBuffer ring = PurchaseRingBuffer.start(ticketService, new TicketPaymentServiceImpl(),
+				new SeatReservationServiceImpl(), null, 8, outcome -> {
+					prices.add(outcome.getTotalPrice());
+					outcomes.add(outcome.getErrorCode() == null ? "accepted" : outcome.getErrorCode().name());
+				})) {
+			ring.publish(123L, 2, 1, 1);
+			ring.publish(123L, 0, 0, 0);
+			ring.publish(123L, 0, 2, 0);
+			ring.publish(123L, 2, -1, 0);
+			ring.awaitCompleted(ring.publish(123L, 10, 10, 1));
+		}
+
+		assertEquals(List.of("accepted", "MISSING_TICKET_REQUEST", "MISSING_ADULT_TICKET", "INVALID_TICKET_QUANTITY",
+				"MAX_TICKETS_EXCEEDED"), outcomes);
+		assertEquals(List.of(50, 0, 0, 0, 0), prices);
+	}
+
+	@Test
+	public void testFailedPaymentSkipsReservation() {
+		AtomicInteger reservations = new AtomicInteger();
+
+		try (PurchaseRingBuffer ring = start((accountId, amount) -> {
+			throw new PaymentGatewayException("Payment declined by the payment gateway");
+		}, (accountId, numSeats) -> reservations.incrementAndGet(), 8)) {
+			ring.awaitCompleted(ring.publish(123L, 2, 0, 0));
+		}
+
+		assertEquals(List.of("0 123 failed: Payment declined by the payment gateway"), outcomes);
+		assertEquals(0, reservations.get());
+	}
+
+	@Test
+	public void testOrdersWaitingForPaymentArePaidInOneBatch() throws Exception {
+		CountDownLatch firstCallStarted = new CountDownLatch(1);
+		CountDownLatch firstCallHeld = new CountDownLatch(1);
+		Semaphore validated = new Semaphore(0);
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		BatchTicketPaymentService gateway = batch -> {
+			batchSizes.add(batch.size());
+			if (batchSizes.size() == 1) {
+				firstCallStarted.countDown();
+				awaitUninterruptibly(firstCallHeld);
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				if (batch.getAccountId(i) == 4L) {
+					batch.fail(i, new ServiceUnavailableException(PurchaseErrorCode.PAYMENT_UNAVAILABLE, "Busy"));
+				} else if (batch.getAccountId(i) == 5L) {
+					batch.fail(i, new PaymentGatewayException("Declined"));
+				}
+			}
+		};
+		TicketServiceImpl countingTicketService = new TicketServiceImpl(new TicketPaymentServiceImpl(),
+				new SeatReservationServiceImpl()) {
+
+			@Override
+			public void validatePurchase(Screening screening, long accountId, int adultTickets, int childTickets,
+					int infantTickets, PurchaseResultSink sink) {
+				super.validatePurchase(screening, accountId, adultTickets, childTickets, infantTickets, sink);
+				validated.release();
+			}
+		};
+
+		try (PurchaseRingBuffer ring = PurchaseRingBuffer.start(countingTicketService, gateway,
+				new SeatReservationServiceImpl(), null, null, 8, this::describe)) {
+			ring.publish(1L, 2, 0, 0);
+			firstCallStarted.await();
+			for (long accountId = 2; accountId <= 5; accountId++) {
+				ring.publish(accountId, 2, 0, 0);
+			}
+			validated.acquire(5);
+
+			// Validated after the other four were handed on, so once it is they are all waiting for payment
+			long last = ring.publish(6L, 0, 0, 0);
+			validated.acquire();
+			firstCallHeld.countDown();
+			ring.awaitCompleted(last);
+		}
+
+		assertEquals(List.of(1, 4), batchSizes);
+		assertEquals(List.of("0 1 accepted", "1 2 accepted", "2 3 accepted", "3 4 PAYMENT_UNAVAILABLE",
+				"4 5 failed: Declined", "5 6 MISSING_TICKET_REQUEST"), outcomes);
+	}
+
+	@Test
+	public void testUnavailablePaymentRejectsOrderUnpaid() {
+		AtomicInteger reservations = new AtomicInteger();
+
+		try (PurchaseRingBuffer ring = start((accountId, amount) -> {
+			throw new ServiceUnavailableException(PurchaseErrorCode.PAYMENT_UNAVAILABLE, "Busy");
+		}, (accountId, numSeats) -> reservations.incrementAndGet(), 8)) {
+			ring.awaitCompleted(ring.publish(123L, 2, 0, 0));
+		}
+
+		assertEquals(List.of("0 123 PAYMENT_UNAVAILABLE"), outcomes);
+		assertEquals(0, reservations.get());
+	}
+
+	@Test
+	public void testReservationOverTheLimitIsShedBeforePayment() {
+		AtomicInteger paid = new AtomicInteger();
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+		limiter.tryAcquire();
+
+		try (PurchaseRingBuffer ring = start((accountId, amount) -> paid.addAndGet(amount),
+				new AdaptiveSeatReservationService(new SeatReservationServiceImpl(), limiter), 8)) {
+			ring.awaitCompleted(ring.publish(123L, 2, 0, 0));
+		}
+
+		assertEquals(List.of("0 123 RESERVATION_UNAVAILABLE"), outcomes);
+		assertEquals(0, paid.get());
+	}
+
+	@Test
+	public void testReservationRefusedAfterPaymentIsRefunded() {
+		AtomicInteger refunded = new AtomicInteger();
+		RefundableTicketPaymentService paymentService = new RefundableTicketPaymentService() {
+
+			@Override
+			public void makePayment(long accountId, int totalAmountToPay) {
+			}
+
+			@Override
+			public void refund(long accountId, int totalAmountToRefund) {
+				refunded.addAndGet(totalAmountToRefund);
+			}
+		};
+		List<Boolean> paid = new CopyOnWriteArrayList<>();
+
+		try (CompensationProcessor compensations = CompensationProcessor.start(paymentService, 8, 3, 1)) {
+			try (PurchaseRingBuffer ring = PurchaseRingBuffer.start(ticketService, paymentService,
+					(accountId, numSeats) -> {
+						throw new ServiceUnavailableException(PurchaseErrorCode.RESERVATION_UNAVAILABLE, "Busy");
+					}, compensations, null, 8, outcome -> {
+						paid.add(outcome.isPaid());
+						outcomes.add(outcome.getErrorCode() + " " + outcome.getFailure().getMessage());
+					})) {
+				ring.awaitCompleted(ring.publish(123L, 2, 0, 0));
+			}
+		}
+
+		assertEquals(List.of("null Busy"), outcomes);
+		assertEquals(List.of(true), paid);
+		assertEquals(40, refunded.get());
+	}
+
+	@Test
+	public void testOrdersAreSeatedInTheirScreeningAndJournaledWithTheirSeats() throws Exception {
+		Screening screening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		SeatInventory inventory = new SeatInventory();
+		inventory.addScreening(1001L, SeatLayout.uniform(1, 3));
+		List<Integer> seatCounts = new CopyOnWriteArrayList<>();
+		Path directory = Files.createTempDirectory("purchase-journal");
+
+		try (PurchaseJournal journal = PurchaseJournal.open(directory, 16, FsyncPolicy.NEVER, Duration.ZERO);
+				PurchaseRingBuffer ring = PurchaseRingBuffer.start(ticketService,
+						BatchTicketPaymentService.adapt(new TicketPaymentServiceImpl()), inventory, null, journal, 8,
+						outcome -> {
+							seatCounts.add(outcome.getSeats() != null ? outcome.getSeats().length : 0);
+							describe(outcome);
+						})) {
+			ring.publish(screening, 123L, 2, 0, 0);
+			ring.awaitCompleted(ring.publish(screening, 456L, 2, 0, 0));
+		}
+
+		List<PurchaseRecord> records = new ArrayList<>();
+		PurchaseJournal.replay(directory, 0, records::add);
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+
+		// The second order is paid for, then finds the screening sold out
+		assertEquals(List.of("0 123 accepted", "1 456 failed: Not enough seats left for screening 1001, 2 requested"),
+				outcomes);
+		assertEquals(List.of(2, 0), seatCounts);
+		assertEquals(1, inventory.availableSeats(1001L));
+		assertEquals(1001L, records.get(0).getScreeningId());
+		assertEquals(2, records.get(0).getSeats().length);
+		assertEquals(PurchaseRecord.Outcome.FAILED, records.get(1).getOutcome());
+	}
+
+	@Test
+	public void testManyProducersLapTheRing() throws Exception {
+		AtomicLong lastSequence = new AtomicLong(-1);
+		AtomicInteger outOfOrder = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+		PurchaseRingBuffer ring = PurchaseRingBuffer.start(ticketService, new TicketPaymentServiceImpl(),
+				new SeatReservationServiceImpl(), null, 8, outcome -> {
+					if (outcome.getSequence() != lastSequence.get() + 1) {
+						outOfOrder.incrementAndGet();
+					}
+					lastSequence.set(outcome.getSequence());
+					completed.incrementAndGet();
+				});
+
+		try (ExecutorService producers = Executors.newFixedThreadPool(4)) {
+			for (int producer = 0; producer < 4; producer++) {
+				producers.submit(() -> {
+					for (int i = 0; i < 2_500; i++) {
+						ring.publish(123L, 2, 0, 0);
+					}
+				});
+			}
+		}
+		ring.close();
+
+		assertEquals(8, ring.getCapacity());
+		assertEquals(10_000, completed.get());
+		assertEquals(0, outOfOrder.get());
+		assertEquals(9_999, ring.getCompletedSequence());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedRingRejectsOrders() {
+		PurchaseRingBuffer ring = start(new TicketPaymentServiceImpl(), new SeatReservationServiceImpl(), 8);
+		ring.close();
+
+		ring.publish(123L, 2, 0, 0);
+	}
+
+	private PurchaseRingBuffer start(TicketPaymentService paymentService, SeatReservationService reservationService,
+			int capacity) {
+		return PurchaseRingBuffer.start(ticketService, paymentService, reservationService, null, capacity,
+				this::describe);
+	}
+
+	// Records each outcome as "sequence accountId result"
+	private void describe(PurchaseOutcome outcome) {
+		String description = outcome.getFailure() != null ? "failed: " + outcome.getFailure().getMessage()
+				: outcome.getErrorCode() == null ? "accepted" : outcome.getErrorCode().name();
+		outcomes.add(outcome.getSequence() + " " + outcome.getAccountId() + " " + description);
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package uk.gov.dwp.uc.pairtest.saga;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.payment.RefundableTicketPaymentService;
+
+/**
+ * Unit tests for `PurchaseCoordinator` and `CompensationProcessor`, covering
+ * the happy path and refunds after a failed seat reservation, including
+ * refunds submitted after the processor has been closed.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class PurchaseCoordinatorTest {
+
+	private RefundableTicketPaymentService mockPaymentService;
+	private SeatReservationService mockReservationService;
+	private CompensationProcessor compensations;
+	private PurchaseCoordinator coordinator;
+
+	@Before
+	public void setUp() {
+		mockPaymentService = mock(RefundableTicketPaymentService.class);
+		mockReservationService = mock(SeatReservationService.class);
+		compensations = CompensationProcessor.start(mockPaymentService, 32, 3, 1);
+		coordinator = new PurchaseCoordinator(mockPaymentService, mockReservationService, compensations);
+	}
+
+	@After
+	public void tearDown() {
+		compensations.close();
+	}
+
+	@Test
+	public void testSuccessfulPurchaseEndsReserved() {
+		PurchaseSaga saga = coordinator.execute(123L, 50, 3);
+
+		assertEquals(PurchaseState.RESERVED, saga.getState());
+		verify(mockPaymentService).makePayment(123L, 50);
+		verify(mockReservationService).reserveSeat(123L, 3);
+		verify(mockPaymentService, Mockito.never()).refund(Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test
+	public void testFailedReservationIsRefunded() {
+		doThrow(new IllegalStateException("Seat reservation unavailable")).when(mockReservationService)
+				.reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+
+		try {
+			coordinator.execute(123L, 50, 3);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Seat reservation unavailable", e.getMessage());
+		}
+		compensations.close();
+
+		verify(mockPaymentService).refund(123L, 50);
+		assertEquals(1, compensations.getCompensatedCount());
+	}
+
+	@Test
+	public void testFailedPaymentIsNotRefunded() {
+		doThrow(new IllegalStateException("Payment declined")).when(mockPaymentService)
+				.makePayment(Mockito.anyLong(), Mockito.anyInt());
+
+		try {
+			coordinator.execute(123L, 50, 3);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Payment declined", e.getMessage());
+		}
+		compensations.close();
+
+		verify(mockReservationService, Mockito.never()).reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+		verify(mockPaymentService, Mockito.never()).refund(Mockito.anyLong(), Mockito.anyInt());
+	}
+
+	@Test
+	public void testRefundIsRetriedUntilMaxAttempts() {
+		doThrow(new IllegalStateException("Seat reservation unavailable")).when(mockReservationService)
+				.reserveSeat(Mockito.anyLong(), Mockito.anyInt());
+		doThrow(new IllegalStateException("Refund declined")).when(mockPaymentService).refund(Mockito.anyLong(),
+				Mockito.anyInt());
+
+		try {
+			coordinator.execute(123L, 50, 3);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Seat reservation unavailable", e.getMessage());
+		}
+		compensations.close();
+
+		verify(mockPaymentService, Mockito.times(3)).refund(123L, 50);
+		assertEquals(1, compensations.getCompensationFailureCount());
+	}
+
+	@Test
+	public void testSagaSubmittedAfterCloseIsStillRefunded() {
+		compensations.close();
+		PurchaseSaga saga = new PurchaseSaga(123L, 50, 3);
+
+		compensations.submit(saga);
+
+		verify(mockPaymentService).refund(123L, 50);
+		assertEquals(PurchaseState.COMPENSATED, saga.getState());
+		assertEquals(1, compensations.getCompensatedCount());
+		assertEquals(0, compensations.getPendingCount());
+	}
+}
@@ -0,0 +1,121 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Concurrency stress tests for the compare-and-set seat claiming in
+ * `ScreeningSeatMap`, in the style of jcstress: many short rounds in which
+ * threads race on a small seat map, each round checking that no seat was
+ * handed out twice and that the free seat count matches what was claimed.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class ScreeningSeatMapStressTest {
+
+	private static final int THREADS = 4;
+
+	@Test
+	public void testRacingClaimsNeverDoubleAllocate() throws Exception {
+		for (int round = 0; round < 2_000; round++) {
+			ScreeningSeatMap seatMap = new ScreeningSeatMap(1L, SeatLayout.of(5, 3));
+			AtomicIntegerArray owners = new AtomicIntegerArray(2 * SeatLayout.MAX_SEATS_PER_ROW);
+			int[] claimedPerThread = new int[THREADS];
+
+			race(threadId -> {
+				try {
+					for (int seat : seatMap.claim(3)) {
+						assertTrue("seat " + seat + " allocated twice", owners.compareAndSet(seat, 0, threadId + 1));
+					}
+					claimedPerThread[threadId] = 3;
+				} catch (SeatsUnavailableException e) {
+					claimedPerThread[threadId] = 0;
+				}
+			});
+
+			int claimed = 0;
+			for (int count : claimedPerThread) {
+				claimed += count;
+			}
+			assertTrue(claimed <= 8);
+			assertEquals(8 - claimed, seatMap.availableSeats());
+		}
+	}
+
+	@Test
+	public void testClaimAndReleaseChurnLeavesNoSeatTaken() throws Exception {
+		ScreeningSeatMap seatMap = new ScreeningSeatMap(1L, SeatLayout.of(64, 64));
+		AtomicIntegerArray owners = new AtomicIntegerArray(2 * SeatLayout.MAX_SEATS_PER_ROW);
+
+		race(threadId -> {
+			for (int i = 0; i < 20_000; i++) {
+				int[] seats;
+				try {
+					seats = seatMap.claim(1 + (i + threadId) % 40);
+				} catch (SeatsUnavailableException e) {
+					continue;
+				}
+				for (int seat : seats) {
+					assertTrue("seat " + seat + " allocated twice", owners.compareAndSet(seat, 0, threadId + 1));
+				}
+				for (int seat : seats) {
+					owners.set(seat, 0);
+				}
+				seatMap.release(seats);
+			}
+		});
+
+		assertEquals(128, seatMap.availableSeats());
+	}
+
+	@Test
+	public void testClaimSucceedsWhileEnoughSeatsRemainFree() throws Exception {
+		// Four rows of two seats: with every other thread holding two seats, two are always free
+		ScreeningSeatMap seatMap = new ScreeningSeatMap(1L, SeatLayout.of(2, 2, 2, 2));
+
+		race(threadId -> {
+			for (int i = 0; i < 20_000; i++) {
+				seatMap.release(seatMap.claim(2));
+			}
+		});
+
+		assertEquals(8, seatMap.availableSeats());
+	}
+
+	private static void race(ThreadBody body) throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(THREADS);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] threads = new Thread[THREADS];
+
+		for (int t = 0; t < THREADS; t++) {
+			int threadId = t;
+			threads[t] = new Thread(() -> {
+				try {
+					barrier.await();
+					body.run(threadId);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	@FunctionalInterface
+	private interface ThreadBody {
+		void run(int threadId) throws Exception;
+	}
+}
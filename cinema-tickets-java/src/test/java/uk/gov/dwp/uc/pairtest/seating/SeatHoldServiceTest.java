@@ -0,0 +1,182 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.PurchaseErrorCode;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+
+/**
+ * Unit tests for `SeatHoldService`, covering confirmed, released and expired
+ * holds, expiry of holds spread across the levels of the timing wheel, and
+ * hold-then-pay purchases.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class SeatHoldServiceTest {
+
+	private static final Screening SCREENING = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+
+	private final AtomicLong nanoTime = new AtomicLong();
+	private final SeatInventory inventory = new SeatInventory();
+	private SeatHoldService holdService;
+
+	@Before
+	public void setUp() {
+		inventory.addScreening(1001L, SeatLayout.uniform(20, 50));
+		holdService = new SeatHoldService(inventory, Duration.ofMinutes(10), Duration.ofMillis(10), nanoTime::get);
+	}
+
+	@Test
+	public void testHeldSeatsAreTakenUntilTheHoldExpires() {
+		SeatHold hold = holdService.hold(1001L, 123L, 4);
+		assertEquals(996, inventory.availableSeats(1001L));
+
+		advance(Duration.ofMinutes(10).minusMillis(10));
+		assertEquals(0, holdService.expireHolds());
+
+		advance(Duration.ofMillis(10));
+		assertEquals(1, holdService.expireHolds());
+		assertEquals(SeatHold.State.EXPIRED, hold.getState());
+		assertEquals(1000, inventory.availableSeats(1001L));
+		assertFalse(holdService.confirm(hold));
+	}
+
+	@Test
+	public void testConfirmedHoldKeepsItsSeats() {
+		SeatHold hold = holdService.hold(1001L, 123L, 4);
+
+		assertTrue(holdService.confirm(hold));
+		advance(Duration.ofHours(1));
+
+		assertEquals(0, holdService.expireHolds());
+		assertEquals(SeatHold.State.CONFIRMED, hold.getState());
+		assertEquals(996, inventory.availableSeats(1001L));
+		assertFalse(holdService.release(hold));
+	}
+
+	@Test
+	public void testReleasedHoldFreesItsSeats() {
+		SeatHold hold = holdService.hold(1001L, 123L, 4);
+
+		assertTrue(holdService.release(hold));
+
+		assertEquals(SeatHold.State.RELEASED, hold.getState());
+		assertEquals(1000, inventory.availableSeats(1001L));
+		assertEquals(0, holdService.getHeldCount());
+	}
+
+	@Test
+	public void testHoldsExpireInDeadlineOrderAcrossWheelLevels() {
+		SeatHoldService longHolds = new SeatHoldService(inventory, Duration.ofHours(50), Duration.ofMillis(10),
+				nanoTime::get);
+		List<SeatHold> holds = new ArrayList<>();
+		// Fifty hours is beyond the range of the wheel, and the staggered holds cascade through every level
+		for (long offsetMillis : new long[] { 0, 370, 41_000, 2_600_000, 170_000_000 }) {
+			nanoTime.set(TimeUnit.MILLISECONDS.toNanos(offsetMillis));
+			holds.add(longHolds.hold(1001L, 123L, 1));
+		}
+
+		for (SeatHold hold : holds) {
+			assertEquals(SeatHold.State.HELD, hold.getState());
+			long deadline = hold.deadlineTick;
+			nanoTime.set(TimeUnit.MILLISECONDS.toNanos((deadline - 1) * 10));
+			longHolds.expireHolds();
+			assertEquals(SeatHold.State.HELD, hold.getState());
+
+			nanoTime.set(TimeUnit.MILLISECONDS.toNanos(deadline * 10));
+			longHolds.expireHolds();
+			assertEquals(SeatHold.State.EXPIRED, hold.getState());
+		}
+		assertEquals(5, longHolds.getExpiredCount());
+		assertEquals(1000, inventory.availableSeats(1001L));
+	}
+
+	@Test
+	public void testManyHoldsExpireTogether() {
+		for (int i = 0; i < 1000; i++) {
+			holdService.hold(1001L, i + 1, 1);
+		}
+		assertEquals(0, inventory.availableSeats(1001L));
+
+		advance(Duration.ofMinutes(10));
+
+		assertEquals(1000, holdService.expireHolds());
+		assertEquals(1000, inventory.availableSeats(1001L));
+		assertEquals(0, holdService.getHeldCount());
+	}
+
+	private void advance(Duration duration) {
+		nanoTime.addAndGet(duration.toNanos());
+	}
+
+	@Test
+	public void testHoldThenPayRejectsSoldOutScreeningBeforePayment() {
+		AtomicInteger payments = new AtomicInteger();
+		TicketServiceImpl ticketService = holdThenPayService((accountId, totalAmountToPay) -> payments.incrementAndGet());
+		holdService.hold(1001L, 456L, 999);
+
+		PurchaseResult result = ticketService.purchase(SCREENING, 123L,
+				new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+
+		assertFalse(result.isAccepted());
+		assertEquals(PurchaseErrorCode.INSUFFICIENT_SEATS, result.getErrorCode());
+		assertEquals(0, payments.get());
+		assertEquals(1, inventory.availableSeats(1001L));
+	}
+
+	@Test
+	public void testHoldThenPayConfirmsSeatsAfterPayment() {
+		AtomicInteger payments = new AtomicInteger();
+		TicketServiceImpl ticketService = holdThenPayService((accountId, totalAmountToPay) -> payments.incrementAndGet());
+
+		PurchaseResult result = ticketService.purchase(SCREENING, 123L,
+				new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+				new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+		assertTrue(result.isAccepted());
+		assertEquals(1, payments.get());
+		assertEquals(997, inventory.availableSeats(1001L));
+		assertEquals(0, holdService.getHeldCount());
+	}
+
+	@Test
+	public void testHoldThenPayReleasesSeatsWhenPaymentFails() {
+		TicketServiceImpl ticketService = holdThenPayService((accountId, totalAmountToPay) -> {
+			throw new IllegalStateException("Payment declined");
+		});
+
+		try {
+			ticketService.purchase(SCREENING, 123L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2));
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Payment declined", e.getMessage());
+		}
+
+		assertEquals(1000, inventory.availableSeats(1001L));
+		assertEquals(0, holdService.getHeldCount());
+	}
+
+	private TicketServiceImpl holdThenPayService(TicketPaymentService paymentService) {
+		return new TicketServiceImpl(new PurchaseCoordinator(paymentService, holdService), PriceTable.DEFAULT);
+	}
+}
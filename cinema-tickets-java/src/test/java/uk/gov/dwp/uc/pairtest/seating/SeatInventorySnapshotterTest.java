@@ -0,0 +1,179 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.journal.FsyncPolicy;
+import uk.gov.dwp.uc.pairtest.journal.PurchaseJournal;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+
+/**
+ * Unit tests for `SeatInventorySnapshotter`, covering recovery from a snapshot
+ * plus journal replay, recovery from the journal alone, falling back from a
+ * damaged snapshot, and replaying the exact seats of each purchase once.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class SeatInventorySnapshotterTest {
+
+	private static final Screening MATINEE = new Screening(1001L, 7, Screening.TimeBand.OFF_PEAK);
+	private static final Screening EVENING = new Screening(1002L, 7, Screening.TimeBand.PEAK);
+
+	private Path directory;
+	private Path journalDirectory;
+	private Path snapshotDirectory;
+	private SeatInventory inventory;
+	private PurchaseJournal journal;
+	private TicketServiceImpl ticketService;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("seat-recovery");
+		journalDirectory = directory.resolve("journal");
+		snapshotDirectory = directory.resolve("snapshots");
+		Files.createDirectories(snapshotDirectory);
+
+		inventory = newInventory();
+		journal = PurchaseJournal.open(journalDirectory, 64, FsyncPolicy.NEVER, Duration.ZERO);
+		ticketService = new TicketServiceImpl(new PurchaseCoordinator((accountId, totalAmountToPay) -> {
+		}, inventory), PriceTable.DEFAULT);
+		ticketService.setJournal(journal);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		journal.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testRecoveryReplaysPurchasesAfterTheSnapshot() throws Exception {
+		buyTickets(MATINEE, 5);
+		buyTickets(EVENING, 3);
+		try (SeatInventorySnapshotter snapshotter = SeatInventorySnapshotter.start(inventory, journal,
+				snapshotDirectory, Duration.ofHours(1))) {
+			snapshotter.snapshot();
+		}
+		buyTickets(MATINEE, 4);
+		buyTickets(EVENING, 2);
+
+		SeatInventory recovered = newInventory();
+		long reseated = SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		assertEquals(6, reseated);
+		assertSameSeatsTaken(inventory, recovered);
+	}
+
+	@Test
+	public void testRecoveryWithoutSnapshotReplaysTheWholeJournal() throws Exception {
+		buyTickets(MATINEE, 3);
+		buyTickets(EVENING, 3);
+
+		SeatInventory recovered = newInventory();
+		long reseated = SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		assertEquals(6, reseated);
+		assertSameSeatsTaken(inventory, recovered);
+	}
+
+	@Test
+	public void testDamagedSnapshotFallsBackToThePreviousOne() throws Exception {
+		buyTickets(MATINEE, 2);
+		SeatInventorySnapshotter.write(inventory, journal.getLastSequence(), snapshotDirectory);
+		buyTickets(EVENING, 2);
+		Path latest = SeatInventorySnapshotter.write(inventory, journal.getLastSequence(), snapshotDirectory);
+		try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 42 }), 40);
+		}
+
+		SeatInventory recovered = newInventory();
+		long reseated = SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		assertEquals(2, reseated);
+		assertSameSeatsTaken(inventory, recovered);
+	}
+
+	@Test
+	public void testRecoveryTakesBackTheExactSeatsSold() throws Exception {
+		int[] cornerSeats = { SeatLayout.seatIndex(9, 0), SeatLayout.seatIndex(9, 1) };
+		journal.recordPurchase(123L, MATINEE.getScreeningId(), null, PurchaseResult.accepted(40, 2), cornerSeats);
+
+		SeatInventory recovered = newInventory();
+		SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		// Best available seating would have put the pair in the middle of the screen
+		assertTrue(recovered.screening(MATINEE.getScreeningId()).isTaken(cornerSeats[0]));
+		assertTrue(recovered.screening(MATINEE.getScreeningId()).isTaken(cornerSeats[1]));
+		assertEquals(198, recovered.availableSeats(MATINEE.getScreeningId()));
+	}
+
+	@Test
+	public void testPurchaseInBothSnapshotAndJournalIsSeatedOnce() throws Exception {
+		buyTickets(MATINEE, 3);
+		// The last purchase was in flight when the snapshot read the journal sequence
+		SeatInventorySnapshotter.write(inventory, journal.getLastSequence() - 1, snapshotDirectory);
+
+		SeatInventory recovered = newInventory();
+		long reseated = SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		assertEquals(1, reseated);
+		assertSameSeatsTaken(inventory, recovered);
+	}
+
+	@Test
+	public void testScreeningsMissingFromTheInventoryAreAdded() throws Exception {
+		buyTickets(MATINEE, 2);
+		SeatInventorySnapshotter.write(inventory, journal.getLastSequence(), snapshotDirectory);
+
+		SeatInventory recovered = new SeatInventory();
+		SeatInventorySnapshotter.recover(recovered, snapshotDirectory, journalDirectory);
+
+		assertEquals(inventory.availableSeats(MATINEE.getScreeningId()),
+				recovered.availableSeats(MATINEE.getScreeningId()));
+		assertEquals(300, recovered.availableSeats(EVENING.getScreeningId()));
+	}
+
+	private void buyTickets(Screening screening, int purchases) {
+		for (int i = 0; i < purchases; i++) {
+			ticketService.purchase(screening, 100L + i, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+					new TicketTypeRequest(TicketTypeRequest.Type.CHILD, i % 3));
+		}
+	}
+
+	private static SeatInventory newInventory() {
+		SeatInventory seatInventory = new SeatInventory();
+		seatInventory.addScreening(MATINEE.getScreeningId(), SeatLayout.uniform(10, 20));
+		seatInventory.addScreening(EVENING.getScreeningId(), SeatLayout.uniform(15, 20));
+		return seatInventory;
+	}
+
+	private static void assertSameSeatsTaken(SeatInventory expected, SeatInventory actual) {
+		for (ScreeningSeatMap seatMap : expected.screenings()) {
+			ScreeningSeatMap recoveredMap = actual.screening(seatMap.getScreeningId());
+			for (int row = 0; row < seatMap.getLayout().rows(); row++) {
+				assertEquals(seatMap.rowWord(row), recoveredMap.rowWord(row));
+			}
+		}
+	}
+}
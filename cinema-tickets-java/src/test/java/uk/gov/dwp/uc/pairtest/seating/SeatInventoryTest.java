@@ -0,0 +1,173 @@
+package uk.gov.dwp.uc.pairtest.seating;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.Screening;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.saga.PurchaseCoordinator;
+
+/**
+ * Unit tests for `SeatInventory` and `ScreeningSeatMap`, covering seat counts,
+ * releases, sold out screenings, concurrent reservations and seating groups
+ * together in the best available seats.
+ * 
+ * @author raghavendra.araveti
+ *
+ */
+public class SeatInventoryTest {
+
+	private final SeatInventory inventory = new SeatInventory();
+
+	@Test
+	public void testReservingSeatsReducesAvailability() {
+		inventory.addScreening(1001L, SeatLayout.uniform(15, 20));
+
+		int[] seats = inventory.reserveSeats(1001L, 3);
+
+		assertEquals(3, seats.length);
+		assertEquals(297, inventory.availableSeats(1001L));
+		for (int seat : seats) {
+			assertTrue(inventory.screening(1001L).isTaken(seat));
+		}
+	}
+
+	@Test
+	public void testReleasedSeatsBecomeAvailable() {
+		inventory.addScreening(1001L, SeatLayout.of(5, 64, 3));
+
+		int[] seats = inventory.reserveSeats(1001L, 10);
+		inventory.screening(1001L).release(seats);
+
+		assertEquals(72, inventory.availableSeats(1001L));
+		assertFalse(inventory.screening(1001L).isTaken(seats[0]));
+	}
+
+	@Test
+	public void testSoldOutScreeningRejectsReservation() {
+		inventory.addScreening(1001L, SeatLayout.of(4));
+		inventory.reserveSeats(1001L, 3);
+
+		try {
+			inventory.reserveSeats(1001L, 2);
+			fail("Expected SeatsUnavailableException");
+		} catch (SeatsUnavailableException e) {
+			assertEquals(1, inventory.availableSeats(1001L));
+		}
+	}
+
+	@Test
+	public void testConcurrentReservationsNeverOversell() throws Exception {
+		inventory.addScreening(1001L, SeatLayout.uniform(15, 20));
+		ConcurrentHashMap<Integer, Boolean> allocated = new ConcurrentHashMap<>();
+		AtomicInteger duplicates = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		for (int i = 0; i < 200; i++) {
+			int count = 1 + i % 4;
+			executor.execute(() -> {
+				try {
+					start.await();
+					for (int seat : inventory.reserveSeats(1001L, count)) {
+						if (allocated.putIfAbsent(seat, Boolean.TRUE) != null) {
+							duplicates.incrementAndGet();
+						}
+					}
+				} catch (SeatsUnavailableException e) {
+					rejected.incrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(0, duplicates.get());
+		assertEquals(300 - allocated.size(), inventory.availableSeats(1001L));
+		assertTrue(rejected.get() > 0);
+	}
+
+	@Test
+	public void testPurchaseAgainstScreeningReservesSeatsInIt() {
+		Screening screening = new Screening(1001L, 7, Screening.TimeBand.PEAK);
+		inventory.addScreening(1001L, SeatLayout.uniform(2, 10));
+		TicketServiceImpl ticketService = new TicketServiceImpl(
+				new PurchaseCoordinator((accountId, totalAmountToPay) -> {
+				}, inventory), PriceTable.DEFAULT);
+
+		PurchaseResult result = ticketService.purchase(screening, 123L,
+				new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+				new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+
+		assertTrue(result.isAccepted());
+		assertEquals(18, inventory.availableSeats(1001L));
+	}
+
+	@Test
+	public void testGroupIsSeatedTogetherInBestRun() {
+		ScreeningSeatMap seatMap = inventory.addScreening(1001L, SeatLayout.uniform(25, 40));
+
+		int[] seats = seatMap.claimBestAvailable(20);
+
+		int row = SeatLayout.rowOf(seats[0]);
+		for (int i = 0; i < seats.length; i++) {
+			assertEquals(row, SeatLayout.rowOf(seats[i]));
+			assertEquals(SeatLayout.columnOf(seats[0]) + i, SeatLayout.columnOf(seats[i]));
+		}
+		// Centre-weighted scores put the group in the middle of the row two thirds back
+		assertEquals(16, row);
+		assertEquals(10, SeatLayout.columnOf(seats[0]));
+	}
+
+	@Test
+	public void testBestRunUsesSeatQualityScores() {
+		SeatLayout layout = SeatLayout.uniform(2, 6);
+		SeatQuality quality = SeatQuality.of(layout, new int[][] { { 1, 1, 1, 1, 1, 1 }, { 1, 1, 1, 1, 9, 9 } });
+		ScreeningSeatMap seatMap = inventory.addScreening(1001L, layout, quality);
+
+		int[] seats = seatMap.claimBestAvailable(3);
+
+		assertEquals(SeatLayout.seatIndex(1, 3), seats[0]);
+		assertEquals(SeatLayout.seatIndex(1, 5), seats[2]);
+	}
+
+	@Test
+	public void testGroupIsSplitWhenNoRunIsLongEnough() {
+		ScreeningSeatMap seatMap = inventory.addScreening(1001L, SeatLayout.uniform(2, 4));
+		seatMap.claimBestAvailable(3);
+		seatMap.claimBestAvailable(3);
+
+		int[] seats = seatMap.claimBestAvailable(2);
+
+		assertEquals(2, seats.length);
+		assertEquals(0, seatMap.availableSeats());
+	}
+
+	@Test
+	public void testRunStartsMarksEveryLongEnoughRun() {
+		// Columns 0 to 6 and 9 to 11 are free
+		long free = 0b1110_0111_1111L;
+
+		assertEquals(0b0010_0001_1111L, ScreeningSeatMap.runStarts(free, 3));
+		assertEquals(0b0000_0000_1111L, ScreeningSeatMap.runStarts(free, 4));
+		assertEquals(0L, ScreeningSeatMap.runStarts(free, 8));
+	}
+}